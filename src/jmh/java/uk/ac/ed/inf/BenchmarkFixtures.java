@@ -0,0 +1,105 @@
+package uk.ac.ed.inf;
+
+import com.google.gson.Gson;
+import com.mapbox.geojson.FeatureCollection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Local map, menus and synthetic orders shared by the benchmarks.
+ * Fixtures are read from the test resources (webserver folder), laid out like the web server,
+ * so no web server or database is needed to run the benchmarks.
+ */
+public class BenchmarkFixtures {
+
+    /**
+     * Classpath folder holding the web server fixture files
+     */
+    private static final String WEBSERVER = "/webserver/";
+
+    /**
+     * Number of distinct delivery addresses synthetic orders are spread over.
+     * Real days reuse a few hundred addresses, so large order sets share them too.
+     */
+    public static final int MAX_ADDRESSES = 1000;
+
+    /**
+     * Menus read from the menus fixture
+     */
+    public final Menus menu;
+
+    /**
+     * What3Words cache seeded with the restaurants and the synthetic addresses
+     */
+    public final W3WCache w3wCache;
+
+    /**
+     * Map read from the landmarks and No-Fly Zone fixtures
+     */
+    public final CampusMap campusMap;
+
+    /**
+     * Generator of the synthetic addresses and orders
+     */
+    private final SyntheticOrders syntheticOrders;
+
+    /**
+     * BenchmarkFixtures class constructor. Loads the fixtures and seeds the cache with
+     * MAX_ADDRESSES synthetic delivery addresses outside the No-Fly Zones.
+     *
+     * @param seed seed of the synthetic address generator
+     */
+    public BenchmarkFixtures(long seed) {
+        menu = new Menus(Menus.parseRestaurants(readResource("menus/menus.json")));
+        campusMap = new CampusMap(
+                GeoClient.findAllLandMarks(FeatureCollection.fromJson(readResource("buildings/landmarks.geojson"))),
+                GeoClient.getNoFlyZoneOutlines(FeatureCollection.fromJson(readResource("buildings/no-fly-zones.geojson"))));
+        w3wCache = new W3WCache(null, null, MAX_ADDRESSES + menu.getRestaurantList().size());
+
+        Gson gson = new Gson();
+        for (Restaurant restaurant : menu.getRestaurantList()) {
+            String path = "words/" + restaurant.getLocation().replaceAll("\\.", "/") + "/details.json";
+            Location location = gson.fromJson(readResource(path), Location.class);
+            w3wCache.put(restaurant.getLocation(),
+                    new LongLat(location.getCoordinates().lng, location.getCoordinates().lat));
+        }
+
+        syntheticOrders = new SyntheticOrders(menu, campusMap, MAX_ADDRESSES, seed);
+        syntheticOrders.seed(w3wCache);
+    }
+
+    /**
+     * Generates a synthetic day of orders. Most orders pick one to four items from a single
+     * restaurant, about a fifth from two restaurants, and about one in fifty has five items
+     * (invalid, never delivered). Orders are spread over the synthetic addresses.
+     *
+     * @param count number of orders
+     * @param seed seed of the order generator
+     * @return synthetic orders
+     */
+    public ArrayList<Order> syntheticOrders(int count, long seed) {
+        return syntheticOrders.orders(count, seed);
+    }
+
+    /**
+     * Reads a web server fixture file from the classpath
+     *
+     * @param path path of the file within the webserver folder
+     * @return file contents
+     */
+    public static String readResource(String path) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(WEBSERVER + path)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture " + WEBSERVER + path);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
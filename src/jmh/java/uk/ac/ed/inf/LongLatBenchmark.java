@@ -0,0 +1,101 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.geom.Line2D;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the LongLat geometry used on every drone move:
+ * stepping, angles, distances and No-Fly Zone intersection checks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LongLatBenchmark {
+
+    /**
+     * Number of precomputed positions; a power of two so the cursor wraps with a mask
+     */
+    private static final int POSITIONS = 1024;
+
+    private LongLat[] from;
+    private LongLat[] to;
+    private int[] angles;
+    private List<Line2D> polygonPerimeters;
+    private NoFlyZoneIndex noFlyZoneIndex;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        CampusMap campusMap = new BenchmarkFixtures(1).campusMap;
+        polygonPerimeters = campusMap.getPolygonPerimeters();
+        noFlyZoneIndex = campusMap.getNoFlyZoneIndex();
+
+        Random random = new Random(2);
+        from = new LongLat[POSITIONS];
+        to = new LongLat[POSITIONS];
+        angles = new int[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            from[i] = new LongLat(-3.192473 + random.nextDouble() * 0.008154, 55.942617 + random.nextDouble() * 0.003616);
+            angles[i] = random.nextInt(LongLat.MAXIMUM_ANGLE / LongLat.ANGLE_STEP + 1) * LongLat.ANGLE_STEP;
+            // mostly single moves, as flown by the drone
+            to[i] = from[i].nextPosition(angles[i]);
+        }
+    }
+
+    /**
+     * Moves the cursor to the next precomputed position
+     *
+     * @return index of the position to use
+     */
+    private int next() {
+        cursor = (cursor + 1) & (POSITIONS - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public LongLat nextPosition() {
+        int i = next();
+        return from[i].nextPosition(angles[i]);
+    }
+
+    @Benchmark
+    public int getAngle() {
+        int i = next();
+        return from[i].getAngle(from[(i + 1) & (POSITIONS - 1)]);
+    }
+
+    @Benchmark
+    public double distanceTo() {
+        int i = next();
+        return from[i].distanceTo(from[(i + 1) & (POSITIONS - 1)]);
+    }
+
+    @Benchmark
+    public boolean isIntersectingPathLinearScan() {
+        int i = next();
+        return from[i].isIntersectingPath(to[i], polygonPerimeters);
+    }
+
+    @Benchmark
+    public boolean isIntersectingPathIndexed() {
+        int i = next();
+        return from[i].isIntersectingPath(to[i], noFlyZoneIndex);
+    }
+
+}
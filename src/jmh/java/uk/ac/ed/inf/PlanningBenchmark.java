@@ -0,0 +1,55 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a full day's planning (Drone.greedyOrdersInADay) on synthetic order sets.
+ * Leg costs are calculated once per trial and shared by every invocation, so the
+ * benchmark measures scheduling and exact routing rather than the first leg calculations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlanningBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int orderCount;
+
+    private BenchmarkFixtures fixtures;
+    private ArrayList<Order> orders;
+    private LegMatrix legMatrix;
+
+    @Setup
+    public void setUp() {
+        fixtures = new BenchmarkFixtures(1);
+        orders = fixtures.syntheticOrders(orderCount, 4);
+        Drone drone = new Drone(fixtures.menu, fixtures.w3wCache, fixtures.campusMap);
+        drone.precomputeLegs(orders);
+        legMatrix = drone.getLegMatrix();
+    }
+
+    @Benchmark
+    public int greedyOrdersInADay() {
+        Drone drone = new Drone(fixtures.menu, fixtures.w3wCache, fixtures.campusMap);
+        drone.setLegMatrix(legMatrix);
+        drone.greedyOrdersInADay(orders);
+        return drone.getFlightpath().size();
+    }
+
+}
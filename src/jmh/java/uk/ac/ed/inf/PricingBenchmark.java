@@ -0,0 +1,54 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of order pricing against the fixture menus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingBenchmark {
+
+    /**
+     * Number of precomputed orders; a power of two so the cursor wraps with a mask
+     */
+    private static final int ORDERS = 1024;
+
+    private Menus menu;
+    private String[][] items;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures(1);
+        menu = fixtures.menu;
+        List<Order> orders = fixtures.syntheticOrders(ORDERS, 3);
+        items = new String[ORDERS][];
+        for (int i = 0; i < ORDERS; i++) {
+            items[i] = orders.get(i).getItems();
+        }
+    }
+
+    @Benchmark
+    public int getDeliveryCost() {
+        cursor = (cursor + 1) & (ORDERS - 1);
+        return menu.getDeliveryCost(items[cursor]);
+    }
+
+}
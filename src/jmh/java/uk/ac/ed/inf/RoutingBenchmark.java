@@ -0,0 +1,88 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of Drone.travelToPosition on representative legs of the fixture map,
+ * for every routing engine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+
+    @Param({"greedy", "astar", "visibility"})
+    public String engine;
+
+    private Drone drone;
+    private Order order;
+    private LongLat nearRestaurant;
+    private LongLat farRestaurant;
+    private LongLat westRestaurant;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures(1);
+        drone = new Drone(fixtures.menu, fixtures.w3wCache, fixtures.campusMap);
+        CampusMap campusMap = fixtures.campusMap;
+        if ("astar".equals(engine)) {
+            drone.setRoutingEngine(new AStarRoutingEngine(campusMap.getNoFlyZoneIndex()));
+        } else if ("visibility".equals(engine)) {
+            VisibilityGraph graph = new VisibilityGraph(campusMap, drone.getPointsOfInterest());
+            drone.setRoutingEngine(new VisibilityGraphRoutingEngine(graph, campusMap.getNoFlyZoneIndex(),
+                    drone.getRoutingEngine()));
+        }
+
+        order = fixtures.syntheticOrders(1, 1).get(0);
+        // restaurants closest to, furthest from and west of Appleton Tower
+        List<LongLat> restaurants = new ArrayList<>(drone.getPointsOfInterest());
+        restaurants.remove(0);
+        restaurants.sort((a, b) -> Double.compare(a.distanceTo(drone.getBase()), b.distanceTo(drone.getBase())));
+        nearRestaurant = restaurants.get(0);
+        farRestaurant = restaurants.get(restaurants.size() - 1);
+        westRestaurant = restaurants.get(0);
+        for (LongLat restaurant : restaurants) {
+            if (restaurant.longitude < westRestaurant.longitude) {
+                westRestaurant = restaurant;
+            }
+        }
+    }
+
+    @Benchmark
+    public ArrayList<FlightpathMove> baseToNearestRestaurant() {
+        return drone.travelToPosition(order, drone.getBase(), nearRestaurant);
+    }
+
+    @Benchmark
+    public ArrayList<FlightpathMove> baseToFurthestRestaurant() {
+        return drone.travelToPosition(order, drone.getBase(), farRestaurant);
+    }
+
+    @Benchmark
+    public ArrayList<FlightpathMove> restaurantToRestaurant() {
+        return drone.travelToPosition(order, westRestaurant, nearRestaurant);
+    }
+
+    @Benchmark
+    public ArrayList<FlightpathMove> restaurantBackToBase() {
+        return drone.travelToPosition(order, farRestaurant, drone.getBase());
+    }
+
+}
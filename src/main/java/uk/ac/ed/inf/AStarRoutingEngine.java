@@ -0,0 +1,214 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * Routing engine performing an A* search over the drone's move lattice:
+ * every position can be left in one of the 36 legal directions with a move
+ * of fixed length.
+ * Moves leaving the confinement area or crossing a No-Fly Zone perimeter are never expanded.
+ * The heuristic (straight-line distance left to cover, in moves) never
+ * overestimates the number of moves to the goal, so routes are as short as the
+ * lattice resolution allows. The search expands at most maxExpansions positions.
+ */
+public class AStarRoutingEngine implements RoutingEngine {
+
+    /**
+     * Default bound on the number of positions expanded per route
+     */
+    public static final int DEFAULT_MAX_EXPANSIONS = 100_000;
+
+    /**
+     * Number of lattice cells per move length along each axis.
+     * Positions falling in the same cell are treated as the same search state.
+     */
+    private static final int CELLS_PER_MOVE = 3;
+
+    /**
+     * Spatial index over the No-Fly Zone perimeters
+     */
+    private final NoFlyZoneIndex noFlyZoneIndex;
+
+    /**
+     * Bound on the number of positions expanded per route
+     */
+    private final int maxExpansions;
+
+    /**
+     * AStarRoutingEngine class constructor with the default expansion bound
+     *
+     * @param noFlyZoneIndex spatial index over the No-Fly Zone perimeters
+     */
+    public AStarRoutingEngine(NoFlyZoneIndex noFlyZoneIndex) {
+        this(noFlyZoneIndex, DEFAULT_MAX_EXPANSIONS);
+    }
+
+    /**
+     * AStarRoutingEngine class constructor
+     *
+     * @param noFlyZoneIndex spatial index over the No-Fly Zone perimeters
+     * @param maxExpansions bound on the number of positions expanded per route
+     */
+    public AStarRoutingEngine(NoFlyZoneIndex noFlyZoneIndex, int maxExpansions) {
+        this.noFlyZoneIndex = noFlyZoneIndex;
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Calculates the shortest drone route found on the move lattice between startingPoint and endPoint.
+     * Returns null if the goal cannot be reached or the expansion bound is hit.
+     *
+     * @param orderNo order number of the order being delivered
+     * @param startingPoint initial position of route
+     * @param endPoint location drone is trying to reach
+     * @return moves from startingPoint to endPoint, null if no route was found
+     */
+    @Override
+    public ArrayList<FlightpathMove> findRoute(String orderNo, LongLat startingPoint, LongLat endPoint) {
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        // fewest moves found so far to reach each lattice cell
+        HashMap<Long, Integer> bestMoves = new HashMap<>();
+
+        Node start = new Node(startingPoint.longitude, startingPoint.latitude, 0,
+                estimate(startingPoint.longitude, startingPoint.latitude, endPoint), null, 0);
+        open.add(start);
+        bestMoves.put(cell(start.longitude, start.latitude), 0);
+
+        int expansions = 0;
+        while (!open.isEmpty() && expansions < maxExpansions) {
+            Node current = open.poll();
+            if (current.moves > bestMoves.get(cell(current.longitude, current.latitude))) {
+                // a shorter route to this cell was found after this node was queued
+                continue;
+            }
+            if (LongLat.closeTo(current.longitude, current.latitude, endPoint.longitude, endPoint.latitude)) {
+                return toMoves(orderNo, current);
+            }
+            expansions++;
+
+            for (int angle = 0; angle <= LongLat.MAXIMUM_ANGLE; angle += LongLat.ANGLE_STEP) {
+                double newLongitude = LongLat.nextLongitude(current.longitude, current.latitude, angle);
+                double newLatitude = LongLat.nextLatitude(current.longitude, current.latitude, angle);
+
+                // move would leave the confinement area
+                if (newLongitude == current.longitude && newLatitude == current.latitude) {
+                    continue;
+                }
+                if (noFlyZoneIndex.intersects(current.longitude, current.latitude, newLongitude, newLatitude)) {
+                    continue;
+                }
+
+                long newCell = cell(newLongitude, newLatitude);
+                Integer known = bestMoves.get(newCell);
+                int newMoves = current.moves + 1;
+                if (known != null && known <= newMoves) {
+                    continue;
+                }
+                bestMoves.put(newCell, newMoves);
+                open.add(new Node(newLongitude, newLatitude, newMoves,
+                        estimate(newLongitude, newLatitude, endPoint), current, angle));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Estimates the number of moves left to get close to the goal.
+     * Never overestimates: each move covers exactly one move length, and
+     * the goal is reached once within the distance tolerance.
+     *
+     * @param longitude current longitude
+     * @param latitude current latitude
+     * @param endPoint goal location
+     * @return lower bound on the number of moves left
+     */
+    private double estimate(double longitude, double latitude, LongLat endPoint) {
+        double distance = LongLat.distance(longitude, latitude, endPoint.longitude, endPoint.latitude);
+        return Math.max(0, distance - LongLat.getDistanceTolerance()) / LongLat.getMoveLength();
+    }
+
+    /**
+     * Maps a position to the key of the lattice cell it falls in
+     *
+     * @param longitude x-axis coordinate
+     * @param latitude y-axis coordinate
+     * @return cell key
+     */
+    private long cell(double longitude, double latitude) {
+        double cellSize = LongLat.getMoveLength() / CELLS_PER_MOVE;
+        long column = (long) Math.floor(longitude / cellSize);
+        long row = (long) Math.floor(latitude / cellSize);
+        return (column << 32) ^ (row & 0xffffffffL);
+    }
+
+    /**
+     * Rebuilds the list of moves leading to a search node
+     *
+     * @param orderNo order number recorded in every move
+     * @param goal node close to the goal location
+     * @return moves from the starting point to the goal node
+     */
+    private ArrayList<FlightpathMove> toMoves(String orderNo, Node goal) {
+        ArrayList<FlightpathMove> moves = new ArrayList<>(goal.moves);
+        LongLat nextPosition = new LongLat(goal.longitude, goal.latitude);
+        for (Node node = goal; node.parent != null; node = node.parent) {
+            LongLat originalPosition = new LongLat(node.parent.longitude, node.parent.latitude);
+            moves.add(new FlightpathMove(orderNo, originalPosition, nextPosition, node.angle));
+            nextPosition = originalPosition;
+        }
+        Collections.reverse(moves);
+        return moves;
+    }
+
+    /**
+     * Position reached by the search, ordered by estimated total route length
+     */
+    private static final class Node implements Comparable<Node> {
+
+        /**
+         * Position coordinates
+         */
+        private final double longitude;
+        private final double latitude;
+
+        /**
+         * Number of moves from the starting point
+         */
+        private final int moves;
+
+        /**
+         * Estimated number of moves left to the goal
+         */
+        private final double estimate;
+
+        /**
+         * Node this position was reached from, null for the starting point
+         */
+        private final Node parent;
+
+        /**
+         * Angle of the move from the parent node
+         */
+        private final int angle;
+
+        private Node(double longitude, double latitude, int moves, double estimate, Node parent, int angle) {
+            this.longitude = longitude;
+            this.latitude = latitude;
+            this.moves = moves;
+            this.estimate = estimate;
+            this.parent = parent;
+            this.angle = angle;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            int byTotal = Double.compare(moves + estimate, other.moves + other.estimate);
+            // prefer nodes closer to the goal on ties
+            return byTotal != 0 ? byTotal : Double.compare(estimate, other.estimate);
+        }
+    }
+
+}
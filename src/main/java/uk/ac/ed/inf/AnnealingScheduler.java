@@ -0,0 +1,584 @@
+package uk.ac.ed.inf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Anytime scheduler improving the ValuePerMoveScheduler sequence with simulated annealing.
+ * Every step of the search takes a few orders out of the planned sequence (a random selection or
+ * segment), or moves one of them, or reverses a segment, and then inserts left out orders,
+ * most expensive first with some noise, wherever they add the fewest moves within the budget.
+ * Steps delivering more value are kept; steps delivering less are kept with a probability
+ * falling as the search cools, so it can leave local optima. Fewer moves break ties.
+ *
+ * Several searches run in parallel from the same greedy sequence with independent seeds,
+ * until their CPU time or iteration budget runs out. CPU time is measured per search thread,
+ * so a search sharing its processor with other drones' searches still gets its whole budget,
+ * taking longer in wall-clock time instead. The delivery estimates between every pair of
+ * stops are calculated once up front, so the searches only read arrays. Estimates are a move or
+ * two off the exact routes, and a sequence packed to the last estimated move can lose an order
+ * or two in flight, so the best sequence of every search and the greedy sequence are flown on
+ * trial copies of the drone, and the one delivering the most value is returned.
+ */
+public class AnnealingScheduler implements OrderScheduler {
+
+    /**
+     * Default CPU time spent per schedule, in milliseconds, shared by the search threads
+     */
+    public static final long DEFAULT_CPU_BUDGET_MILLIS = 30_000;
+
+    /**
+     * Move count of a leg that cannot be flown, small enough not to overflow when added up
+     */
+    private static final int INFEASIBLE = Integer.MAX_VALUE / 4;
+
+    /**
+     * Reads the CPU time of the search threads
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Number of iterations between two checks of the clock
+     */
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+
+    /**
+     * Largest number of orders taken out of the sequence in one step
+     */
+    private static final int MAX_REMOVED = 4;
+
+    /**
+     * Starting and final temperatures, as fractions of the average order cost
+     */
+    private static final double START_TEMPERATURE = 0.5;
+    private static final double END_TEMPERATURE = 0.001;
+
+    /**
+     * CPU time every search thread runs for, in milliseconds
+     */
+    private final long cpuBudgetMillis;
+
+    /**
+     * Number of iterations every search thread runs at most
+     */
+    private final long maxIterations;
+
+    /**
+     * Number of searches run in parallel
+     */
+    private final int threads;
+
+    /**
+     * Seed of the first search; the others use the following seeds
+     */
+    private final long seed;
+
+    /**
+     * Scheduler whose sequence the searches start from
+     */
+    private final ValuePerMoveScheduler greedyScheduler = new ValuePerMoveScheduler();
+
+    /**
+     * AnnealingScheduler class constructor with the default budget: one search per processor,
+     * sharing DEFAULT_CPU_BUDGET_MILLIS of CPU time
+     */
+    public AnnealingScheduler() {
+        this(DEFAULT_CPU_BUDGET_MILLIS / Runtime.getRuntime().availableProcessors(),
+                Long.MAX_VALUE, Runtime.getRuntime().availableProcessors(), 1);
+    }
+
+    /**
+     * AnnealingScheduler class constructor. Every search stops at whichever budget runs out first.
+     *
+     * @param cpuBudgetMillis CPU time every search runs for, in milliseconds
+     * @param maxIterations number of iterations every search runs at most
+     * @param threads number of searches run in parallel
+     * @param seed seed of the first search; the others use the following seeds
+     */
+    public AnnealingScheduler(long cpuBudgetMillis, long maxIterations, int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one search thread is needed");
+        }
+        this.cpuBudgetMillis = cpuBudgetMillis;
+        this.maxIterations = maxIterations;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Builds the delivery sequence maximising delivered cost within the drone's moves.
+     * Orders that do not fit in the plan are appended afterwards, most expensive first,
+     * so the drone can still attempt them.
+     *
+     * @param orders all of the day's orders
+     * @param drone drone delivering the orders
+     * @return planned orders followed by the remaining orders
+     */
+    @Override
+    public List<Order> schedule(List<Order> orders, Drone drone) {
+        long startTime = System.nanoTime();
+        List<Order> greedy = greedyScheduler.schedule(orders, drone);
+        List<Order> candidates = new ArrayList<>();
+        List<Order> invalid = new ArrayList<>();
+        for (Order order : greedy) {
+            // orders breaking the menu constraints are never delivered
+            if (order.getCost() == 0) {
+                invalid.add(order);
+            } else {
+                candidates.add(order);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return greedy;
+        }
+
+        Estimates estimates = new Estimates(candidates, drone);
+        Solution initial = estimates.decode();
+        List<Order> best = greedy;
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            Future<Integer> greedyValue = workers.submit(() -> flownValue(greedy, drone));
+            List<Future<List<Order>>> searches = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long searchSeed = seed + i;
+                Callable<List<Order>> search = () -> toSequence(
+                        anneal(estimates, initial, new Random(searchSeed)), candidates, invalid);
+                searches.add(workers.submit(search));
+            }
+            List<Future<Integer>> values = new ArrayList<>();
+            for (Future<List<Order>> search : searches) {
+                List<Order> sequence = search.get();
+                values.add(workers.submit(() -> flownValue(sequence, drone)));
+            }
+            // the greedy sequence is kept unless a search delivers more
+            int bestValue = greedyValue.get();
+            for (int i = 0; i < searches.size(); i++) {
+                int value = values.get(i).get();
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = searches.get(i).get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } finally {
+            workers.shutdown();
+        }
+        Metrics.recordSince("planning.anneal", startTime);
+        return best;
+    }
+
+    /**
+     * Builds the sequence the drone attempts from a planned sequence: the planned orders,
+     * then the remaining orders most expensive first, then the invalid orders
+     *
+     * @param solution planned sequence
+     * @param candidates orders that can be delivered, indexed as in the solution
+     * @param invalid orders breaking the menu constraints
+     * @return orders in the order they should be attempted
+     */
+    private static List<Order> toSequence(Solution solution, List<Order> candidates, List<Order> invalid) {
+        List<Order> sequence = new ArrayList<>();
+        boolean[] planned = new boolean[candidates.size()];
+        for (int i = 0; i < solution.size; i++) {
+            sequence.add(candidates.get(solution.orders[i]));
+            planned[solution.orders[i]] = true;
+        }
+        List<Order> remaining = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!planned[i]) {
+                remaining.add(candidates.get(i));
+            }
+        }
+        remaining.sort(Collections.reverseOrder());
+        sequence.addAll(remaining);
+        sequence.addAll(invalid);
+        return sequence;
+    }
+
+    /**
+     * Flies a sequence on a trial copy of the drone, with the exact routes
+     *
+     * @param sequence orders in the order they are attempted
+     * @param drone drone delivering the orders, not modified
+     * @return total delivery cost of the orders delivered
+     */
+    private static int flownValue(List<Order> sequence, Drone drone) {
+        Drone trial = drone.trialCopy();
+        for (Order order : sequence) {
+            trial.deliverOrder(order);
+        }
+        int value = 0;
+        for (Order order : trial.getDeliveredOrdersInADay()) {
+            value += order.getCost();
+        }
+        return value;
+    }
+
+    /**
+     * Runs one simulated annealing search until its CPU time or iteration budget runs out.
+     * The temperature falls geometrically with the fraction of the budget used.
+     *
+     * @param estimates delivery estimates of the orders
+     * @param initial sequence the search starts from
+     * @param random random number generator of the search
+     * @return best sequence found
+     */
+    private Solution anneal(Estimates estimates, Solution initial, Random random) {
+        long startTime = cpuTime();
+        long cpuBudgetNanos = cpuBudgetMillis * 1_000_000;
+        double startTemperature = START_TEMPERATURE * estimates.averageCost;
+        double endTemperature = END_TEMPERATURE * estimates.averageCost;
+
+        Solution current = initial;
+        Solution best = initial;
+        double temperature = startTemperature;
+        long iteration = 0;
+        while (iteration < maxIterations) {
+            if (iteration % CLOCK_CHECK_INTERVAL == 0) {
+                long elapsed = cpuTime() - startTime;
+                if (elapsed >= cpuBudgetNanos) {
+                    break;
+                }
+                double progress = Math.max(elapsed / (double) cpuBudgetNanos, iteration / (double) maxIterations);
+                temperature = startTemperature * Math.pow(endTemperature / startTemperature, progress);
+            }
+            iteration++;
+
+            Solution candidate = estimates.neighbour(current, random);
+            double delta = candidate.objective(estimates.budget) - current.objective(estimates.budget);
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                current = candidate;
+                if (current.isBetterThan(best)) {
+                    best = current;
+                }
+            }
+        }
+        Metrics.add("anneal.iterations", iteration);
+        return best;
+    }
+
+    /**
+     * CPU time used by the current thread, or the wall-clock time if the JVM cannot measure it
+     *
+     * @return time in nanoseconds, only meaningful as a difference
+     */
+    private static long cpuTime() {
+        if (THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()) {
+            return THREADS.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Delivery estimates between every pair of stops, indexed by order.
+     * Stop 0 is the drone's last stop, and stop s + 1 the delivery address of order s.
+     */
+    private static class Estimates {
+
+        /**
+         * Number of moves available
+         */
+        private final int budget;
+
+        /**
+         * Delivery cost of every order
+         */
+        private final int[] costs;
+
+        /**
+         * Average delivery cost of the orders, scaling the temperature
+         */
+        private final double averageCost;
+
+        /**
+         * Estimated moves to deliver order o from stop s, at [s][o]
+         */
+        private final int[][] deliveryMoves;
+
+        /**
+         * Estimated moves to fly back from stop s
+         */
+        private final int[] returnMoves;
+
+        /**
+         * Estimates class constructor. Orders delivered to the same address share their
+         * estimates, so each distinct stop is estimated once.
+         *
+         * @param orders orders that can be delivered, in the greedy scheduler's order
+         * @param drone drone delivering the orders
+         */
+        private Estimates(List<Order> orders, Drone drone) {
+            int count = orders.size();
+            budget = drone.getMovesLeft();
+            costs = new int[count];
+            deliveryMoves = new int[count + 1][];
+            returnMoves = new int[count + 1];
+
+            HashMap<LongLat, Integer> stops = new HashMap<>();
+            long totalCost = 0;
+            for (int stop = 0; stop <= count; stop++) {
+                LongLat location = stop == 0 ? drone.getLastStopLocation() : drone.getDeliveryLocation(orders.get(stop - 1));
+                if (stop > 0) {
+                    costs[stop - 1] = orders.get(stop - 1).getCost();
+                    totalCost += costs[stop - 1];
+                }
+                Integer same = stops.putIfAbsent(location, stop);
+                if (same != null) {
+                    deliveryMoves[stop] = deliveryMoves[same];
+                    returnMoves[stop] = returnMoves[same];
+                    continue;
+                }
+                deliveryMoves[stop] = new int[count];
+                for (int order = 0; order < count; order++) {
+                    deliveryMoves[stop][order] = feasible(drone.estimateDeliveryMoves(location, orders.get(order)));
+                }
+                returnMoves[stop] = feasible(drone.estimateReturnMoves(location));
+            }
+            // an empty sequence does not leave the last stop
+            returnMoves[0] = 0;
+            averageCost = totalCost / (double) count;
+        }
+
+        /**
+         * Replaces an unreachable estimate with a move count no sequence can afford
+         *
+         * @param moves estimated number of moves
+         * @return moves, INFEASIBLE if unreachable
+         */
+        private static int feasible(int moves) {
+            return moves == LegMatrix.UNREACHABLE ? INFEASIBLE : moves;
+        }
+
+        /**
+         * Attempts the orders in the greedy scheduler's order, as the drone does: orders that
+         * would not leave enough moves to fly back are skipped, and the ones after them still tried
+         *
+         * @return orders planned within the budget
+         */
+        private Solution decode() {
+            Solution solution = new Solution(costs.length);
+            int stop = 0;
+            int moves = 0;
+            for (int order = 0; order < costs.length; order++) {
+                int deliveryMoves = this.deliveryMoves[stop][order];
+                if (moves + deliveryMoves + returnMoves[order + 1] <= budget) {
+                    solution.orders[solution.size++] = order;
+                    moves += deliveryMoves;
+                    stop = order + 1;
+                }
+            }
+            evaluate(solution);
+            return solution;
+        }
+
+        /**
+         * Builds a neighbouring sequence: a few orders are taken out, one is moved or a segment
+         * is reversed, then left out orders are inserted wherever they add the fewest moves
+         *
+         * @param current sequence to start from, not modified
+         * @param random random number generator of the search
+         * @return neighbouring sequence within the budget
+         */
+        private Solution neighbour(Solution current, Random random) {
+            Solution candidate = current.copy();
+            int size = candidate.size;
+            int[] orders = candidate.orders;
+            int operator = size < 2 ? 0 : random.nextInt(4);
+            if (operator == 0 && size > 0) {
+                // take out a few orders at random
+                int removed = 1 + random.nextInt(Math.min(MAX_REMOVED, size));
+                for (int i = 0; i < removed; i++) {
+                    int position = random.nextInt(candidate.size);
+                    System.arraycopy(orders, position + 1, orders, position, candidate.size - position - 1);
+                    candidate.size--;
+                }
+            } else if (operator == 1) {
+                // take out a segment of consecutive orders
+                int length = 1 + random.nextInt(Math.min(MAX_REMOVED, size));
+                int from = random.nextInt(size - length + 1);
+                System.arraycopy(orders, from + length, orders, from, size - from - length);
+                candidate.size -= length;
+            } else if (operator == 2) {
+                // move one order elsewhere in the sequence
+                int from = random.nextInt(size);
+                int to = random.nextInt(size);
+                int order = orders[from];
+                System.arraycopy(orders, from + 1, orders, from, size - from - 1);
+                System.arraycopy(orders, to, orders, to + 1, size - to - 1);
+                orders[to] = order;
+            } else if (operator == 3) {
+                // reverse a segment
+                int i = random.nextInt(size);
+                int j = random.nextInt(size);
+                for (int low = Math.min(i, j), high = Math.max(i, j); low < high; low++, high--) {
+                    int order = orders[low];
+                    orders[low] = orders[high];
+                    orders[high] = order;
+                }
+            }
+            evaluate(candidate);
+            if (candidate.moves > budget) {
+                // moved orders may not fit: nothing to insert into
+                return current;
+            }
+            repair(candidate, random);
+            return candidate;
+        }
+
+        /**
+         * Inserts left out orders, most expensive first with some noise, wherever they add
+         * the fewest moves, as long as the sequence still fits in the budget
+         *
+         * @param solution sequence of orders within the budget, modified in place
+         * @param random random number generator of the search
+         */
+        private void repair(Solution solution, Random random) {
+            boolean[] planned = new boolean[costs.length];
+            for (int i = 0; i < solution.size; i++) {
+                planned[solution.orders[i]] = true;
+            }
+            int leftOut = 0;
+            long[] keys = new long[costs.length - solution.size];
+            for (int order = 0; order < costs.length; order++) {
+                // the drone only delivers an order if it can fly back from the address
+                if (!planned[order] && returnMoves[order + 1] != INFEASIBLE) {
+                    // noisy cost in the high bits, order in the low bits, so sorting ranks the orders
+                    long noisyCost = (long) (costs[order] * (0.5 + random.nextDouble()) * 1000);
+                    keys[leftOut++] = (noisyCost << 20) | order;
+                }
+            }
+            Arrays.sort(keys, 0, leftOut);
+
+            int[] orders = solution.orders;
+            for (int k = leftOut - 1; k >= 0; k--) {
+                int order = (int) (keys[k] & 0xFFFFF);
+                int bestPosition = -1;
+                int bestMoves = budget - solution.moves;
+                int previous = 0;
+                for (int position = 0; position <= solution.size; position++) {
+                    int next = position < solution.size ? orders[position] + 1 : -1;
+                    int removedMoves = next < 0 ? returnMoves[previous] : deliveryMoves[previous][next - 1];
+                    int addedMoves = deliveryMoves[previous][order]
+                            + (next < 0 ? returnMoves[order + 1] : deliveryMoves[order + 1][next - 1]);
+                    if (addedMoves - removedMoves <= bestMoves) {
+                        bestMoves = addedMoves - removedMoves;
+                        bestPosition = position;
+                    }
+                    previous = next;
+                }
+                if (bestPosition >= 0) {
+                    System.arraycopy(orders, bestPosition, orders, bestPosition + 1, solution.size - bestPosition);
+                    orders[bestPosition] = order;
+                    solution.size++;
+                    solution.moves += bestMoves;
+                    solution.value += costs[order];
+                }
+            }
+        }
+
+        /**
+         * Calculates the estimated moves and the delivered value of a sequence
+         *
+         * @param solution sequence of orders, updated in place
+         */
+        private void evaluate(Solution solution) {
+            long moves = 0;
+            int value = 0;
+            int stop = 0;
+            for (int i = 0; i < solution.size; i++) {
+                int order = solution.orders[i];
+                moves += deliveryMoves[stop][order];
+                value += costs[order];
+                stop = order + 1;
+            }
+            solution.moves = (int) Math.min(INFEASIBLE, moves + returnMoves[stop]);
+            solution.value = value;
+        }
+    }
+
+    /**
+     * Sequence of orders with its estimated moves and delivered value
+     */
+    private static class Solution {
+
+        /**
+         * Orders in delivery order, in the first size entries
+         */
+        private final int[] orders;
+
+        /**
+         * Number of orders in the sequence
+         */
+        private int size;
+
+        /**
+         * Estimated number of moves, back to the base included
+         */
+        private int moves;
+
+        /**
+         * Total delivery cost of the orders
+         */
+        private int value;
+
+        /**
+         * Solution class constructor for an empty sequence
+         *
+         * @param capacity number of orders that can be delivered
+         */
+        private Solution(int capacity) {
+            orders = new int[capacity];
+        }
+
+        /**
+         * Copies the sequence
+         *
+         * @return copy
+         */
+        private Solution copy() {
+            Solution copy = new Solution(orders.length);
+            System.arraycopy(orders, 0, copy.orders, 0, size);
+            copy.size = size;
+            copy.moves = moves;
+            copy.value = value;
+            return copy;
+        }
+
+        /**
+         * Gets the value the search maximises: the delivered cost, less under a penny
+         * for the moves, so fewer moves only break ties
+         *
+         * @param budget number of moves available
+         * @return objective
+         */
+        private double objective(int budget) {
+            return value - moves / (double) (budget + 1);
+        }
+
+        /**
+         * Checks whether the sequence delivers more value than another, or as much in fewer moves
+         *
+         * @param other other sequence
+         * @return true if this sequence is better
+         */
+        private boolean isBetterThan(Solution other) {
+            return value > other.value || (value == other.value && moves < other.moves);
+        }
+    }
+
+}
@@ -1,6 +1,17 @@
 package uk.ac.ed.inf;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Application access entry point
@@ -9,7 +20,7 @@ public class App
 {
     public static void main(String[] args)
     {
-        if (args.length != 5) {
+        if (args.length < 5) {
             System.err.print("Incorrect number of arguments");
             System.exit(0);
         }
@@ -20,9 +31,19 @@ public class App
         String year = args[2];
         String webPort = args[3];
         String databasePort = args[4];
+        HashMap<String, String> options = parseOptions(args);
 
-        int dayInteger = Integer.parseInt(day);
-        int monthInteger = Integer.parseInt(month);
+        int dayInteger = 0;
+        int monthInteger = 0;
+        int yearInteger = 0;
+        try {
+            dayInteger = Integer.parseInt(day);
+            monthInteger = Integer.parseInt(month);
+            yearInteger = Integer.parseInt(year);
+        } catch (NumberFormatException e) {
+            System.err.print("Invalid date");
+            System.exit(0);
+        }
 
         // Check input day is valid
         if (dayInteger < 1 || dayInteger > 31) {
@@ -36,27 +57,306 @@ public class App
         }
 
         // Set up variables
-        String date = month + "/" + day + "/" + year;
+        LocalDate first = null;
+        try {
+            // e.g. 31 02 2022
+            first = LocalDate.of(yearInteger, monthInteger, dayInteger);
+        } catch (DateTimeException e) {
+            System.err.print("Invalid date");
+            System.exit(0);
+        }
+        // batch mode plans every day up to --until=YYYY-MM-DD
+        LocalDate last = first;
+        try {
+            if (options.containsKey("until")) {
+                last = LocalDate.parse(options.get("until"));
+            }
+        } catch (DateTimeParseException e) {
+            System.err.print("Invalid end date");
+            System.exit(0);
+        }
+        if (last.isBefore(first)) {
+            System.err.print("Invalid date range");
+            System.exit(0);
+        }
+        // plan a single drone, or a fleet of drones sharing the map and caches,
+        // each with its own move budget (--budgets=1500,1200) and base (--bases=-3.186874:55.944494,...)
+        List<Integer> budgets = parseBudgets(options.get("budgets"));
+        List<LongLat> bases = parseBases(options.get("bases"));
+        int listedDrones = Math.max(budgets == null ? 1 : budgets.size(), bases == null ? 1 : bases.size());
+        int numberOfDrones = parsePositiveOption(options, "drones", listedDrones, "Invalid number of drones");
+        budgets = perDrone(budgets, numberOfDrones, Drone.DEFAULT_MOVE_BUDGET);
+        if (budgets == null) {
+            System.err.print("Invalid move budgets");
+            System.exit(0);
+        }
+        bases = perDrone(bases, numberOfDrones, null);
+        if (bases == null) {
+            System.err.print("Invalid bases");
+            System.exit(0);
+        }
         String host = "localhost";
 
-        final Menus menu = new Menus(host,webPort);
-        final DatabaseClient database = new DatabaseClient(host, databasePort, menu);
-        final Drone drone = new Drone(host, webPort, menu);
+        // metrics of the whole run, readable through JMX while it runs
+        Metrics.registerMBean();
+        Metrics.startRun();
+
+        // map, menus and What3Words addresses are loaded once for every day,
+        // from a snapshot file if one is given and exists, otherwise from the web server
+        Menus menu = null;
+        CampusMap campusMap = null;
+        final W3WCache w3wCache = new W3WCache(host, webPort);
+        Path snapshotFile = options.containsKey("snapshot") ? Path.of(options.get("snapshot")) : null;
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            try {
+                MapSnapshot snapshot = MapSnapshot.load(snapshotFile);
+                menu = snapshot.getMenus();
+                campusMap = snapshot.getCampusMap();
+                snapshot.seed(w3wCache);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (menu == null) {
+            // menus, landmarks and No-Fly Zones are fetched concurrently, and restaurants
+            // (visited on almost every order) are resolved as soon as the menus arrive
+            CompletableFuture<Menus> menus = Menus.loadAsync(host, webPort);
+            CompletableFuture<CampusMap> map = CampusMap.loadAsync(host, webPort);
+            CompletableFuture<Void> restaurants = menus.thenCompose(m -> {
+                List<CompletableFuture<LongLat>> lookups = new ArrayList<>();
+                for (Restaurant restaurant : m.getRestaurantList()) {
+                    lookups.add(w3wCache.getCoordinatesAsync(restaurant.getLocation()));
+                }
+                return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0]));
+            });
+            try {
+                ClientIO.join(CompletableFuture.allOf(restaurants, map));
+                menu = menus.join();
+                campusMap = map.join();
+            } catch (WebServerException e) {
+                System.err.print("Fatal error: " + e.getMessage());
+                System.exit(1);
+            }
+            if (snapshotFile != null) {
+                try {
+                    MapSnapshot.write(snapshotFile, menu, w3wCache, campusMap);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        // days planned concurrently share a pool of database connections
+        int poolSize = parsePositiveOption(options, "pool", ConnectionPool.DEFAULT_MAX_SIZE,
+                "Invalid connection pool size");
+        final DatabaseClient database = new DatabaseClient(host, databasePort, menu, poolSize);
+
+        Metrics.gauge("w3w.hitRate", w3wCache::getHitRate);
+        Metrics.gauge("w3w.size", w3wCache::size);
+        Metrics.gauge("pool.activeConnections", database.getConnectionPool()::getActiveConnections);
+        Metrics.gauge("pool.borrows", database.getConnectionPool()::getBorrowCount);
+        Metrics.gauge("pool.averageBorrowWaitMillis", database.getConnectionPool()::getAverageBorrowWaitMillis);
+        Metrics.gauge("pool.maxBorrowWaitMillis", database.getConnectionPool()::getMaxBorrowWaitMillis);
+        final BatchPlanner planner = new BatchPlanner(menu, w3wCache, campusMap, database, numberOfDrones);
+        planner.setMoveBudgets(budgets);
+        planner.setBases(bases);
+
+        // choose how routes are calculated; the engine and its graph are built once for every day
+        RoutingEngine routingEngine = createRoutingEngine(options.getOrDefault("routing", "greedy"),
+                campusMap, menu, w3wCache);
+        if (routingEngine == null) {
+            System.err.print("Invalid routing engine");
+            System.exit(0);
+        }
+        planner.setRoutingEngine(routingEngine);
+
+        // choose in which order orders are attempted
+        if ("value".equals(options.get("scheduler"))) {
+            planner.setOrderScheduler(new ValuePerMoveScheduler());
+        } else if ("anneal".equals(options.get("scheduler"))) {
+            // CPU time spent improving every drone's day (--anneal-seconds=30), shared by one search per processor
+            int searches = Runtime.getRuntime().availableProcessors();
+            long cpuMillis = parsePositiveOption(options, "anneal-seconds",
+                    (int) (AnnealingScheduler.DEFAULT_CPU_BUDGET_MILLIS / 1000), "Invalid annealing time") * 1000L;
+            planner.setOrderScheduler(new AnnealingScheduler(cpuMillis / searches, Long.MAX_VALUE, searches, 1));
+        }
+
+        // GeoJSON output: one feature per order (--geojson=orders) and gzip compression (--gzip=true)
+        planner.setSplitByOrder("orders".equals(options.get("geojson")));
+        planner.setGzip(Boolean.parseBoolean(options.get("gzip")));
+
+        // calculate the day's legs in parallel before planning
+        ForkJoinPool legPool = null;
+        if (options.containsKey("threads")) {
+            legPool = new ForkJoinPool(parsePositiveOption(options, "threads", 1, "Invalid number of threads"));
+            planner.setLegPool(legPool);
+        }
 
-        //get all the orders
-        ArrayList<Order> orders = database.getOrdersTable(date);
+        // plan days concurrently, each writing its GeoJSON file and table rows
+        int workers = parsePositiveOption(options, "workers", Runtime.getRuntime().availableProcessors(),
+                "Invalid number of workers");
+        planner.planDays(first, last, workers);
 
-        // execute delivery route
-        drone.greedyOrdersInADay(orders);
+        database.getConnectionPool().printReport();
+        // JSON run report of every metric
+        if (options.containsKey("report")) {
+            try {
+                Metrics.writeReport(Path.of(options.get("report")));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        database.close();
+        if (legPool != null) {
+            legPool.shutdown();
+        }
+    }
 
-        // Get path in GeoJSON file
-        ClientIO.toGeoJSON(drone.getAllMovesSingle(),date);
+    /**
+     * Creates the routing engine every drone uses
+     *
+     * @param name greedy (landmark re-routing), astar (A* search over the move lattice)
+     *             or graph (visibility graph, falling back to A*)
+     * @param campusMap map of the delivery area
+     * @param menu menus whose restaurants are added to the visibility graph
+     * @param w3wCache cache the restaurant locations are resolved with
+     * @return routing engine, null if the name is unknown
+     */
+    private static RoutingEngine createRoutingEngine(String name, CampusMap campusMap, Menus menu,
+                                                     W3WCache w3wCache) {
+        NoFlyZoneIndex noFlyZoneIndex = campusMap.getNoFlyZoneIndex();
+        switch (name) {
+            case "greedy":
+                return new GreedyRoutingEngine(campusMap.getLandmarks(), noFlyZoneIndex);
+            case "astar":
+                return new AStarRoutingEngine(noFlyZoneIndex);
+            case "graph":
+                // routes mostly start or end at a restaurant or at Appleton Tower
+                List<LongLat> pointsOfInterest = new Drone(menu, w3wCache, campusMap).getPointsOfInterest();
+                return new VisibilityGraphRoutingEngine(new VisibilityGraph(campusMap, pointsOfInterest),
+                        noFlyZoneIndex, new AStarRoutingEngine(noFlyZoneIndex));
+            default:
+                return null;
+        }
+    }
 
-        // Create Flightpath Table
-        database.setFlightpathTable(drone.getFlightpath());
+    /**
+     * Parses an option that must be a positive integer, exiting if it is not
+     *
+     * @param options mapping of option names to their values
+     * @param name name of the option
+     * @param defaultValue value used if the option is not given
+     * @param error message printed if the value is invalid
+     * @return value of the option, or defaultValue
+     */
+    private static int parsePositiveOption(HashMap<String, String> options, String name, int defaultValue,
+                                           String error) {
+        if (!options.containsKey(name)) {
+            return defaultValue;
+        }
+        int value = 0;
+        try {
+            value = Integer.parseInt(options.get(name));
+        } catch (NumberFormatException e) {
+            // reported below like any other invalid value
+        }
+        if (value < 1) {
+            System.err.print(error);
+            System.exit(0);
+        }
+        return value;
+    }
 
-        // Create Deliveries Table
-        database.setDeliveriesTable(drone.getDeliveredOrdersInADay());
+    /**
+     * Parses a comma-separated list of move budgets, e.g. 1500,1200
+     *
+     * @param value value of the option, null if it is not given
+     * @return budgets in the order given, an empty list if one is not a positive integer,
+     *          null if the option is not given
+     */
+    private static List<Integer> parseBudgets(String value) {
+        if (value == null) {
+            return null;
+        }
+        List<Integer> budgets = new ArrayList<>();
+        for (String budget : value.split(",", -1)) {
+            try {
+                budgets.add(Integer.parseInt(budget));
+            } catch (NumberFormatException e) {
+                return new ArrayList<>();
+            }
+            if (budgets.get(budgets.size() - 1) < 1) {
+                return new ArrayList<>();
+            }
+        }
+        return budgets;
+    }
+
+    /**
+     * Parses a comma-separated list of bases, each a longitude and latitude separated by a colon,
+     * e.g. -3.186874:55.944494,-3.1915:55.9435
+     *
+     * @param value value of the option, null if it is not given
+     * @return bases in the order given, an empty list if one is malformed or outside the
+     *          confinement area, null if the option is not given
+     */
+    private static List<LongLat> parseBases(String value) {
+        if (value == null) {
+            return null;
+        }
+        List<LongLat> bases = new ArrayList<>();
+        for (String base : value.split(",", -1)) {
+            String[] coordinates = base.split(":", -1);
+            LongLat location;
+            try {
+                location = new LongLat(Double.parseDouble(coordinates[0]), Double.parseDouble(coordinates[1]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return new ArrayList<>();
+            }
+            if (coordinates.length != 2 || !location.isConfined()) {
+                return new ArrayList<>();
+            }
+            bases.add(location);
+        }
+        return bases;
+    }
 
+    /**
+     * Gives every drone a value from a list given on the command line.
+     * A single value is given to every drone.
+     *
+     * @param values values given, null if the option is not given
+     * @param numberOfDrones number of drones
+     * @param defaultValue value of every drone if the option is not given
+     * @return one value per drone, null if the list has neither one value nor one per drone
+     */
+    private static <T> List<T> perDrone(List<T> values, int numberOfDrones, T defaultValue) {
+        if (values == null) {
+            return Collections.nCopies(numberOfDrones, defaultValue);
+        }
+        if (values.size() == 1) {
+            return Collections.nCopies(numberOfDrones, values.get(0));
+        }
+        return values.size() == numberOfDrones ? values : null;
+    }
+
+    /**
+     * Parses the optional arguments following the five positional ones.
+     * Options have the form --name=value, e.g. --threads=8
+     *
+     * @param args command line arguments
+     * @return mapping of option names to their values
+     */
+    private static HashMap<String, String> parseOptions(String[] args) {
+        HashMap<String, String> options = new HashMap<>();
+        for (int i = 5; i < args.length; i++) {
+            String option = args[i];
+            int separator = option.indexOf('=');
+            if (!option.startsWith("--") || separator < 0) {
+                System.err.print("Invalid option " + option);
+                System.exit(0);
+            }
+            options.put(option.substring(2, separator), option.substring(separator + 1));
+        }
+        return options;
     }
 }
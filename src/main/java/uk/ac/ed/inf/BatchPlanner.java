@@ -0,0 +1,370 @@
+package uk.ac.ed.inf;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Class planning the deliveries of a range of days within a single run.
+ * The map, menus and What3Words cache are loaded once and shared by every day,
+ * as are the leg costs calculated by the drones. Days are planned concurrently
+ * on a pool of worker threads; each day gets its own drones, GeoJSON file and
+ * rows in the DELIVERIES and FLIGHTPATH tables, which replace that day's rows only.
+ */
+public class BatchPlanner {
+
+    /**
+     * Date format used by the database and GeoJSON file names
+     */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+    /**
+     * Menus object used to search through Restaurant's menus
+     */
+    private final Menus menu;
+
+    /**
+     * Cache of What3Words address resolutions, shared by every day
+     */
+    private final W3WCache w3wCache;
+
+    /**
+     * Map of the delivery area, shared by every day
+     */
+    private final CampusMap campusMap;
+
+    /**
+     * Database the orders are read from and the tables written to
+     */
+    private final DatabaseClient database;
+
+    /**
+     * Number of drones delivering each day's orders
+     */
+    private final int numberOfDrones;
+
+    /**
+     * Base of every drone, null for Appleton Tower
+     */
+    private List<LongLat> bases;
+
+    /**
+     * Maximum number of moves of every drone
+     */
+    private List<Integer> moveBudgets;
+
+    /**
+     * Leg costs shared by every day's drones, created with the first day's routing engine
+     */
+    private LegMatrix legMatrix;
+
+    /**
+     * Algorithm calculating every drone's routes, null for the drones' default (greedy)
+     */
+    private RoutingEngine routingEngine;
+
+    /**
+     * Strategy deciding in which order each drone attempts its orders, null for the drone's default
+     */
+    private OrderScheduler orderScheduler;
+
+    /**
+     * Pool the drones calculate their legs on, null to calculate legs on demand
+     */
+    private ForkJoinPool legPool;
+
+    /**
+     * Whether every order's moves are written as a separate GeoJSON feature
+     */
+    private boolean splitByOrder;
+
+    /**
+     * Whether GeoJSON files are gzipped
+     */
+    private boolean gzip;
+
+    /**
+     * BatchPlanner class constructor
+     *
+     * @param menu Menus object to acquire Restaurant information
+     * @param w3wCache cache used to resolve What3Words addresses
+     * @param campusMap map of the delivery area
+     * @param database database the orders are read from and the tables written to
+     * @param numberOfDrones number of drones delivering each day's orders
+     */
+    public BatchPlanner(Menus menu, W3WCache w3wCache, CampusMap campusMap, DatabaseClient database,
+                        int numberOfDrones) {
+        this.menu = menu;
+        this.w3wCache = w3wCache;
+        this.campusMap = campusMap;
+        this.database = database;
+        this.numberOfDrones = numberOfDrones;
+        this.bases = Collections.nCopies(numberOfDrones, null);
+        this.moveBudgets = Collections.nCopies(numberOfDrones, Drone.DEFAULT_MOVE_BUDGET);
+    }
+
+    /**
+     * Setter method for the base every drone starts from and returns to
+     *
+     * @param bases base of every drone, null for Appleton Tower (default)
+     * @throws IllegalArgumentException if there is not one base per drone
+     */
+    public void setBases(List<LongLat> bases) {
+        if (bases.size() != numberOfDrones) {
+            throw new IllegalArgumentException("Expected " + numberOfDrones + " bases, got " + bases.size());
+        }
+        this.bases = new ArrayList<>(bases);
+    }
+
+    /**
+     * Setter method for the number of moves every drone can perform in a day
+     *
+     * @param moveBudgets maximum number of moves of every drone, 1500 by default
+     * @throws IllegalArgumentException if there is not one budget per drone
+     */
+    public void setMoveBudgets(List<Integer> moveBudgets) {
+        if (moveBudgets.size() != numberOfDrones) {
+            throw new IllegalArgumentException("Expected " + numberOfDrones + " move budgets, got "
+                    + moveBudgets.size());
+        }
+        this.moveBudgets = new ArrayList<>(moveBudgets);
+    }
+
+    /**
+     * Setter method for the strategy deciding in which order each drone attempts its orders.
+     * The scheduler is shared by the days planned concurrently, so it must be stateless.
+     *
+     * @param orderScheduler scheduler given to every drone
+     */
+    public void setOrderScheduler(OrderScheduler orderScheduler) {
+        this.orderScheduler = orderScheduler;
+    }
+
+    /**
+     * Setter method for the algorithm calculating every drone's routes.
+     * The engine is shared by the days planned concurrently, so it must be thread-safe.
+     * Must be set before the first day is planned, as the leg matrix is tied to its engine.
+     *
+     * @param routingEngine routing engine given to every drone
+     */
+    public void setRoutingEngine(RoutingEngine routingEngine) {
+        this.routingEngine = routingEngine;
+    }
+
+    /**
+     * Setter method for the pool the drones calculate their legs on
+     *
+     * @param legPool fork-join pool, null to calculate legs on demand (default)
+     */
+    public void setLegPool(ForkJoinPool legPool) {
+        this.legPool = legPool;
+    }
+
+    /**
+     * Setter method for whether every order's moves are written as a separate GeoJSON feature
+     *
+     * @param splitByOrder true for one feature per order, false for one feature per drone (default)
+     */
+    public void setSplitByOrder(boolean splitByOrder) {
+        this.splitByOrder = splitByOrder;
+    }
+
+    /**
+     * Setter method for whether GeoJSON files are gzipped
+     *
+     * @param gzip true to write .geojson.gz files, false for plain .geojson files (default)
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Plans every day from first to last (both included) on a pool of worker threads.
+     * The DELIVERIES and FLIGHTPATH tables are created if needed, and every day's rows replace
+     * the ones a previous run wrote for that day. Rows of days outside the range are kept.
+     * A day that fails, including one whose rows cannot be written, is reported, is not
+     * counted as planned, and does not stop the others.
+     *
+     * @param first first day to plan
+     * @param last last day to plan
+     * @param workers number of days planned at the same time
+     * @return number of days planned successfully
+     */
+    public int planDays(LocalDate first, LocalDate last, int workers) {
+        try {
+            database.ensureTables();
+        } catch (IllegalStateException e) {
+            // no day could be written
+            e.printStackTrace();
+            return 0;
+        }
+        // every row written by this run records its id
+        String runId = UUID.randomUUID().toString();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        int planned = 0;
+        try {
+            List<Future<Fleet>> days = new ArrayList<>();
+            for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+                LocalDate date = day;
+                days.add(pool.submit(() -> planDay(date, runId)));
+            }
+            for (Future<Fleet> day : days) {
+                try {
+                    day.get();
+                    planned++;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Planned " + planned + " days from " + first.format(DATE_FORMAT)
+                + " to " + last.format(DATE_FORMAT) + ".");
+        return planned;
+    }
+
+    /**
+     * Plans a single day's deliveries as a run of its own, writes its GeoJSON file and
+     * replaces its deliveries and flightpath in the database tables.
+     *
+     * @param day day to plan
+     * @throws IllegalStateException if the day's orders cannot be read or its rows written
+     * @return fleet which delivered the day's orders
+     */
+    public Fleet planDay(LocalDate day) {
+        return planDay(day, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Plans a single day's deliveries, writes its GeoJSON file and replaces its
+     * deliveries and flightpath in the database tables in a single transaction.
+     *
+     * @param day day to plan
+     * @param runId identifier of the run, recorded in every row written
+     * @throws IllegalStateException if the day's orders cannot be read or its rows written
+     * @return fleet which delivered the day's orders
+     */
+    public Fleet planDay(LocalDate day, String runId) {
+        long startTime = System.nanoTime();
+        String date = day.format(DATE_FORMAT);
+        Fleet fleet = Fleet.create(menu, w3wCache, campusMap, bases, moveBudgets);
+        // days are planned concurrently, so their summaries name them
+        fleet.setDate(date);
+        for (Drone drone : fleet.getDrones()) {
+            drone.setLegMatrix(getLegMatrix(drone));
+            if (orderScheduler != null) {
+                drone.setOrderScheduler(orderScheduler);
+            }
+            drone.setLegPool(legPool);
+        }
+
+        ArrayList<Order> orders = readOrders(date, fleet);
+        Metrics.recordSince("planning.read", startTime);
+
+        long planningTime = System.nanoTime();
+        if (numberOfDrones == 1) {
+            Drone drone = fleet.getDrones().get(0);
+            // execute delivery route
+            drone.greedyOrdersInADay(orders);
+        } else {
+            // execute every drone's delivery route
+            fleet.deliverOrdersInADay(orders);
+        }
+        Metrics.recordSince("planning.schedule", planningTime);
+        Metrics.add("planning.orders", orders.size());
+        Metrics.add("planning.ordersDelivered", fleet.getDeliveredOrdersInADay().size());
+        for (Drone drone : fleet.getDrones()) {
+            Metrics.add("planning.moves", drone.getFlightpath().size());
+        }
+        // stream every drone's path to a single GeoJSON file
+        ClientIO.toFlightpathGeoJSON(numberOfDrones == 1 ? "drone" : "fleet", fleet.getFlightpaths(), date,
+                splitByOrder, gzip);
+
+        // a failed write fails the day
+        database.writeDay(day, runId, fleet.getDeliveredOrdersInADay(), fleet.getFlightpaths());
+        Metrics.recordSince("planning.day", startTime);
+        return fleet;
+    }
+
+    /**
+     * Reads the day's orders as they arrive from the database. While later orders are still
+     * arriving, every order is priced and its delivery address resolved; with a leg pool,
+     * the legs between the address, the restaurants and the drones' bases are calculated too.
+     *
+     * @param date Date with "MM/DD/YYYY" format
+     * @param fleet fleet delivering the day's orders
+     * @return the day's orders, with their addresses resolved
+     */
+    private ArrayList<Order> readOrders(String date, Fleet fleet) {
+        LegMatrix legs = fleet.getDrones().get(0).getLegMatrix();
+        List<LongLat> restaurants = new ArrayList<>();
+        for (Restaurant restaurant : menu.getRestaurantList()) {
+            restaurants.add(w3wCache.getCoordinates(restaurant.getLocation()));
+        }
+        Set<LongLat> bases = new LinkedHashSet<>();
+        for (Drone drone : fleet.getDrones()) {
+            bases.add(drone.getBase());
+        }
+
+        ArrayList<Order> orders = new ArrayList<>();
+        Set<String> addresses = new HashSet<>();
+        List<CompletableFuture<?>> arrivals = new ArrayList<>();
+        try (Stream<Order> stream = database.streamOrders(date)) {
+            stream.forEach(order -> {
+                orders.add(order);
+                // price the order now, pricing is cached by the order
+                order.getCost();
+                if (!addresses.add(order.getDeliverTo())) {
+                    return;
+                }
+                CompletableFuture<LongLat> address = w3wCache.getCoordinatesAsync(order.getDeliverTo());
+                if (legPool != null) {
+                    arrivals.add(address.thenAcceptAsync(location -> {
+                        List<LongLat> stop = Collections.singletonList(location);
+                        legs.precompute(restaurants, stop);
+                        legs.precompute(stop, restaurants);
+                        legs.precompute(stop, bases);
+                    }, legPool));
+                } else {
+                    arrivals.add(address);
+                }
+            });
+        }
+        // wait for the addresses (and legs) still being worked on
+        ClientIO.join(CompletableFuture.allOf(arrivals.toArray(new CompletableFuture<?>[0])));
+        return orders;
+    }
+
+    /**
+     * Gets the leg costs shared by every day, created for the planner's routing engine
+     * or, without one, from the first drone's leg matrix
+     *
+     * @param drone drone being set up
+     * @return shared leg matrix
+     */
+    private synchronized LegMatrix getLegMatrix(Drone drone) {
+        if (legMatrix == null) {
+            legMatrix = routingEngine == null ? drone.getLegMatrix() : new LegMatrix(routingEngine);
+        }
+        return legMatrix;
+    }
+
+}
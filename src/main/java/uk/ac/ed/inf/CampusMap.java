@@ -0,0 +1,114 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.FeatureCollection;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class holding the map information the drone flies over:
+ * landmarks and No-Fly Zones.
+ * Loaded once and shared by every drone and route calculation.
+ */
+public class CampusMap {
+
+    /**
+     * All available landmarks to be used throughout the delivery process.
+     */
+    private final ArrayList<LongLat> landmarks;
+
+    /**
+     * Vertices of each No-Fly Zone polygon's outer ring
+     */
+    private final List<List<LongLat>> noFlyZoneOutlines;
+
+    /**
+     * All polygon perimeter lines to be used
+     * throughout the delivery process.
+     */
+    private final List<Line2D> polygonPerimeters;
+
+    /**
+     * Spatial index over the polygon perimeters
+     */
+    private final NoFlyZoneIndex noFlyZoneIndex;
+
+    /**
+     * CampusMap class constructor
+     *
+     * @param landmarks all available landmarks
+     * @param noFlyZoneOutlines vertices of each No-Fly Zone polygon's outer ring
+     */
+    public CampusMap(ArrayList<LongLat> landmarks, List<List<LongLat>> noFlyZoneOutlines) {
+        this.landmarks = landmarks;
+        this.noFlyZoneOutlines = noFlyZoneOutlines;
+        this.polygonPerimeters = GeoClient.getPolygonBorders(noFlyZoneOutlines);
+        this.noFlyZoneIndex = new NoFlyZoneIndex(polygonPerimeters);
+    }
+
+    /**
+     * Loads landmarks and No-Fly Zones from the web server
+     *
+     * @param machineName web server host connectivity name
+     * @param port web server connectivity port
+     * @throws WebServerException if the map cannot be fetched from the web server
+     * @return map of the delivery area
+     */
+    public static CampusMap load(String machineName, String port) {
+        return ClientIO.join(loadAsync(machineName, port));
+    }
+
+    /**
+     * Loads landmarks and No-Fly Zones from the web server without blocking.
+     * Both files are requested at the same time.
+     *
+     * @param machineName web server host connectivity name
+     * @param port web server connectivity port
+     * @return future map of the delivery area
+     */
+    public static CompletableFuture<CampusMap> loadAsync(String machineName, String port) {
+        CompletableFuture<FeatureCollection> landmarks = ClientIO.getGeoJSONAsync(machineName, port, "landmarks");
+        CompletableFuture<FeatureCollection> noFlyZones = ClientIO.getGeoJSONAsync(machineName, port, "no-fly-zones");
+        return landmarks.thenCombine(noFlyZones, (l, z) ->
+                new CampusMap(GeoClient.findAllLandMarks(l), GeoClient.getNoFlyZoneOutlines(z)));
+    }
+
+    /**
+     * Getter method for all available landmarks
+     *
+     * @return landmarks
+     */
+    public ArrayList<LongLat> getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Getter method for the vertices of each No-Fly Zone polygon's outer ring
+     *
+     * @return noFlyZoneOutlines
+     */
+    public List<List<LongLat>> getNoFlyZoneOutlines() {
+        return noFlyZoneOutlines;
+    }
+
+    /**
+     * Getter method for all No-Fly Zone perimeter lines
+     *
+     * @return polygonPerimeters
+     */
+    public List<Line2D> getPolygonPerimeters() {
+        return polygonPerimeters;
+    }
+
+    /**
+     * Getter method for the spatial index over the No-Fly Zone perimeters
+     *
+     * @return noFlyZoneIndex
+     */
+    public NoFlyZoneIndex getNoFlyZoneIndex() {
+        return noFlyZoneIndex;
+    }
+
+}
@@ -4,61 +4,225 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.mapbox.geojson.*;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Class which performs HTTP requests
+ * Class which performs HTTP requests.
+ * Requests are sent asynchronously on a single shared client, with a bound on the
+ * number of requests in flight, timeouts and retries; the blocking methods wait for
+ * the asynchronous ones. Failed requests throw a WebServerException.
  */
 public class ClientIO {
 
+    /**
+     * Maximum number of requests sent to the web server at the same time.
+     * Further requests wait in a queue, without blocking the caller.
+     */
+    public static final int MAX_CONCURRENT_REQUESTS = 16;
+
+    /**
+     * Number of times a request is retried after a connection failure, a timeout
+     * or a server error, before it fails
+     */
+    public static final int MAX_RETRIES = 3;
+
+    /**
+     * Time waited before the first retry, doubled on every further retry
+     */
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    /**
+     * Maximum time waited to connect to the web server
+     */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time waited for the web server to answer a request
+     */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
     /**
      * Single Client created
      */
-    private static final HttpClient client = HttpClient.newHttpClient();
+    private static final HttpClient client = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+
+    /**
+     * Permits for the requests in flight, one per request up to MAX_CONCURRENT_REQUESTS
+     */
+    private static final Semaphore permits = new Semaphore(MAX_CONCURRENT_REQUESTS);
+
+    /**
+     * Requests waiting for a permit, in submission order
+     */
+    private static final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Single Gson instance shared by all unmarshalling requests (Gson is thread-safe)
+     */
+    private static final Gson gson = new Gson();
+
+    /**
+     * Unmarshalling type of What3Words details responses
+     */
+    private static final Type LOCATION_TYPE = new TypeToken<Location>() {}.getType();
 
     /**
-     * Performs a GET HTTP request and returns a String with the remote endpoint's reply
+     * Performs a GET HTTP request and returns a String with the remote endpoint's reply.
+     * Blocks until the reply arrives; see getRequestAsync.
      *
      * @param endpoint : full website address to information location on website
-     * @throws IOException if interrupted or illegal connection
-     * @throws InterruptedException if connection with the web server has been interrupted
-     * @throws IllegalArgumentException if endpoint contains invalid arguments
+     * @throws WebServerException if the web server cannot be reached or does not answer with HTTP 200
      * @return String request from website
      */
     public static String getRequest(String endpoint) {
-        // HttpRequest assumes that it is a GET request by default.
-        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(endpoint)).build();
-        HttpResponse<String> response = null;
+        return join(getRequestAsync(endpoint));
+    }
 
+    /**
+     * Sends a GET HTTP request without blocking and returns the remote endpoint's future reply.
+     * At most MAX_CONCURRENT_REQUESTS requests are in flight at once, every attempt times out
+     * after REQUEST_TIMEOUT, and connection failures, timeouts and server errors (5xx, 429)
+     * are retried up to MAX_RETRIES times with exponential backoff.
+     *
+     * @param endpoint full website address to information location on website
+     * @return future reply, completed exceptionally with a WebServerException if the request fails
+     */
+    public static CompletableFuture<String> getRequestAsync(String endpoint) {
+        HttpRequest request;
         try {
-            // Call the send method on the client
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            // HttpRequest assumes that it is a GET request by default.
+            request = HttpRequest.newBuilder().uri(URI.create(endpoint)).timeout(REQUEST_TIMEOUT).build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new WebServerException(endpoint, e));
+        }
+        return sendAsync(request, endpoint, 0);
+    }
 
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("Failed with HTTP code: " + response.statusCode());
+    /**
+     * Sends an attempt of a request once a permit is available, retrying it if it fails
+     *
+     * @param request request to send
+     * @param endpoint full website address of the request
+     * @param attempt number of attempts already made
+     * @return future reply
+     */
+    private static CompletableFuture<String> sendAsync(HttpRequest request, String endpoint, int attempt) {
+        return withPermit(() -> {
+                    long startTime = System.nanoTime();
+                    return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                            .whenComplete((response, error) -> {
+                                Metrics.recordSince("http.request", startTime);
+                                Metrics.increment("http.requests");
+                            });
+                })
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() == 200) {
+                        return CompletableFuture.completedFuture(response.body());
+                    }
+                    WebServerException failure;
+                    boolean retry;
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        failure = new WebServerException(endpoint, cause);
+                        // connection failures and timeouts are IOExceptions
+                        retry = cause instanceof IOException;
+                    } else {
+                        failure = new WebServerException(endpoint, response.statusCode());
+                        retry = response.statusCode() >= 500 || response.statusCode() == 429;
+                    }
+                    if (!retry || attempt >= MAX_RETRIES) {
+                        Metrics.increment("http.failures");
+                        return CompletableFuture.<String>failedFuture(failure);
+                    }
+                    Metrics.increment("http.retries");
+                    Executor backoff = CompletableFuture.delayedExecutor(RETRY_BACKOFF_MILLIS << attempt,
+                            TimeUnit.MILLISECONDS);
+                    return CompletableFuture.runAsync(() -> { }, backoff)
+                            .thenCompose(ignored -> sendAsync(request, endpoint, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Starts an asynchronous task once a request permit is available. The permit is
+     * released when the task completes, starting the next waiting task.
+     *
+     * @param task task sending a request
+     * @param <T> type of the task's result
+     * @return future result of the task
+     */
+    private static <T> CompletableFuture<T> withPermit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            CompletableFuture<T> started;
+            try {
+                started = task.get();
+            } catch (RuntimeException e) {
+                started = CompletableFuture.failedFuture(e);
             }
+            started.whenComplete((value, error) -> {
+                permits.release();
+                startWaiting();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        startWaiting();
+        return result;
+    }
 
-        } catch (IOException | InterruptedException | IllegalArgumentException e) {
-            System.out.println("Fatal error: Unable to connect to " + endpoint);
-            // Exit the application
-            System.exit(1);
+    /**
+     * Starts waiting tasks while permits are available
+     */
+    private static void startWaiting() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                // another thread took the last task
+                permits.release();
+            } else {
+                next.run();
+            }
         }
-
-        return response.body();
     }
 
+    /**
+     * Waits for a future reply, rethrowing the exception it failed with
+     *
+     * @param future future reply
+     * @param <T> type of the reply
+     * @throws WebServerException if the request failed
+     * @return reply
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
     /**
      * Performs a GET HTTP request for geoJSON objects.
@@ -68,68 +232,70 @@ public class ClientIO {
      * @param machineName Website connectivity host machine name
      * @param port Website connectivity port connection
      * @param objective file name of geoJSON file
-     * @throws Exception if illegal connection is attempted or connection is interrupted
+     * @throws WebServerException if the web server cannot be reached or does not answer with HTTP 200
      * @return FeatureCollection object containing all information from the geoJSON file
      */
     public static FeatureCollection getGeoJSON(String machineName, String port, String objective) {
+        return join(getGeoJSONAsync(machineName, port, objective));
+    }
+
+    /**
+     * Performs a GET HTTP request for geoJSON objects without blocking
+     *
+     * @param machineName Website connectivity host machine name
+     * @param port Website connectivity port connection
+     * @param objective file name of geoJSON file
+     * @return future FeatureCollection object containing all information from the geoJSON file
+     */
+    public static CompletableFuture<FeatureCollection> getGeoJSONAsync(String machineName, String port,
+                                                                      String objective) {
         // construct endpoint
         String endpoint = "http://" + machineName + ":" + port + "/buildings/" + objective + ".geojson";
-
-        FeatureCollection featureCollection = null;
-        try {
-            String request = ClientIO.getRequest(endpoint);
-            // dump web-server contents into FeatureCollection object
-            featureCollection = FeatureCollection.fromJson(request);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return featureCollection;
+        // dump web-server contents into FeatureCollection object
+        return getRequestAsync(endpoint).thenApply(FeatureCollection::fromJson);
     }
 
     /**
-     * Creates geoJSON file and saves it to the local directory.
+     * Streams the flightpaths of one or more drones to a geoJSON file in the local directory,
+     * without building the feature collection in memory. Each drone's path is a LineString
+     * feature with a droneId property, or one feature per order with an orderNo property too.
      *
-     * @param positions List of all the drone's positions throughout the delivery process
+     * @param prefix file name prefix, "drone" or "fleet"
+     * @param flightpaths every drone's flightpath, keyed by drone id
      * @param date date corresponding to the delivery process generated
      *             by the algorithm on the orders requested on that date.
-     * @throws IOException if I/O connection is interrupted
+     * @param splitByOrder true to write every order's moves as a separate feature
+     * @param gzip true to gzip the file, saved with a .geojson.gz extension
      */
-    public static void toGeoJSON(ArrayList<LongLat> positions, String date) {
-
-        // transform LongLat objects into FeatureCollection
-        List<Point> pl = new ArrayList<>();
-        for (LongLat position : positions) {
-            Point p = Point.fromLngLat(position.longitude,position.latitude);
-            pl.add(p);
-        }
-        LineString ls = LineString.fromLngLats(pl);
-        Feature f = Feature.fromGeometry(ls);
-
-        FeatureCollection fc = FeatureCollection.fromFeature(f);
-
-        // get working directory
-        String fileName = getFileName(date);
-        String userDirectory = System.getProperty("user.dir");
-        String finalPath = userDirectory + File.separator + fileName;
-
+    public static void toFlightpathGeoJSON(String prefix, Map<Integer, Flightpath> flightpaths,
+                                           String date, boolean splitByOrder, boolean gzip) {
+        String fileName = getFileName(prefix, date) + (gzip ? ".gz" : "");
         try {
-            // Save file to local working directory
-            FileWriter file = new FileWriter(finalPath,true);
-            Files.newBufferedWriter(Path.of(finalPath), new StandardOpenOption[]{StandardOpenOption.TRUNCATE_EXISTING});
-            file.write(fc.toJson());
-            file.close();
+            GeoJSONWriter.write(getFilePath(fileName), flightpaths, splitByOrder, gzip);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Gets the path of a file in the local working directory
+     *
+     * @param fileName name of the file
+     * @return path of the file
+     */
+    private static Path getFilePath(String fileName) {
+        // get working directory
+        return Path.of(System.getProperty("user.dir"), fileName);
+    }
+
     /**
      *  Gets correct file name and ensures correct formatting
      *
+     * @param prefix file name prefix, "drone" or "fleet"
      * @param date MM/DD/YYYY date format
      * @return complete file name to be saved as
      */
-    private static String getFileName(String date) {
+    private static String getFileName(String prefix, String date) {
 
         String[] splitDate = date.split("\\/");
         String day = splitDate[1];
@@ -137,7 +303,7 @@ public class ClientIO {
         String year = splitDate[2];
         String hyphen = "-";
         // build final filename
-        return "drone" + hyphen + day + hyphen + month + hyphen + year + ".geojson";
+        return prefix + hyphen + day + hyphen + month + hyphen + year + ".geojson";
     }
 
 
@@ -149,37 +315,32 @@ public class ClientIO {
      * @param machineName Website connectivity host machine name
      * @param port Website connectivity port connection
      * @param W3W What3Words location encoding. Denotes a specific location on the map
-     * @throws Exception denoting corresponding exception if illegal
-     *          arguments used or connection is interrupted.
+     * @throws WebServerException if the web server cannot be reached or does not answer with HTTP 200
      * @return LongLat object representing a location in the map.
      */
     public static LongLat getW3WCoordinates(String machineName, String port, String W3W) {
+        return join(getW3WCoordinatesAsync(machineName, port, W3W));
+    }
 
+    /**
+     * Resolves a What3Words location encoding without blocking
+     *
+     * @param machineName Website connectivity host machine name
+     * @param port Website connectivity port connection
+     * @param W3W What3Words location encoding. Denotes a specific location on the map
+     * @return future LongLat object representing a location in the map.
+     */
+    public static CompletableFuture<LongLat> getW3WCoordinatesAsync(String machineName, String port, String W3W) {
         String fixedW3W = W3W.replaceAll("\\.", "/");
         // Construct endpoint request to access coordinates
         String endpoint = "http://" + machineName + ":" + port + "/words/" + fixedW3W + "/details.json";
 
-        // Set up response recipient
-        Location address = null;
-        try {
-            String request = ClientIO.getRequest(endpoint);
+        return getRequestAsync(endpoint).thenApply(request -> {
             // unmarshal response into Location object
-            Type listType = new TypeToken<Location>() {}.getType();
-            address = new Gson().fromJson(request, listType);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        // Cast W3W format to LongLat
-        double longitude = 0;
-        double latitude = 0;
-        if (address != null) {
-            longitude = address.getCoordinates().lng;
-            latitude = address.getCoordinates().lat;
-        }
-
-        return new LongLat(longitude, latitude);
+            Location address = gson.fromJson(request, LOCATION_TYPE);
+            // Cast W3W format to LongLat
+            return new LongLat(address.getCoordinates().lng, address.getCoordinates().lat);
+        });
     }
 
 
@@ -0,0 +1,457 @@
+package uk.ac.ed.inf;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe pool of JDBC connections to a single database.
+ * At most maxSize connections are borrowed at once; further borrowers wait for one to be returned.
+ * Borrowed connections are wrappers whose close() returns the underlying connection to the pool,
+ * so callers use them with try-with-resources exactly like unpooled connections.
+ * Connections that sat idle for a while are validated before being lent again, and
+ * connections idle for longer than the idle timeout are closed in the background.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Default maximum number of connections open at once
+     */
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    /**
+     * Default time after which an idle connection is closed
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Maximum time a borrower waits for a connection before failing
+     */
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Connections idle for less than this are lent again without validation
+     */
+    private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Maximum time waited for a connection to answer its validation
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * JDBC URL connections are opened to
+     */
+    private final String jdbcUrl;
+
+    /**
+     * Maximum number of connections open at once
+     */
+    private final int maxSize;
+
+    /**
+     * Time after which an idle connection is closed, in nanoseconds
+     */
+    private final long idleTimeoutNanos;
+
+    /**
+     * One permit per connection that may still be borrowed
+     */
+    private final Semaphore available;
+
+    /**
+     * Idle connections, most recently returned first
+     */
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Background thread closing connections idle for too long
+     */
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Number of connections currently borrowed
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Number of connections borrowed since the pool was created
+     */
+    private final LongAdder borrows = new LongAdder();
+
+    /**
+     * Total time spent waiting for a connection, in nanoseconds
+     */
+    private final LongAdder borrowWaitNanos = new LongAdder();
+
+    /**
+     * Longest time spent waiting for a connection, in nanoseconds
+     */
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+
+    /**
+     * Number of physical connections opened
+     */
+    private final LongAdder created = new LongAdder();
+
+    /**
+     * Number of idle connections closed by the evictor or failing validation
+     */
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * Whether the pool has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * ConnectionPool class constructor with the default idle timeout
+     *
+     * @param jdbcUrl JDBC URL connections are opened to
+     * @param maxSize maximum number of connections open at once
+     */
+    public ConnectionPool(String jdbcUrl, int maxSize) {
+        this(jdbcUrl, maxSize, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * ConnectionPool class constructor
+     *
+     * @param jdbcUrl JDBC URL connections are opened to
+     * @param maxSize maximum number of connections open at once
+     * @param idleTimeoutMillis time after which an idle connection is closed
+     * @throws IllegalArgumentException if the size or idle timeout is not positive
+     */
+    public ConnectionPool(String jdbcUrl, int maxSize, long idleTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeoutMillis);
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.available = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, reusing an idle one if possible and opening a new one otherwise.
+     * Closing the returned connection gives it back to the pool.
+     *
+     * @throws SQLException if the pool is closed, no connection is returned in time,
+     *          or a new connection cannot be opened
+     * @return borrowed connection
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long startTime = System.nanoTime();
+        try {
+            if (!available.tryAcquire(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No connection returned to the pool within "
+                        + BORROW_TIMEOUT_MILLIS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        long wait = System.nanoTime() - startTime;
+        borrows.increment();
+        borrowWaitNanos.add(wait);
+        maxBorrowWaitNanos.accumulateAndGet(wait, Math::max);
+
+        try {
+            Connection connection = takeIdle();
+            if (connection == null) {
+                connection = DriverManager.getConnection(jdbcUrl);
+                created.increment();
+            }
+            active.incrementAndGet();
+            return wrap(connection);
+        } catch (SQLException | RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the most recently returned idle connection that is still valid.
+     * Connections which have been idle for a while are validated first, and closed if invalid.
+     *
+     * @return valid idle connection, null if there is none
+     */
+    private Connection takeIdle() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            boolean valid;
+            try {
+                valid = System.nanoTime() - candidate.returnedAt < VALIDATION_INTERVAL_NANOS
+                        || candidate.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                valid = false;
+            }
+            if (valid) {
+                return candidate.connection;
+            }
+            evicted.increment();
+            closeQuietly(candidate.connection);
+        }
+        return null;
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. Unfinished transactions are rolled back
+     * and auto-commit is switched back on; connections which cannot be reset are closed.
+     *
+     * @param connection underlying connection of a borrowed wrapper
+     */
+    private void giveBack(Connection connection) {
+        active.decrementAndGet();
+        try {
+            boolean reusable = !closed && !connection.isClosed();
+            if (reusable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (reusable) {
+                connection.clearWarnings();
+                IdleConnection returned = new IdleConnection(connection, System.nanoTime());
+                idle.offerFirst(returned);
+                // the pool may have been closed while the connection was being reset
+                if (closed && idle.remove(returned)) {
+                    closeQuietly(connection);
+                }
+            } else {
+                closeQuietly(connection);
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            available.release();
+        }
+    }
+
+    /**
+     * Closes the connections which have been idle for longer than the idle timeout
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        // the oldest idle connections are at the end of the deque
+        Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            IdleConnection candidate = oldestFirst.next();
+            if (now - candidate.returnedAt < idleTimeoutNanos) {
+                break;
+            }
+            // a borrower may have taken it meanwhile
+            if (idle.removeLastOccurrence(candidate)) {
+                evicted.increment();
+                closeQuietly(candidate.connection);
+            }
+        }
+    }
+
+    /**
+     * Wraps a connection so that closing it returns it to the pool.
+     * The wrapper refuses every call once it has been closed.
+     *
+     * @param connection underlying connection
+     * @return borrowed connection
+     */
+    private Connection wrap(Connection connection) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            giveBack(connection);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || connection.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled " + connection;
+                    default:
+                        if (returned) {
+                            throw new SQLException("Connection has been returned to the pool");
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Closes the pool and every idle connection. Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            closeQuietly(candidate.connection);
+        }
+    }
+
+    /**
+     * Closes a physical connection, reporting failures
+     *
+     * @param connection connection to close
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
+    }
+
+    /**
+     * Prints the pool's usage: connections borrowed and opened, and time spent waiting for them
+     */
+    public void printReport() {
+        System.out.println("Connection pool: " + getBorrowCount() + " borrows, "
+                + getCreatedConnections() + " connections opened, " + getEvictedConnections() + " evicted, "
+                + String.format("%.3f", getAverageBorrowWaitMillis()) + " ms average wait, "
+                + String.format("%.3f", getMaxBorrowWaitMillis()) + " ms longest wait.");
+    }
+
+    /**
+     * Getter method for the maximum number of connections open at once
+     *
+     * @return maxSize
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Getter method for the number of connections currently borrowed
+     *
+     * @return active connections
+     */
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    /**
+     * Getter method for the number of open connections waiting to be borrowed
+     *
+     * @return idle connections
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Getter method for the number of connections borrowed since the pool was created
+     *
+     * @return borrows
+     */
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    /**
+     * Getter method for the number of physical connections opened
+     *
+     * @return created connections
+     */
+    public long getCreatedConnections() {
+        return created.sum();
+    }
+
+    /**
+     * Getter method for the number of idle connections closed for being idle too long or invalid
+     *
+     * @return evicted connections
+     */
+    public long getEvictedConnections() {
+        return evicted.sum();
+    }
+
+    /**
+     * Calculates the average time borrowers waited for a connection
+     *
+     * @return average wait in milliseconds, 0 if no connection was borrowed
+     */
+    public double getAverageBorrowWaitMillis() {
+        long count = borrows.sum();
+        return count == 0 ? 0 : borrowWaitNanos.sum() / (count * 1e6);
+    }
+
+    /**
+     * Getter method for the longest time a borrower waited for a connection
+     *
+     * @return longest wait in milliseconds
+     */
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Connection waiting in the pool, with the time it was returned
+     */
+    private static class IdleConnection {
+
+        /**
+         * Physical connection
+         */
+        private final Connection connection;
+
+        /**
+         * System.nanoTime() when the connection was returned to the pool
+         */
+        private final long returnedAt;
+
+        /**
+         * IdleConnection class constructor
+         *
+         * @param connection physical connection
+         * @param returnedAt System.nanoTime() when the connection was returned
+         */
+        private IdleConnection(Connection connection, long returnedAt) {
+            this.connection = connection;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+}
@@ -1,14 +1,23 @@
 package uk.ac.ed.inf;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Class which enables connection with the database system,
  * including functions to create, read and write tables in the database system.
  */
-public class DatabaseClient {
+public class DatabaseClient implements AutoCloseable {
 
     /**
      * Database name
@@ -30,65 +39,283 @@ public class DatabaseClient {
      */
     public Menus menu;
 
+    /**
+     * Pool of connections shared by all database operations
+     */
+    private final ConnectionPool connectionPool;
 
     /**
-     * Database client class constructor
+     * Default number of rows sent to the database per batch
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Number of rows sent to the database per batch insert
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Number of orders read from the database
+     */
+    private static final LongAdder ORDERS_READ = Metrics.counter("db.ordersRead");
+
+    /**
+     * Default number of rows fetched from the database at a time when streaming orders
+     */
+    public static final int DEFAULT_FETCH_SIZE = 200;
+
+    /**
+     * Number of rows fetched from the database at a time when streaming orders
+     */
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * SQL query selecting a day's orders and their items, one row per item,
+     * with the rows of each order next to each other
+     */
+    private static final String DAY_QUERY =
+            "select o.orderNo, o.customer, o.deliverTo, d.item from orders o " +
+                    "left join orderDetails d on o.orderNo = d.orderNo " +
+                    "where o.deliveryDate=(?) order by o.orderNo";
+
+    /**
+     * SQL statements creating the DELIVERIES and FLIGHTPATH tables.
+     * Rows record the day they were planned for and the run that wrote them,
+     * so a day can be rewritten without touching the other days.
+     */
+    private static final String CREATE_DELIVERIES =
+            "create table deliveries(" +
+                    "orderNo char(8), " +
+                    "deliveredTo varchar(19), " +
+                    "costInPence int, " +
+                    "deliveryDate date, " +
+                    "runId varchar(36))";
+    private static final String CREATE_FLIGHTPATH =
+            "create table flightpath(" +
+                    "orderNo char(8), " +
+                    "fromLongitude double, " +
+                    "fromLatitude double, " +
+                    "angle integer, " +
+                    "toLongitude double, " +
+                    "toLatitude double, " +
+                    "droneId integer, " +
+                    "deliveryDate date, " +
+                    "runId varchar(36))";
+
+    /**
+     * SQL statements indexing the DELIVERIES and FLIGHTPATH tables by day.
+     * An order is delivered at most once a day, so the DELIVERIES index is unique.
+     */
+    private static final String INDEX_DELIVERIES =
+            "create unique index deliveriesByDate on deliveries(deliveryDate, orderNo)";
+    private static final String INDEX_FLIGHTPATH =
+            "create index flightpathByDate on flightpath(deliveryDate, droneId)";
+
+    /**
+     * SQLState of a statement that would duplicate a key of a unique index
+     */
+    private static final String DUPLICATE_KEY = "23505";
+
+
+    /**
+     * Database client class constructor with a pool of ConnectionPool.DEFAULT_MAX_SIZE connections
      * @param machineName Host machine web server connectivity
      * @param port web server connectivity port
      * @param menu Menus class object
      */
     public DatabaseClient(String machineName, String port, Menus menu) {
+        this(machineName, port, menu, ConnectionPool.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Database client class constructor
+     * @param machineName Host machine web server connectivity
+     * @param port web server connectivity port
+     * @param menu Menus class object
+     * @param poolSize maximum number of connections open to the database at once
+     */
+    public DatabaseClient(String machineName, String port, Menus menu, int poolSize) {
         this.machineName = machineName;
         this.port = port;
         this.menu = menu;
+        String jdbcString = "jdbc:derby://" + machineName + ":"
+                + port + "/" + DATABASE_NAME;
+        this.connectionPool = new ConnectionPool(jdbcString, poolSize);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing it returns it to the pool.
+     *
+     * @throws SQLException if database connection is not possible
+     * @return open connection to the database
+     */
+    private Connection getConnection() throws SQLException {
+        return connectionPool.getConnection();
+    }
+
+    /**
+     * Getter method for the pool of connections, e.g. to read its metrics
+     *
+     * @return connectionPool
+     */
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Closes every pooled database connection.
+     */
+    @Override
+    public void close() {
+        connectionPool.close();
     }
 
     /**
      * Getter method that queries Orders database for the day's orders.
      * Creates a list of all the orders that match that date (@param date)
      * through Order objects.
+     * Orders and their items are fetched in a single query joining the orders
+     * and orderDetails tables; see streamOrders.
      *
      * @param date Date with "MM/DD/YYYY" format, used to query the
      *             database for all the orders made in that day (DD)
-     * @throws SQLException if database connection is not possible or table cannot be created
      * @return list of Order objects containing all orders made in the day
      */
     public ArrayList<Order> getOrdersTable(String date) {
-        // set up endpoint
-        String jdbcString = "jdbc:derby://" + machineName + ":"
-                + port + "/" + DATABASE_NAME;
-
         ArrayList<Order> orderList = new ArrayList<>();
+        try (Stream<Order> orders = streamOrders(date)) {
+            orders.forEach(orderList::add);
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+        }
+        return orderList;
+    }
 
-        // Table column name for delivery date
-        String DELIVERY_DATE = "deliveryDate";
-
+    /**
+     * Streams the day's orders as their rows arrive from the database, instead of reading
+     * them all first. Orders and their items are fetched in a single query joining the orders
+     * and orderDetails tables, one row per item, through a forward-only cursor which fetches
+     * fetchSize rows at a time; consecutive rows of the same order are grouped into an Order.
+     * The stream holds a pooled connection until it is closed, so it must be used
+     * with try-with-resources.
+     *
+     * @param date Date with "MM/DD/YYYY" format, used to query the
+     *             database for all the orders made in that day (DD)
+     * @throws IllegalStateException if the orders cannot be read, when called or while streaming
+     * @return orders made in the day, in order number order
+     */
+    public Stream<Order> streamOrders(String date) {
+        long startTime = System.nanoTime();
+        Connection conn = null;
+        PreparedStatement psDayQuery = null;
+        ResultSet rs;
         try {
-            Connection conn = DriverManager.getConnection(jdbcString);
-            // Orders table name
-            String ORDERS = "orders";
-            final String dayQuery =
-                    "select * from " + ORDERS + " where " + DELIVERY_DATE + "=(?)";
-            PreparedStatement psDayQuery =
-                    conn.prepareStatement(dayQuery);
+            conn = getConnection();
+            psDayQuery = conn.prepareStatement(DAY_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            psDayQuery.setFetchSize(fetchSize);
             psDayQuery.setString(1, date);
+            rs = psDayQuery.executeQuery();
+        } catch (java.sql.SQLException throwables) {
+            closeAll(psDayQuery, conn);
+            throw new IllegalStateException("Unable to read the orders of " + date, throwables);
+        }
 
-            // Search for the the day's orders and add Order objects to a list
-            ResultSet rs = psDayQuery.executeQuery();
-            while (rs.next()) {
-                String orderNumber = rs.getString("orderNo");
-                String customer = rs.getString("customer");
-                String deliverTo = rs.getString("deliverTo");
-                String[] items = getOrderDetailsTable(orderNumber).get(orderNumber).toArray(new String[0]);
-                Order newOrder = new Order(orderNumber, customer, deliverTo, items, menu);
-                orderList.add(newOrder);
+        Spliterator<Order> orders = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            /**
+             * Whether the cursor is on a row which has not been read yet
+             */
+            private boolean hasRow;
+
+            /**
+             * Whether the cursor has been moved to the first row
+             */
+            private boolean started;
+
+            /**
+             * Whether the read time has been recorded
+             */
+            private boolean recorded;
+
+            /**
+             * Records the time from the query to the end of the cursor, once. A stream
+             * closed before the end records nothing, as it has not read the whole day.
+             */
+            private void recordReadTime() {
+                if (!recorded) {
+                    recorded = true;
+                    Metrics.recordSince("db.read", startTime);
+                }
             }
 
-        } catch (java.sql.SQLException throwables) {
-            throwables.printStackTrace();
+            @Override
+            public boolean tryAdvance(Consumer<? super Order> action) {
+                try {
+                    if (!started) {
+                        hasRow = rs.next();
+                        started = true;
+                    }
+                    if (!hasRow) {
+                        recordReadTime();
+                        return false;
+                    }
+                    String orderNumber = rs.getString("orderNo");
+                    String customer = rs.getString("customer");
+                    String deliverTo = rs.getString("deliverTo");
+                    List<String> items = new ArrayList<>();
+                    do {
+                        // an order without details is joined to a null item
+                        String item = rs.getString("item");
+                        if (item != null) {
+                            items.add(item);
+                        }
+                    } while ((hasRow = rs.next()) && orderNumber.equals(rs.getString("orderNo")));
+                    if (!hasRow) {
+                        recordReadTime();
+                    }
+                    ORDERS_READ.increment();
+                    action.accept(new Order(orderNumber, customer, deliverTo, items.toArray(new String[0]), menu));
+                    return true;
+                } catch (java.sql.SQLException throwables) {
+                    throw new IllegalStateException("Unable to read the orders of " + date, throwables);
+                }
+            }
+        };
+        PreparedStatement statement = psDayQuery;
+        Connection connection = conn;
+        return StreamSupport.stream(orders, false).onClose(() -> closeAll(rs, statement, connection));
+    }
+
+    /**
+     * Closes JDBC resources in the given order, reporting failures
+     *
+     * @param resources result sets, statements and connections, null ones are skipped
+     */
+    private static void closeAll(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception throwables) {
+                throwables.printStackTrace();
+            }
         }
+    }
 
-        return orderList;
+    /**
+     * Setter method for the number of rows fetched from the database at a time
+     * when streaming orders.
+     *
+     * @param fetchSize number of rows per fetch
+     * @throws IllegalArgumentException if fetch size is not positive
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
     }
 
     /**
@@ -101,31 +328,29 @@ public class DatabaseClient {
      *          the menu items associated with it
      */
     public HashMap<String, ArrayList<String>> getOrderDetailsTable(String orderNo) {
-        String jdbcString = "jdbc:derby://" + machineName + ":"
-                + port + "/" + DATABASE_NAME;
         HashMap<String, ArrayList<String>> orderNumberToItems = null;
         // Table column name for order number
         String ORDER_NUMBER = "orderNo";
-        try {
-            Connection conn = DriverManager.getConnection(jdbcString);
-            // orderDetails table name
-            String ORDER_DETAILS = "orderDetails";
-            final String dayQuery =
-                    "select * from " + ORDER_DETAILS + " where " + ORDER_NUMBER + "=(?)";
-            PreparedStatement psDayQuery =
-                    conn.prepareStatement(dayQuery);
+        // orderDetails table name
+        String ORDER_DETAILS = "orderDetails";
+        final String dayQuery =
+                "select * from " + ORDER_DETAILS + " where " + ORDER_NUMBER + "=(?)";
+
+        try (Connection conn = getConnection();
+             PreparedStatement psDayQuery = conn.prepareStatement(dayQuery)) {
             psDayQuery.setString(1, orderNo);
 
             // Search for the the day's orders and map order items to each order
             orderNumberToItems = new HashMap<>();
-            ResultSet rs = psDayQuery.executeQuery();
-            while (rs.next()) {
-                String item = rs.getString("item");
-                // if order has at least 1 item, add to the list
-                if (!orderNumberToItems.containsKey(orderNo)) {
-                    orderNumberToItems.put(orderNo, new ArrayList<>());
+            try (ResultSet rs = psDayQuery.executeQuery()) {
+                while (rs.next()) {
+                    String item = rs.getString("item");
+                    // if order has at least 1 item, add to the list
+                    if (!orderNumberToItems.containsKey(orderNo)) {
+                        orderNumberToItems.put(orderNo, new ArrayList<>());
+                    }
+                    orderNumberToItems.get(orderNo).add(item);
                 }
-                orderNumberToItems.get(orderNo).add(item);
             }
 
         } catch (java.sql.SQLException throwables) {
@@ -136,118 +361,399 @@ public class DatabaseClient {
 
 
     /**
-     * Method which creates and fills in a DELIVERIES table in the dataset,
-     * including information about the order number, the delivery location and
-     * the cost in pence of the order
+     * Setter method for the number of rows sent to the database per batch
+     * when filling in the DELIVERIES and FLIGHTPATH tables.
      *
+     * @param batchSize number of inserts per batch
+     * @throws IllegalArgumentException if batch size is not positive
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Replaces a day's rows in the DELIVERIES and FLIGHTPATH tables within a single transaction:
+     * the day's existing rows are deleted and the new ones inserted, leaving every other day untouched.
+     * Writing the same day again gives the same tables, so re-runs are idempotent.
+     *
+     * @param day day the orders were delivered on
+     * @param runId identifier of the run writing the rows
      * @param orders delivered orders
-     * @throws SQLException if database connection cannot be
-     *          established or database table filled in
+     * @param flightpaths every drone's movements that day, keyed by drone id
+     * @throws IllegalStateException if the rows cannot be written; the transaction is rolled back
+     * @return number of rows written to both tables
      */
-    public void setDeliveriesTable(ArrayList<Order> orders) {
-        String jdbcString = "jdbc:derby://" + machineName + ":"
-                + port + "/" + DATABASE_NAME;
-        try {
-            Connection conn = DriverManager.getConnection(jdbcString);
-            // Create a statement object that we can use for running various
-            // SQL statement commands against the database.
-            java.sql.Statement statement = conn.createStatement();
-            DatabaseMetaData databaseMetadata = conn.getMetaData();
-
-            // Deliveries table name
-            String DELIVERIES = "DELIVERIES";
-            ResultSet resultSet =
-                    databaseMetadata.getTables(null, null, DELIVERIES, null);
-
-            // If the resultSet is not empty then the table exists, so we can drop it
-            if (resultSet.next()) {
-                statement.execute("drop table deliveries");
-            }
+    public int writeDay(LocalDate day, String runId, List<Order> orders,
+                        Map<Integer, Flightpath> flightpaths) {
+        return writeTable("DELIVERIES and FLIGHTPATH", conn -> {
+            deleteDay(conn, "deliveries", day);
+            deleteDay(conn, "flightpath", day);
+            return insertDeliveries(conn, day, runId, orders) + insertFlightpath(conn, day, runId, flightpaths);
+        });
+    }
 
-            statement.execute(
-                    "create table deliveries(" +
-                            "orderNo char(8), " +
-                            "deliveredTo varchar(19), " +
-                            "costInPence int)");
+    /**
+     * Inserts or updates delivered orders of a day in the DELIVERIES table within a single
+     * transaction. An order already recorded for the day is updated in place, so writing
+     * the same orders again does not duplicate them. Other orders of the day are kept.
+     *
+     * @param day day the orders were delivered on
+     * @param runId identifier of the run writing the rows
+     * @param orders delivered orders
+     * @throws IllegalStateException if the rows cannot be written; the transaction is rolled back
+     * @return number of rows inserted or updated
+     */
+    public int upsertDeliveries(LocalDate day, String runId, List<Order> orders) {
+        return writeTable("DELIVERIES", conn -> upsertDeliveries(conn, day, runId, orders));
+    }
 
-            // fills in table
-            for (Order order : orders) {
-                PreparedStatement psFlight =
-                        conn.prepareStatement("insert into deliveries values (?, ?, ?)");
+    /**
+     * Creates empty DELIVERIES and FLIGHTPATH tables, dropping any existing ones
+     * and the rows of every day they held.
+     *
+     * @throws IllegalStateException if a table cannot be created
+     */
+    public void createTables() {
+        writeTable("DELIVERIES", conn -> {
+            recreateTable(conn, "DELIVERIES", CREATE_DELIVERIES, INDEX_DELIVERIES);
+            return 0;
+        });
+        writeTable("FLIGHTPATH", conn -> {
+            recreateTable(conn, "FLIGHTPATH", CREATE_FLIGHTPATH, INDEX_FLIGHTPATH);
+            return 0;
+        });
+    }
 
-                psFlight.setString(1, order.getOrderNo());
-                psFlight.setString(2, order.getDeliverTo());
-                psFlight.setInt(3, order.getOrderCost(order));
-                psFlight.execute();
-            }
+    /**
+     * Creates the DELIVERIES and FLIGHTPATH tables if they do not exist yet, keeping the rows
+     * of existing ones. Tables created before rows were recorded against a day cannot be
+     * rewritten one day at a time, so they are recreated. A DELIVERIES table indexed before
+     * its index was unique has the index rebuilt.
+     *
+     * @throws IllegalStateException if a table cannot be inspected or created
+     */
+    public void ensureTables() {
+        writeTable("DELIVERIES", conn -> {
+            ensureTable(conn, "DELIVERIES", CREATE_DELIVERIES, INDEX_DELIVERIES);
+            ensureUniqueIndex(conn, "DELIVERIES", "DELIVERIESBYDATE", INDEX_DELIVERIES);
+            return 0;
+        });
+        writeTable("FLIGHTPATH", conn -> {
+            ensureTable(conn, "FLIGHTPATH", CREATE_FLIGHTPATH, INDEX_FLIGHTPATH);
+            return 0;
+        });
+    }
 
+    /**
+     * Writes rows to tables within a single transaction, rolling back on failure.
+     * Every call borrows its own connection, so days can be written concurrently.
+     * Failures are rethrown, so callers can tell a failed write from one with no rows.
+     *
+     * @param tableName upper case name of the tables written, for the report
+     * @param writer inserts the rows
+     * @throws IllegalStateException if the rows cannot be written
+     * @return number of rows written
+     */
+    private int writeTable(String tableName, TableWriter writer) {
+        long startTime = System.nanoTime();
+        int rows;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                rows = writer.insert(conn);
+                conn.commit();
+            } catch (java.sql.SQLException throwables) {
+                conn.rollback();
+                throw throwables;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
         } catch (java.sql.SQLException throwables) {
-            throwables.printStackTrace();
+            throw new IllegalStateException("Unable to write the " + tableName + " table", throwables);
         }
+        Metrics.recordSince("db.write", startTime);
+        Metrics.add("db.rowsWritten", rows);
+        printWriteReport(tableName, rows, startTime);
+        return rows;
     }
 
     /**
-     * Method which creates and fills in the FLIGHTPATH table in the database
-     * with all of the drone's movements from the start of the delivery process
-     * until the end of moves the drone can make.
-     * Includes information about the order number of the order being delivered,
-     * each move's starting point's longitude and latitude,
-     * the end point's longitude and latitude,
-     * and the angle between both points.
+     * Drops a table if it exists in the database and creates it again, empty.
      *
-     * @param flightpath all of the drone's movements that day.
-     * @throws SQLException if database connection cannot be
-     *          established or database table filled in
+     * @param conn database connection
+     * @param tableName upper case name of the table
+     * @param createStatement SQL statement creating the table
+     * @param indexStatement SQL statement indexing the table
+     * @throws SQLException if the table cannot be dropped or created
+     */
+    private void recreateTable(Connection conn, String tableName, String createStatement, String indexStatement)
+            throws SQLException {
+        // Create a statement object that we can use for running various
+        // SQL statement commands against the database.
+        try (java.sql.Statement statement = conn.createStatement()) {
+            // If the table exists, we can drop it
+            if (tableExists(conn, tableName)) {
+                statement.execute("drop table " + tableName);
+            }
+            statement.execute(createStatement);
+            statement.execute(indexStatement);
+        }
+    }
+
+    /**
+     * Creates a table if it does not exist, or recreates it if it has no DELIVERYDATE column.
      *
+     * @param conn database connection
+     * @param tableName upper case name of the table
+     * @param createStatement SQL statement creating the table
+     * @param indexStatement SQL statement indexing the table
+     * @throws SQLException if the table cannot be inspected or created
      */
-    public void setFlightpathTable(ArrayList<FlightpathMove> flightpath) {
-        String jdbcString = "jdbc:derby://" + machineName + ":"
-                + port + "/" + DATABASE_NAME;
-        try {
-            Connection conn = DriverManager.getConnection(jdbcString);
-            // Create a statement object that we can use for running various
-            // SQL statement commands against the database.
-            java.sql.Statement statement = conn.createStatement();
-            DatabaseMetaData databaseMetadata = conn.getMetaData();
-
-            //Flightpath table name
-            String FLIGHTPATH = "FLIGHTPATH";
-            ResultSet resultSet =
-                    databaseMetadata.getTables(null, null, FLIGHTPATH, null);
-
-            // If the resultSet is not empty then the table exists, so we can drop it
-            if (resultSet.next()) {
-                statement.execute("drop table flightpath");
+    private void ensureTable(Connection conn, String tableName, String createStatement, String indexStatement)
+            throws SQLException {
+        if (!tableExists(conn, tableName)) {
+            recreateTable(conn, tableName, createStatement, indexStatement);
+            return;
+        }
+        boolean partitioned;
+        try (ResultSet resultSet = conn.getMetaData().getColumns(null, null, tableName, "DELIVERYDATE")) {
+            partitioned = resultSet.next();
+        }
+        if (!partitioned) {
+            System.out.println("Recreating " + tableName + " table, its rows are not recorded against a day.");
+            recreateTable(conn, tableName, createStatement, indexStatement);
+        }
+    }
+
+    /**
+     * Rebuilds an index as unique if the table has it, but not as a unique index.
+     * Fails, rolling back, if the table already holds duplicate keys.
+     *
+     * @param conn database connection
+     * @param tableName upper case name of the table
+     * @param indexName upper case name of the index
+     * @param indexStatement SQL statement creating the unique index
+     * @throws SQLException if the index cannot be inspected, dropped or created
+     */
+    private void ensureUniqueIndex(Connection conn, String tableName, String indexName, String indexStatement)
+            throws SQLException {
+        boolean indexed = false;
+        boolean unique = false;
+        try (ResultSet resultSet = conn.getMetaData().getIndexInfo(null, null, tableName, false, false)) {
+            while (resultSet.next()) {
+                if (indexName.equals(resultSet.getString("INDEX_NAME"))) {
+                    indexed = true;
+                    unique = !resultSet.getBoolean("NON_UNIQUE");
+                }
+            }
+        }
+        if (unique) {
+            return;
+        }
+        System.out.println("Rebuilding " + indexName + " index of the " + tableName + " table as unique.");
+        try (java.sql.Statement statement = conn.createStatement()) {
+            if (indexed) {
+                statement.execute("drop index " + indexName);
             }
+            statement.execute(indexStatement);
+        }
+    }
+
+    /**
+     * Checks whether a table exists in the database
+     *
+     * @param conn database connection
+     * @param tableName upper case name of the table
+     * @throws SQLException if the database metadata cannot be read
+     * @return true if the table exists
+     */
+    private boolean tableExists(Connection conn, String tableName) throws SQLException {
+        DatabaseMetaData databaseMetadata = conn.getMetaData();
+        try (ResultSet resultSet = databaseMetadata.getTables(null, null, tableName, null)) {
+            // If the resultSet is not empty then the table exists
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Deletes the rows recorded against a day from a table, keeping the rows of every other day
+     *
+     * @param conn database connection
+     * @param tableName name of the table, DELIVERIES or FLIGHTPATH
+     * @param day delivery date whose rows are deleted
+     * @throws SQLException if the rows cannot be deleted
+     * @return number of rows deleted, 0 if the day had none
+     */
+    private int deleteDay(Connection conn, String tableName, LocalDate day) throws SQLException {
+        try (PreparedStatement psDelete =
+                     conn.prepareStatement("delete from " + tableName + " where deliveryDate = ?")) {
+            psDelete.setDate(1, Date.valueOf(day));
+            return psDelete.executeUpdate();
+        }
+    }
 
-            statement.execute(
-                    "create table flightpath(" +
-                            "orderNo char(8), " +
-                            "fromLongitude double, " +
-                            "fromLatitude double, " +
-                            "angle integer, " +
-                            "toLongitude double, " +
-                            "toLatitude double)");
-
-            // fills in table
-            for (FlightpathMove move : flightpath) {
-                PreparedStatement psFlight =
-                        conn.prepareStatement("insert into flightpath values (?, ?, ?, ?, ?, ?)");
-
-                psFlight.setString(1, move.getOrderNo());
-                psFlight.setDouble(2, move.getOriginalPosition().longitude);
-                psFlight.setDouble(3, move.getOriginalPosition().latitude);
-                psFlight.setInt(4, move.getAngle());
-                psFlight.setDouble(5, move.getNextPosition().longitude);
-                psFlight.setDouble(6, move.getNextPosition().latitude);
-                psFlight.execute();
+    /**
+     * Updates the delivered orders already recorded for a day and inserts the others.
+     * An insert that duplicates a key, because another run recorded the order after
+     * it was looked for, updates that row instead.
+     *
+     * @param conn database connection
+     * @param day day the orders were delivered on
+     * @param runId identifier of the run writing the rows
+     * @param orders delivered orders
+     * @throws SQLException if the rows cannot be updated or inserted
+     * @return number of rows updated or inserted
+     */
+    private int upsertDeliveries(Connection conn, LocalDate day, String runId, List<Order> orders)
+            throws SQLException {
+        int rows = 0;
+        try (PreparedStatement psUpdate = conn.prepareStatement(
+                "update deliveries set deliveredTo = ?, costInPence = ?, runId = ? " +
+                        "where deliveryDate = ? and orderNo = ?");
+             PreparedStatement psInsert = conn.prepareStatement(
+                     "insert into deliveries (orderNo, deliveredTo, costInPence, deliveryDate, runId) " +
+                             "values (?, ?, ?, ?, ?)")) {
+            for (Order order : orders) {
+                psUpdate.setString(1, order.getDeliverTo());
+                psUpdate.setInt(2, order.getOrderCost(order));
+                psUpdate.setString(3, runId);
+                psUpdate.setDate(4, Date.valueOf(day));
+                psUpdate.setString(5, order.getOrderNo());
+                if (psUpdate.executeUpdate() == 0) {
+                    psInsert.setString(1, order.getOrderNo());
+                    psInsert.setString(2, order.getDeliverTo());
+                    psInsert.setInt(3, order.getOrderCost(order));
+                    psInsert.setDate(4, Date.valueOf(day));
+                    psInsert.setString(5, runId);
+                    try {
+                        psInsert.executeUpdate();
+                    } catch (SQLException throwables) {
+                        if (!DUPLICATE_KEY.equals(throwables.getSQLState())) {
+                            throw throwables;
+                        }
+                        // only the failed insert is undone, the transaction carries on
+                        psUpdate.executeUpdate();
+                    }
+                }
+                rows++;
             }
+        }
+        return rows;
+    }
 
-        }  catch (java.sql.SQLException throwables) {
-            throwables.printStackTrace();
+    /**
+     * Inserts delivered orders into the DELIVERIES table in batches,
+     * preparing the insert statement once.
+     *
+     * @param conn database connection
+     * @param day day the orders were delivered on
+     * @param runId identifier of the run writing the rows
+     * @param orders delivered orders
+     * @throws SQLException if a batch cannot be executed
+     * @return number of rows inserted
+     */
+    private int insertDeliveries(Connection conn, LocalDate day, String runId, List<Order> orders)
+            throws SQLException {
+        int rows = 0;
+        try (PreparedStatement psDeliveries = conn.prepareStatement(
+                "insert into deliveries (orderNo, deliveredTo, costInPence, deliveryDate, runId) " +
+                        "values (?, ?, ?, ?, ?)")) {
+            Date deliveryDate = Date.valueOf(day);
+            for (Order order : orders) {
+                psDeliveries.setString(1, order.getOrderNo());
+                psDeliveries.setString(2, order.getDeliverTo());
+                psDeliveries.setInt(3, order.getOrderCost(order));
+                psDeliveries.setDate(4, deliveryDate);
+                psDeliveries.setString(5, runId);
+                psDeliveries.addBatch();
+                rows++;
+                // send full batches
+                if (rows % batchSize == 0) {
+                    psDeliveries.executeBatch();
+                }
+            }
+            // send remaining rows
+            if (rows % batchSize != 0) {
+                psDeliveries.executeBatch();
+            }
         }
+        return rows;
     }
 
+    /**
+     * Inserts the drones' moves into the FLIGHTPATH table in batches,
+     * preparing the insert statement once.
+     *
+     * @param conn database connection
+     * @param day day the moves were flown on
+     * @param runId identifier of the run writing the rows
+     * @param flightpaths drone moves, keyed by drone id
+     * @throws SQLException if a batch cannot be executed
+     * @return number of rows inserted
+     */
+    private int insertFlightpath(Connection conn, LocalDate day, String runId,
+                                 Map<Integer, Flightpath> flightpaths) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement psFlight = conn.prepareStatement(
+                "insert into flightpath (orderNo, fromLongitude, fromLatitude, angle, toLongitude, toLatitude, " +
+                        "droneId, deliveryDate, runId) values (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            Date deliveryDate = Date.valueOf(day);
+            for (Map.Entry<Integer, Flightpath> entry : flightpaths.entrySet()) {
+                // columns are read straight from the flightpath, without building a move per row
+                Flightpath flightpath = entry.getValue();
+                for (int move = 0; move < flightpath.size(); move++) {
+                    psFlight.setString(1, flightpath.getOrderNo(move));
+                    psFlight.setDouble(2, flightpath.getLongitude(move));
+                    psFlight.setDouble(3, flightpath.getLatitude(move));
+                    psFlight.setInt(4, flightpath.getAngle(move));
+                    psFlight.setDouble(5, flightpath.getLongitude(move + 1));
+                    psFlight.setDouble(6, flightpath.getLatitude(move + 1));
+                    psFlight.setInt(7, entry.getKey());
+                    psFlight.setDate(8, deliveryDate);
+                    psFlight.setString(9, runId);
+                    psFlight.addBatch();
+                    rows++;
+                    // send full batches
+                    if (rows % batchSize == 0) {
+                        psFlight.executeBatch();
+                    }
+                }
+            }
+            // send remaining rows
+            if (rows % batchSize != 0) {
+                psFlight.executeBatch();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Prints the number of rows written to a table and the time it took
+     *
+     * @param tableName table written to
+     * @param rows number of rows written
+     * @param startTime System.nanoTime() when the write started
+     */
+    private void printWriteReport(String tableName, int rows, long startTime) {
+        long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("Wrote " + rows + " rows to " + tableName + " in " + elapsedMillis + " ms.");
+    }
+
+    /**
+     * Inserts rows into a table on the given connection
+     */
+    private interface TableWriter {
+
+        /**
+         * @param conn database connection, within a transaction
+         * @throws SQLException if the rows cannot be inserted
+         * @return number of rows inserted
+         */
+        int insert(Connection conn) throws SQLException;
+    }
 
 }
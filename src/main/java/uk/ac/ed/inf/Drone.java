@@ -1,31 +1,80 @@
 package uk.ac.ed.inf;
 
-import java.awt.geom.Line2D;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Drone {
 
     /**
-     * Imposed limit on maximum number of moves before returning to Appleton Tower.
-     * Maximum number of moves drone can perform is 1500.
+     * Default maximum number of moves a drone can perform in a day
      */
-    private int MAX_NUMBER_OF_MOVES = 1500;
+    public static final int DEFAULT_MOVE_BUDGET = 1500;
 
     /**
-     * Location of starting point and end-point of drone delivery route.
+     * Identifier of the drone within its fleet, 1 for a single drone
+     */
+    private final int droneId;
+
+    /**
+     * Imposed limit on maximum number of moves before returning to the drone's base.
+     * Maximum number of moves drone can perform is 1500 unless another budget is given.
+     * Decreases as orders are delivered.
+     */
+    private int MAX_NUMBER_OF_MOVES;
+
+    /**
+     * Number of moves the drone was given for the day, before any order was delivered
+     */
+    private final int moveBudget;
+
+    /**
+     * Location of Appleton Tower, the default base of the drone.
      */
     public final LongLat appletonTower = new LongLat(-3.186874, 55.944494);
 
     /**
-     * All available landmarks to be used throughout the delivery process.
+     * Location of starting point and end-point of drone delivery route.
+     */
+    private final LongLat base;
+
+    /**
+     * Map of the delivery area: landmarks and No-Fly Zones
+     */
+    private final CampusMap campusMap;
+
+    /**
+     * Algorithm calculating the drone's route between two locations
+     */
+    private RoutingEngine routingEngine;
+
+    /**
+     * Cached number of moves of legs between restaurants, delivery addresses
+     * and Appleton Tower, calculated with the routing engine
+     */
+    private LegMatrix legMatrix;
+
+    /**
+     * Last route calculated back to Appleton Tower and the position it starts at,
+     * reused when the drone really flies back from that position
+     */
+    private LongLat lastReturnStart;
+    private List<FlightpathMove> lastReturnPath;
+
+    /**
+     * Pool the day's legs are calculated on before scheduling starts,
+     * null to calculate legs on demand on the planning thread
+     */
+    private ForkJoinPool legPool;
+
+    /**
+     * Date of the day being planned, named in the day's summary, null if not known
      */
-    private ArrayList<LongLat> landmarks;
+    private String date;
 
     /**
-     * All polygon perimeter lines to be used
-     * throughout the delivery process.
+     * Strategy deciding in which order the day's orders are attempted
      */
-    private List<Line2D> polygonPerimeters;
+    private OrderScheduler orderScheduler = new PriceOrderScheduler();
 
     /**
      * Boolean variable used to flag viability of order delivery. This viability is measured in terms of
@@ -40,26 +89,31 @@ public class Drone {
     private ArrayList<Order> deliveredOrdersInADay = new ArrayList<>();
 
     /**
-     * ArrayList containing all flight moves from start of delivery process
+     * All flight moves from start of delivery process
      * until arrival back to Appleton Tower.
      */
-    private ArrayList<FlightpathMove> flightpath = new ArrayList<>();
+    private final Flightpath flightpath = new Flightpath();
 
     /**
-     * Website connectivity host machine name
+     * Position the drone is at after its last delivery (its base before the first one)
      */
-    private final String machineName;
+    private LongLat lastStop;
 
     /**
-     * Website connectivity port
+     * Exact location of the drone's last stop, used to look up leg estimates
      */
-    private final String webPort;
+    private LongLat lastStopLocation;
 
     /**
      * Menus object used to search through Restaurant's menus
      */
     private final Menus menu;
 
+    /**
+     * Cache of What3Words address resolutions
+     */
+    private final W3WCache w3wCache;
+
 
     /**
      * Drone class constructor
@@ -69,11 +123,75 @@ public class Drone {
      * @param menu Menus object to acquire Restaurant information
      */
     public Drone(String machineName, String webPort, Menus menu) {
-        this.machineName = machineName;
-        this.webPort = webPort;
+        this(machineName, webPort, menu, new W3WCache(machineName, webPort));
+        // restaurants are visited on almost every order, resolve them up front
+        w3wCache.warmUp(menu.getRestaurantList());
+    }
+
+    /**
+     * Drone class constructor sharing an existing What3Words cache
+     *
+     * @param machineName web server host connectivity name
+     * @param webPort web server connectivity port
+     * @param menu Menus object to acquire Restaurant information
+     * @param w3wCache cache used to resolve What3Words addresses
+     */
+    public Drone(String machineName, String webPort, Menus menu, W3WCache w3wCache) {
+        this(menu, w3wCache, CampusMap.load(machineName, webPort));
+    }
+
+    /**
+     * Drone class constructor sharing an already loaded map and What3Words cache
+     *
+     * @param menu Menus object to acquire Restaurant information
+     * @param w3wCache cache used to resolve What3Words addresses
+     * @param campusMap map of the delivery area
+     */
+    public Drone(Menus menu, W3WCache w3wCache, CampusMap campusMap) {
+        this(1, menu, w3wCache, campusMap, null, DEFAULT_MOVE_BUDGET);
+    }
+
+    /**
+     * Drone class constructor for a member of a fleet, sharing an already loaded
+     * map and What3Words cache
+     *
+     * @param droneId identifier of the drone within its fleet
+     * @param menu Menus object to acquire Restaurant information
+     * @param w3wCache cache used to resolve What3Words addresses
+     * @param campusMap map of the delivery area
+     * @param base location the drone starts and ends its route at, null for Appleton Tower
+     * @param moveBudget maximum number of moves the drone can perform
+     */
+    public Drone(int droneId, Menus menu, W3WCache w3wCache, CampusMap campusMap, LongLat base, int moveBudget) {
+        this.droneId = droneId;
         this.menu = menu;
-        setConstants(machineName, webPort);
+        this.w3wCache = w3wCache;
+        this.campusMap = campusMap;
+        this.base = base == null ? appletonTower : base;
+        // Drone is launched from Appleton Tower
+        this.lastStop = this.base;
+        this.lastStopLocation = this.base;
+        this.MAX_NUMBER_OF_MOVES = moveBudget;
+        this.moveBudget = moveBudget;
+        setRoutingEngine(new GreedyRoutingEngine(campusMap.getLandmarks(), campusMap.getNoFlyZoneIndex()));
+    }
 
+    /**
+     * Getter method for the identifier of the drone within its fleet
+     *
+     * @return droneId
+     */
+    public int getDroneId() {
+        return droneId;
+    }
+
+    /**
+     * Getter method for the What3Words cache used by the drone
+     *
+     * @return w3wCache
+     */
+    public W3WCache getW3WCache() {
+        return w3wCache;
     }
 
     /**
@@ -81,7 +199,7 @@ public class Drone {
      *
      * @return flightpath
      */
-    public ArrayList<FlightpathMove> getFlightpath() {
+    public Flightpath getFlightpath() {
         return flightpath;
     }
 
@@ -95,18 +213,320 @@ public class Drone {
     }
 
     /**
-     * Method which sets relevant map information.
-     * Initialises landmarks and No-Fly Zone perimeters so web server
-     * lookups are optimised.
+     * Getter method for the map of the delivery area
+     *
+     * @return campusMap
+     */
+    public CampusMap getCampusMap() {
+        return campusMap;
+    }
+
+    /**
+     * Gets the locations routes most often start or end at:
+     * the drone's base and every restaurant.
+     * Used as nodes of a VisibilityGraph.
+     *
+     * @return the drone's base followed by the restaurant locations
+     */
+    public List<LongLat> getPointsOfInterest() {
+        List<LongLat> pointsOfInterest = new ArrayList<>();
+        pointsOfInterest.add(base);
+        for (Restaurant restaurant : menu.getRestaurantList()) {
+            pointsOfInterest.add(w3wCache.getCoordinates(restaurant.getLocation()));
+        }
+        return pointsOfInterest;
+    }
+
+    /**
+     * Getter method for the algorithm calculating the drone's routes
+     *
+     * @return routingEngine
+     */
+    public RoutingEngine getRoutingEngine() {
+        return routingEngine;
+    }
+
+    /**
+     * Setter method for the algorithm calculating the drone's routes.
+     * Defaults to a GreedyRoutingEngine.
+     *
+     * @param routingEngine routing engine used for every route from now on
+     */
+    public void setRoutingEngine(RoutingEngine routingEngine) {
+        this.routingEngine = routingEngine;
+        // cached leg costs are only valid for the engine that calculated them
+        this.legMatrix = new LegMatrix(routingEngine);
+    }
+
+    /**
+     * Shares cached leg costs with other drones using the same routing engine.
+     * The drone's routing engine becomes the matrix's routing engine.
+     *
+     * @param legMatrix leg matrix used for every estimate from now on
+     */
+    public void setLegMatrix(LegMatrix legMatrix) {
+        this.routingEngine = legMatrix.getRoutingEngine();
+        this.legMatrix = legMatrix;
+    }
+
+    /**
+     * Creates a drone with the same id, base, map, What3Words cache, leg matrix and scheduler
+     * as this one, which has not flown yet
+     *
+     * @param moveBudget maximum number of moves the new drone can perform
+     * @return new drone
+     */
+    public Drone freshCopy(int moveBudget) {
+        Drone drone = new Drone(droneId, menu, w3wCache, campusMap, base, moveBudget);
+        drone.setLegMatrix(legMatrix);
+        drone.setOrderScheduler(orderScheduler);
+        drone.setLegPool(legPool);
+        return drone;
+    }
+
+    /**
+     * Creates a drone like freshCopy, standing at this drone's last stop with this drone's
+     * move budget and the moves it has left, to try out a sequence of orders without changing
+     * this drone's flightpath
+     *
+     * @return new drone, whose flightpath starts at this drone's last stop
+     */
+    public Drone trialCopy() {
+        Drone drone = freshCopy(moveBudget);
+        drone.MAX_NUMBER_OF_MOVES = MAX_NUMBER_OF_MOVES;
+        drone.lastStop = lastStop;
+        drone.lastStopLocation = lastStopLocation;
+        return drone;
+    }
+
+    /**
+     * Getter method for the cached leg costs between restaurants,
+     * delivery addresses and Appleton Tower
+     *
+     * @return legMatrix
+     */
+    public LegMatrix getLegMatrix() {
+        return legMatrix;
+    }
+
+    /**
+     * Calculates the number of moves of every leg the drone may fly for the given orders:
+     * from Appleton Tower and every delivery address to every restaurant,
+     * between restaurants, from every restaurant to every delivery address and
+     * from every delivery address back to Appleton Tower.
+     *
+     * @param orders orders that are going to be delivered
+     */
+    public void precomputeLegs(List<Order> orders) {
+        precomputeLegs(orders, null);
+    }
+
+    /**
+     * Calculates the number of moves of every leg the drone may fly for the given orders,
+     * resolving delivery addresses concurrently and calculating legs in parallel on a fork-join pool.
+     * Results do not depend on the pool's parallelism.
+     *
+     * @param orders orders that are going to be delivered
+     * @param pool pool the legs are calculated on, null to calculate them on the calling thread
+     */
+    public void precomputeLegs(List<Order> orders, ForkJoinPool pool) {
+        List<LongLat> restaurants = new ArrayList<>();
+        for (Restaurant restaurant : menu.getRestaurantList()) {
+            restaurants.add(w3wCache.getCoordinates(restaurant.getLocation()));
+        }
+        // resolve the day's addresses concurrently, lookups below are then cache hits
+        List<String> deliverTo = new ArrayList<>();
+        for (Order order : orders) {
+            deliverTo.add(order.getDeliverTo());
+        }
+        w3wCache.resolveAll(deliverTo);
+        Set<LongLat> addresses = new LinkedHashSet<>();
+        for (Order order : orders) {
+            addresses.add(w3wCache.getCoordinates(order.getDeliverTo()));
+        }
+        List<LongLat> starts = new ArrayList<>(addresses);
+        starts.add(0, base);
+        List<LongLat> bases = Collections.singletonList(base);
+
+        if (pool == null) {
+            legMatrix.precompute(starts, restaurants);
+            legMatrix.precompute(restaurants, restaurants);
+            legMatrix.precompute(restaurants, addresses);
+            legMatrix.precompute(addresses, bases);
+        } else {
+            legMatrix.precompute(starts, restaurants, pool);
+            legMatrix.precompute(restaurants, restaurants, pool);
+            legMatrix.precompute(restaurants, addresses, pool);
+            legMatrix.precompute(addresses, bases, pool);
+        }
+    }
+
+    /**
+     * Setter method for the pool the day's legs are calculated on before scheduling starts.
+     * When set, greedyOrdersInADay calculates every candidate leg in parallel first.
+     *
+     * @param legPool fork-join pool, null to calculate legs on demand (default)
+     */
+    public void setLegPool(ForkJoinPool legPool) {
+        this.legPool = legPool;
+    }
+
+    /**
+     * Setter method for the date of the day being planned, named in the summary printed
+     * by greedyOrdersInADay so that days planned concurrently can be told apart
+     *
+     * @param date date in "MM/DD/YYYY" format, null to leave it out
+     */
+    public void setDate(String date) {
+        this.date = date;
+    }
+
+    /**
+     * Estimates the number of moves to deliver an order starting at a location,
+     * visiting the restaurants in the given order, and fly back to Appleton Tower from the
+     * delivery address. Includes hovering at every restaurant and at the delivery address.
+     * Leg costs are looked up in the leg matrix.
+     *
+     * @param from location the drone starts at
+     * @param order order that is being delivered
+     * @param restaurants restaurants to be visited, in order
+     * @return estimated number of moves, LegMatrix.UNREACHABLE if a leg has no route
+     */
+    public int estimateOrderMoves(LongLat from, Order order, List<Restaurant> restaurants) {
+        int deliveryMoves = estimateDeliveryMoves(from, order, restaurants);
+        if (deliveryMoves == LegMatrix.UNREACHABLE) {
+            return LegMatrix.UNREACHABLE;
+        }
+        int returnMoves = estimateReturnMoves(getDeliveryLocation(order));
+        if (returnMoves == LegMatrix.UNREACHABLE) {
+            return LegMatrix.UNREACHABLE;
+        }
+        return deliveryMoves + returnMoves;
+    }
+
+    /**
+     * Estimates the number of moves to pick up and deliver an order starting at a location,
+     * visiting the restaurants nearest-first as the drone does. Includes hovering at every
+     * restaurant and at the delivery address, but not the flight back to Appleton Tower.
+     *
+     * @param from location the drone starts at
+     * @param order order that is being delivered
+     * @return estimated number of moves, LegMatrix.UNREACHABLE if the order
+     *          cannot be delivered or a leg has no route
+     */
+    public int estimateDeliveryMoves(LongLat from, Order order) {
+        List<Restaurant> restaurants = sortRestaurants(getUniqueRestaurants(order), from);
+        if (restaurants == null || restaurants.isEmpty()) {
+            return LegMatrix.UNREACHABLE;
+        }
+        return estimateDeliveryMoves(from, order, restaurants);
+    }
+
+    /**
+     * Estimates the number of moves to fly back to Appleton Tower from a location
+     *
+     * @param from location the drone starts at
+     * @return estimated number of moves, LegMatrix.UNREACHABLE if the leg has no route
+     */
+    public int estimateReturnMoves(LongLat from) {
+        return legMatrix.getMoveCount(from, base);
+    }
+
+    /**
+     * Estimates the number of moves to pick up and deliver an order starting at a location,
+     * visiting the restaurants in the given order. Includes hovering at every stop.
      *
-     * @param machineName host machine name
-     * @param webPort web server access
+     * @param from location the drone starts at
+     * @param order order that is being delivered
+     * @param restaurants restaurants to be visited, in order
+     * @return estimated number of moves, LegMatrix.UNREACHABLE if a leg has no route
      */
-    private void setConstants(String machineName, String webPort) {
-        // initialises landmarks
-        landmarks = GeoClient.findAllLandMarks(machineName, webPort);
-        // initialises polygon perimeters
-        polygonPerimeters = GeoClient.getPolygonBorders(machineName, webPort);
+    private int estimateDeliveryMoves(LongLat from, Order order, List<Restaurant> restaurants) {
+        int moves = 0;
+        LongLat position = from;
+        List<LongLat> stops = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            stops.add(w3wCache.getCoordinates(restaurant.getLocation()));
+        }
+        stops.add(getDeliveryLocation(order));
+
+        for (LongLat stop : stops) {
+            int legMoves = legMatrix.getMoveCount(position, stop);
+            if (legMoves == LegMatrix.UNREACHABLE) {
+                return LegMatrix.UNREACHABLE;
+            }
+            // hover at every stop
+            moves += legMoves + 1;
+            position = stop;
+        }
+        return moves;
+    }
+
+    /**
+     * Gets the location an order is delivered to
+     *
+     * @param order order that is being delivered
+     * @return delivery location
+     */
+    public LongLat getDeliveryLocation(Order order) {
+        return w3wCache.getCoordinates(order.getDeliverTo());
+    }
+
+    /**
+     * Getter method for the location the drone starts and ends its route at.
+     * Appleton Tower unless the drone was given another base.
+     *
+     * @return base
+     */
+    public LongLat getBase() {
+        return base;
+    }
+
+    /**
+     * Getter method for the exact location of the drone's last stop: the address of its
+     * last delivery, or its base before the first one. Schedulers plan from here.
+     *
+     * @return lastStopLocation
+     */
+    public LongLat getLastStopLocation() {
+        return lastStopLocation;
+    }
+
+    /**
+     * Getter method for the number of moves the drone was given for the day
+     *
+     * @return move budget, which does not change as orders are delivered
+     */
+    public int getMoveBudget() {
+        return moveBudget;
+    }
+
+    /**
+     * Getter method for the number of moves the drone can still perform
+     *
+     * @return moves left
+     */
+    public int getMovesLeft() {
+        return MAX_NUMBER_OF_MOVES;
+    }
+
+    /**
+     * Getter method for the strategy deciding in which order the day's orders are attempted
+     *
+     * @return orderScheduler
+     */
+    public OrderScheduler getOrderScheduler() {
+        return orderScheduler;
+    }
+
+    /**
+     * Setter method for the strategy deciding in which order the day's orders are attempted.
+     * Defaults to a PriceOrderScheduler.
+     *
+     * @param orderScheduler scheduler used by greedyOrdersInADay
+     */
+    public void setOrderScheduler(OrderScheduler orderScheduler) {
+        this.orderScheduler = orderScheduler;
     }
 
     /**
@@ -117,26 +537,7 @@ public class Drone {
      * @return List of unique restaurants to be visited
      */
     private List<Restaurant> getUniqueRestaurants(Order order) {
-
-        String[] items = order.getItems();
-        // Set up list of restaurants to visit
-        List<Restaurant> restaurantsToVisit = new ArrayList<>();
-        // checks for duplicates
-        HashSet<String> restaurantNames = new HashSet<>();
-
-        for (String item : items) {
-            for (Restaurant restaurant : menu.getRestaurantList()){
-                // Check item is sold by the restaurant
-                if (restaurant.getMenuMap().containsKey(item)) {
-                    // if restaurant is already visited, do not visit again
-                    if (!restaurantNames.contains(restaurant.getName())) {
-                        restaurantsToVisit.add(restaurant);
-                        restaurantNames.add(restaurant.getName());
-                    }
-                }
-            }
-        }
-        return restaurantsToVisit;
+        return new ArrayList<>(order.getRestaurants());
     }
 
     /**
@@ -166,12 +567,10 @@ public class Drone {
         int first = 0;
         int second = 1;
 
-        LongLat firstRestaurant = ClientIO.getW3WCoordinates(machineName,
-                webPort, restaurants.get(first).getLocation());
+        LongLat firstRestaurant = w3wCache.getCoordinates(restaurants.get(first).getLocation());
         double firstDistance = startingLocation.distanceTo(firstRestaurant);
 
-        LongLat secondRestaurant = ClientIO.getW3WCoordinates(machineName,
-                webPort, restaurants.get(second).getLocation());
+        LongLat secondRestaurant = w3wCache.getCoordinates(restaurants.get(second).getLocation());
         double secondDistance = startingLocation.distanceTo(secondRestaurant);
 
         // Create final order queue
@@ -194,55 +593,106 @@ public class Drone {
      * @param orders that are going to be delivered
      */
     public void greedyOrdersInADay(ArrayList<Order> orders) {
-        // get most expensive first
-        orders.sort(Collections.reverseOrder());
+        // calculate the day's candidate legs in parallel up front
+        if (legPool != null) {
+            precomputeLegs(orders, legPool);
+        }
 
-        // Drone is launched from Appleton Tower
-        LongLat previous = appletonTower;
+        // decide in which order the orders are attempted
+        List<Order> sequence = orderScheduler.schedule(orders, this);
 
-        for (Order order : orders) {
-            // if order does not meet requirements (invalid number of items)
-            if (order.getOrderCost(order) == 0) {
-                continue;
-            }
-            List<Restaurant> restaurantsNearest = sortRestaurants(getUniqueRestaurants(order), previous);
-            if (restaurantsNearest == null) {
-                continue;
-            }
-            // if the order delivery is possible && is within moves
-            if (singleOrderRoute(previous, order, restaurantsNearest) && continueIterations) {
-                deliveredOrdersInADay.add(order);
-                previous = flightpath.get(flightpath.size() - 1).getNextPosition();
-            }
+        for (Order order : sequence) {
+            deliverOrder(order);
         }
 
         // Go back to Appleton Tower at the end of moves or end of orders
-        flightpath.addAll(travelToPosition(orders.get(orders.size()-1),
-                flightpath.get(flightpath.size()-1).getNextPosition(), appletonTower));
+        // (a drone in a fleet may not have left its base at all)
+        if (!sequence.isEmpty()) {
+            returnToBase(sequence.get(sequence.size() - 1));
+        }
+
+        String onDate = date == null ? "" : " on " + date;
+        System.out.println("Number of orders delivered by drone " + droneId + onDate + " is "
+                + deliveredOrdersInADay.size() + "/" + orders.size() + " in " + flightpath.size() + " moves.");
+        // a fleet drone may have been assigned no orders, which has no performance
+        if (monetaryValue(orders) > 0) {
+            double costDay = monetaryGain(deliveredOrdersInADay, orders);
+            System.out.println("Monetary value performance of " + (date == null ? "the day" : date)
+                    + " is " + costDay * 100 + "%");
+        }
+    }
+
+    /**
+     * Attempts to deliver an order from the drone's last stop, appending its route to the
+     * flightpath if the drone can still fly back to Appleton Tower afterwards.
+     * Orders that are invalid or do not fit in the moves left are skipped.
+     *
+     * @param order order that is being delivered
+     * @return true if the order was delivered
+     */
+    public boolean deliverOrder(Order order) {
+        // if order does not meet requirements (invalid number of items)
+        if (order.getOrderCost(order) == 0) {
+            return false;
+        }
+        List<Restaurant> restaurantsNearest = sortRestaurants(getUniqueRestaurants(order), lastStop);
+        if (restaurantsNearest == null) {
+            return false;
+        }
+        // skip routes that cannot fit in the moves left, even flown in straight lines
+        if (!isWithinLowerBound(order, restaurantsNearest)) {
+            return false;
+        }
+        // if the order delivery is possible && is within moves
+        if (singleOrderRoute(lastStop, order, restaurantsNearest) && continueIterations) {
+            deliveredOrdersInADay.add(order);
+            lastStop = flightpath.getLastPosition();
+            lastStopLocation = w3wCache.getCoordinates(order.getDeliverTo());
+            return true;
+        }
+        return false;
+    }
 
-        System.out.println("Number of orders delivered is " + deliveredOrdersInADay.size() +
-                "/" + orders.size() + " in " + flightpath.size() + " moves.");
-        double costDay = monetaryGain(deliveredOrdersInADay, orders);
-        System.out.println("Monetary value performance of the day is " + costDay * 100 + "%");
+    /**
+     * Records the delivery of an order whose route is already known, e.g. flown earlier
+     * in the day or calculated by a previous plan, instead of calculating it again.
+     * The route must start at the drone's last stop and is assumed to fit in the moves left.
+     *
+     * @param order order that is being delivered
+     * @param moves route delivering the order, hovering at the delivery address last
+     * @throws IllegalArgumentException if the route does not start at the drone's last stop
+     */
+    public void deliverOrder(Order order, Flightpath moves) {
+        flightpath.appendAll(moves);
+        MAX_NUMBER_OF_MOVES -= moves.size();
+        deliveredOrdersInADay.add(order);
+        lastStop = flightpath.getLastPosition();
+        lastStopLocation = w3wCache.getCoordinates(order.getDeliverTo());
+    }
+
+    /**
+     * Flies back to Appleton Tower from the drone's last stop, if it has left its base.
+     *
+     * @param order order the moves back are recorded against
+     */
+    public void returnToBase(Order order) {
+        if (!flightpath.isEmpty()) {
+            flightpath.appendAll(returnToAppletonTower(order, flightpath.getLastPosition()));
+        }
     }
 
     /**
      * Method used to get all the unique moves from the drone's flightpath.
      * Gets only one value (LongLat) of the currentPosition and nextPosition pair (which identifies a
      * movement from one initial position to a newer position).
-     * Uses global variable flightpath.
+     * Uses global variable flightpath, without copying it.
      *
-     * @return allMoves : ArrayList of unique LongLat objects
-     *                   within the drone's trajectory
+     * @return allMoves : read-only list of unique LongLat objects
+     *                   within the drone's trajectory, starting at the base
      */
-    public ArrayList<LongLat> getAllMovesSingle() {
-        ArrayList<LongLat> allMoves = new ArrayList<>();
-        // adds starting point since second element of pair is selected
-        allMoves.add(appletonTower);
-        for (FlightpathMove fp : flightpath) {
-            allMoves.add(fp.getNextPosition());
-        }
-        return allMoves;
+    public List<LongLat> getAllMovesSingle() {
+        // the flightpath starts at the base; a drone which did not move stays there
+        return flightpath.isEmpty() ? List.of(base) : flightpath.positions();
     }
 
     /**
@@ -274,7 +724,7 @@ public class Drone {
         // get drone's current location
         LongLat currentPosition = pickUp.get(pickUp.size() - 1).getNextPosition();
         // Get delivery location
-        LongLat userLocation = ClientIO.getW3WCoordinates(machineName, webPort, order.getDeliverTo());
+        LongLat userLocation = w3wCache.getCoordinates(order.getDeliverTo());
         // Get drop-off to the delivery location
         ArrayList<FlightpathMove> dropOff = travelToPosition(order, currentPosition, userLocation);
         // if drop-off route impossible
@@ -282,7 +732,7 @@ public class Drone {
 
         // Calculate if route is possible within moves left
         int routeMoves = pickUp.size() + dropOff.size();
-        int movesLeft = getMovesLeft(order, dropOff, routeMoves);
+        int movesLeft = movesLeftAfter(order, dropOff, routeMoves);
 
         // if route number of moves is possible, deliver order
         if (movesLeft >= 0) {
@@ -307,8 +757,8 @@ public class Drone {
      */
     private void updateFlightpath(ArrayList<FlightpathMove> pickUp, ArrayList<FlightpathMove> dropOff) {
         int routeMoves = pickUp.size() + dropOff.size();
-        flightpath.addAll(pickUp);
-        flightpath.addAll(dropOff);
+        flightpath.appendAll(pickUp);
+        flightpath.appendAll(dropOff);
         MAX_NUMBER_OF_MOVES -= routeMoves;
         continueIterations = true;
     }
@@ -330,8 +780,7 @@ public class Drone {
 
         for (Restaurant restaurant : restaurants) {
             // transform restaurant location into LongLat object
-            LongLat restaurantPosition = ClientIO.getW3WCoordinates(machineName,
-                    webPort, restaurant.getLocation());
+            LongLat restaurantPosition = w3wCache.getCoordinates(restaurant.getLocation());
             // Calculate location-to-location route from start position to the restaurant location
             ArrayList<FlightpathMove> flightpathMovesTemp = travelToPosition(order,start,restaurantPosition);
             if (flightpathMovesTemp == null) {
@@ -357,85 +806,91 @@ public class Drone {
      * @return the total amount of moves that the drone would still be able to perform.
      *          Returns MIN_VALUE if route is impossible.
      */
-    private int getMovesLeft(Order order, ArrayList<FlightpathMove> dropOff, int routeMoves) {
-        List<FlightpathMove> pathToAppletonTower = travelToPosition(order,
-                dropOff.get(dropOff.size() - 1).getNextPosition(), appletonTower);
+    private int movesLeftAfter(Order order, ArrayList<FlightpathMove> dropOff, int routeMoves) {
+        LongLat dropOffPosition = dropOff.get(dropOff.size() - 1).getNextPosition();
+        List<FlightpathMove> pathToAppletonTower = travelToPosition(order, dropOffPosition, base);
         // check return is possible
         if (pathToAppletonTower == null) {
             return Integer.MIN_VALUE;
         }
+        // remember the route in case this is the last delivery of the day
+        lastReturnStart = dropOffPosition;
+        lastReturnPath = pathToAppletonTower;
         return MAX_NUMBER_OF_MOVES - routeMoves - pathToAppletonTower.size();
     }
 
     /**
-     * Calculates drone route between startingPoint and endPoint. Re-calculates drone path route
-     * if initial path intersects with the perimeter of the No Fly Zone, returning to the startingPoint.
-     * Re-routing process also ensures that the new path is not intersecting with the No Fly Zone.
+     * Checks whether delivering an order could fit in the moves left, flying straight
+     * from the drone's position to close to each restaurant, the customer and Appleton Tower.
+     * No route is shorter, so only orders that certainly cannot be delivered and flown back
+     * from are rejected; leg matrix estimates are only used for scheduling.
+     *
+     * @param order order that is being delivered
+     * @param restaurants restaurants to be visited, in order
+     * @return false if the order certainly cannot be delivered and flown back from
+     */
+    private boolean isWithinLowerBound(Order order, List<Restaurant> restaurants) {
+        List<LongLat> stops = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            stops.add(w3wCache.getCoordinates(restaurant.getLocation()));
+        }
+        stops.add(getDeliveryLocation(order));
+        stops.add(base);
+        // the first leg starts at the drone's position, the others close to the previous stop
+        double moves = lastStop.minimumMovesTo(stops.get(0), true);
+        for (int i = 1; i < stops.size(); i++) {
+            moves += stops.get(i - 1).minimumMovesTo(stops.get(i), false);
+        }
+        return moves <= MAX_NUMBER_OF_MOVES;
+    }
+
+    /**
+     * Calculates the route back to Appleton Tower at the end of the day,
+     * reusing the route calculated when checking the last delivery if it starts at the same position.
+     *
+     * @param order order the moves are recorded against
+     * @param startingPoint drone's final position
+     * @return moves back to Appleton Tower, null if route is not possible
+     */
+    private List<FlightpathMove> returnToAppletonTower(Order order, LongLat startingPoint) {
+        if (lastReturnPath == null || !startingPoint.equals(lastReturnStart)) {
+            return travelToPosition(order, startingPoint, base);
+        }
+        List<FlightpathMove> moves = new ArrayList<>();
+        for (FlightpathMove move : lastReturnPath) {
+            moves.add(new FlightpathMove(order.getOrderNo(), move.getOriginalPosition(),
+                    move.getNextPosition(), move.getAngle()));
+        }
+        return moves;
+    }
+
+    /**
+     * Calculates drone route between startingPoint and endPoint with the drone's routing engine,
+     * adding a hovering move on arrival for pick-ups and deliveries.
      * If route is not possible, returns null.
+     * Package-private so the routing benchmarks can call it.
      *
      * @param order Order object being delivered
      * @param startingPoint initial position of route
      * @param endPoint location drone is trying to reach
      * @return new LongLat position
      */
-    private ArrayList<FlightpathMove> travelToPosition(Order order, LongLat startingPoint, LongLat endPoint) {
-
-        // constant ensures no infinite loops when drone cannot find viable route
-        int clearedFlightpathCounter = 0;
-
-        LongLat currentPosition = startingPoint;
-        ArrayList<FlightpathMove> moves = new ArrayList<>();
-
-        while (!currentPosition.closeTo(endPoint)) {
-
-            int angle = currentPosition.getAngle(endPoint);
-            LongLat newPosition = currentPosition.nextPosition(angle);
-            Line2D lineSegment = new Line2D.Double(currentPosition.longitude, currentPosition.latitude,
-                    newPosition.longitude, newPosition.latitude);
-
-            for (Line2D line : polygonPerimeters) {
-                // if current path line intersects with polygon perimeter
-                if (line.intersectsLine(lineSegment)) {
-                    // undo all moves performed by the drone so far
-                    moves.clear();
-                    // move drone back to start location
-                    currentPosition = startingPoint;
-
-                    LongLat nearestLandmark = currentPosition.sortLongLats(landmarks).get(0);
-
-                    while (!currentPosition.closeTo(nearestLandmark)) {
-                        // impossible order delivery if drone has attempted new route too many times
-                        if (clearedFlightpathCounter >= landmarks.size()) {
-                            return null;
-                        }
-
-                        int newAngle = currentPosition.getAngle(nearestLandmark);
-                        newPosition = currentPosition.nextPosition(newAngle);
-
-                        // if route to new location crosses no fly zone,
-                        // then it is an impossible route
-                        if (currentPosition.isIntersectingPath(newPosition, polygonPerimeters)) {
-                            return null;
-                        }
-
-                        FlightpathMove newMove = new FlightpathMove(order.getOrderNo(),
-                                currentPosition, newPosition, newAngle);
-                        moves.add(newMove);
-                        currentPosition = newPosition;
-                    }
-                    clearedFlightpathCounter += 1;
-                }
-            }
-            // save move
-            FlightpathMove move = new FlightpathMove(order.getOrderNo(), currentPosition, newPosition, angle);
-            moves.add(move);
-
-            // move drone
-            currentPosition = newPosition;
+    ArrayList<FlightpathMove> travelToPosition(Order order, LongLat startingPoint, LongLat endPoint) {
+
+        long startTime = System.nanoTime();
+        ArrayList<FlightpathMove> moves = routingEngine.findRoute(order.getOrderNo(), startingPoint, endPoint);
+        Metrics.recordSince("routing.leg", startTime);
+        // if route is not possible
+        if (moves == null) {
+            Metrics.increment("routing.unreachableLegs");
+            return null;
         }
+        Metrics.add("routing.moves", moves.size());
 
         // hover for delivery or pick-up if location is not Appleton Tower
-        if (endPoint != appletonTower) {
+        if (endPoint != base) {
+            LongLat currentPosition = moves.isEmpty()
+                    ? startingPoint : moves.get(moves.size() - 1).getNextPosition();
             // calculate new hovering position
             currentPosition = currentPosition.nextPosition(LongLat.HOVERING_ANGLE);
             FlightpathMove hover = new FlightpathMove(order.getOrderNo(),
@@ -469,7 +924,7 @@ public class Drone {
     private int monetaryValue(Collection<Order> orders) {
         int totalCost = 0;
         for (Order order : orders) {
-            totalCost += menu.getDeliveryCost(order.getItems());
+            totalCost += order.getCost();
         }
         return totalCost;
     }
@@ -0,0 +1,306 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class representing a fleet of drones delivering a single day's orders.
+ * Orders are first assigned to drones, then every drone plans its own
+ * orders on its own worker thread, with its own move budget and base.
+ * Drones share the map, the What3Words cache and the leg matrix.
+ */
+public class Fleet {
+
+    /**
+     * Drones of the fleet, in order of drone id
+     */
+    private final List<Drone> drones;
+
+    /**
+     * Orders assigned to each drone, in the same order as drones
+     */
+    private final List<ArrayList<Order>> assignedOrders = new ArrayList<>();
+
+    /**
+     * Date of the day being planned, named in the day's summary, null if not known
+     */
+    private String date;
+
+    /**
+     * Fleet class constructor. Every drone is given the first drone's leg matrix,
+     * so legs calculated for one drone are reused by the others.
+     *
+     * @param drones drones of the fleet, at least one
+     */
+    public Fleet(List<Drone> drones) {
+        if (drones.isEmpty()) {
+            throw new IllegalArgumentException("A fleet needs at least one drone");
+        }
+        this.drones = new ArrayList<>(drones);
+        LegMatrix legMatrix = drones.get(0).getLegMatrix();
+        for (Drone drone : drones) {
+            drone.setLegMatrix(legMatrix);
+        }
+    }
+
+    /**
+     * Creates a fleet of identical drones based at Appleton Tower,
+     * numbered from 1 to numberOfDrones.
+     *
+     * @param numberOfDrones number of drones in the fleet
+     * @param menu Menus object to acquire Restaurant information
+     * @param w3wCache cache used to resolve What3Words addresses
+     * @param campusMap map of the delivery area
+     * @param moveBudget maximum number of moves each drone can perform
+     * @return fleet of drones
+     */
+    public static Fleet create(int numberOfDrones, Menus menu, W3WCache w3wCache, CampusMap campusMap,
+                               int moveBudget) {
+        return create(menu, w3wCache, campusMap, Collections.nCopies(numberOfDrones, null),
+                Collections.nCopies(numberOfDrones, moveBudget));
+    }
+
+    /**
+     * Creates a fleet with one drone per base, numbered from 1 in the order of the bases.
+     *
+     * @param menu Menus object to acquire Restaurant information
+     * @param w3wCache cache used to resolve What3Words addresses
+     * @param campusMap map of the delivery area
+     * @param bases base of every drone, null for Appleton Tower
+     * @param moveBudgets maximum number of moves of every drone, in the same order as bases
+     * @return fleet of drones
+     * @throws IllegalArgumentException if there are not as many budgets as bases
+     */
+    public static Fleet create(Menus menu, W3WCache w3wCache, CampusMap campusMap, List<LongLat> bases,
+                               List<Integer> moveBudgets) {
+        if (bases.size() != moveBudgets.size()) {
+            throw new IllegalArgumentException("Every drone needs a base and a move budget");
+        }
+        List<Drone> drones = new ArrayList<>();
+        for (int i = 0; i < bases.size(); i++) {
+            drones.add(new Drone(i + 1, menu, w3wCache, campusMap, bases.get(i), moveBudgets.get(i)));
+        }
+        return new Fleet(drones);
+    }
+
+    /**
+     * Getter method for the drones of the fleet
+     *
+     * @return drones
+     */
+    public List<Drone> getDrones() {
+        return Collections.unmodifiableList(drones);
+    }
+
+    /**
+     * Setter method for the date of the day being planned, named in the summaries printed
+     * by the fleet and its drones so that days planned concurrently can be told apart
+     *
+     * @param date date in "MM/DD/YYYY" format, null to leave it out
+     */
+    public void setDate(String date) {
+        this.date = date;
+        for (Drone drone : drones) {
+            drone.setDate(date);
+        }
+    }
+
+    /**
+     * Getter method for the orders assigned to each drone by the last call to deliverOrdersInADay
+     *
+     * @return orders assigned to each drone, in the same order as getDrones
+     */
+    public List<ArrayList<Order>> getAssignedOrders() {
+        return Collections.unmodifiableList(assignedOrders);
+    }
+
+    /**
+     * Assigns the day's orders to the drones and plans every drone's route
+     * on its own worker thread.
+     * Updates every drone's flightpath and delivered orders.
+     *
+     * @param orders orders that are going to be delivered
+     * @throws RuntimeException the exception of the first drone which failed, e.g. a
+     *          WebServerException, so the day is not written with a partial plan
+     */
+    public void deliverOrdersInADay(ArrayList<Order> orders) {
+        assignedOrders.clear();
+        assignedOrders.addAll(assignOrders(orders));
+
+        ExecutorService workers = Executors.newFixedThreadPool(drones.size());
+        try {
+            List<Future<?>> plans = new ArrayList<>();
+            for (int i = 0; i < drones.size(); i++) {
+                Drone drone = drones.get(i);
+                ArrayList<Order> droneOrders = assignedOrders.get(i);
+                plans.add(workers.submit(() -> drone.greedyOrdersInADay(droneOrders)));
+            }
+            for (Future<?> plan : plans) {
+                plan.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while planning the fleet", e);
+        } catch (ExecutionException e) {
+            // fail the day as a single drone would
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Drone planning failed", e.getCause());
+        } finally {
+            // drones still planning are stopped
+            workers.shutdownNow();
+        }
+
+        List<Order> delivered = getDeliveredOrdersInADay();
+        int moves = 0;
+        for (Drone drone : drones) {
+            moves += drone.getFlightpath().size();
+        }
+        String onDate = date == null ? "" : " on " + date;
+        System.out.println("Number of orders delivered by the fleet" + onDate + " is " + delivered.size() +
+                "/" + orders.size() + " in " + moves + " moves.");
+        // a day with no orders to deliver has no performance
+        if (monetaryValue(orders) > 0) {
+            double costDay = monetaryValue(delivered) / (double) monetaryValue(orders);
+            System.out.println("Monetary value performance of the fleet" + onDate + " is " + costDay * 100 + "%");
+        }
+    }
+
+    /**
+     * Assigns orders to drones, most expensive first. Each order goes to the drone whose
+     * assigned orders would use the smallest share of its move budget, counting every
+     * order as a round trip from the drone's base. Orders that fit in no drone's budget
+     * go to the least loaded drone, which still attempts them.
+     * Orders breaking the menu constraints are not assigned to any drone.
+     *
+     * @param orders the day's orders
+     * @return orders assigned to each drone, in the same order as drones
+     */
+    private List<ArrayList<Order>> assignOrders(List<Order> orders) {
+        List<ArrayList<Order>> assignment = new ArrayList<>();
+        int[] load = new int[drones.size()];
+        for (int i = 0; i < drones.size(); i++) {
+            assignment.add(new ArrayList<>());
+        }
+
+        List<Order> byCost = new ArrayList<>(orders);
+        byCost.sort(Collections.reverseOrder());
+        for (Order order : byCost) {
+            if (order.getCost() == 0) {
+                continue;
+            }
+            int best = -1;
+            double bestShare = Double.POSITIVE_INFINITY;
+            int bestMoves = 0;
+            int leastLoaded = 0;
+            for (int i = 0; i < drones.size(); i++) {
+                Drone drone = drones.get(i);
+                if (load[i] / (double) drone.getMovesLeft()
+                        < load[leastLoaded] / (double) drones.get(leastLoaded).getMovesLeft()) {
+                    leastLoaded = i;
+                }
+                int roundTrip = estimateRoundTrip(drone, order);
+                if (roundTrip == LegMatrix.UNREACHABLE || load[i] + roundTrip > drone.getMovesLeft()) {
+                    continue;
+                }
+                double share = (load[i] + roundTrip) / (double) drone.getMovesLeft();
+                if (share < bestShare) {
+                    best = i;
+                    bestShare = share;
+                    bestMoves = roundTrip;
+                }
+            }
+            if (best < 0) {
+                assignment.get(leastLoaded).add(order);
+            } else {
+                assignment.get(best).add(order);
+                load[best] += bestMoves;
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * Estimates the number of moves for a drone to deliver an order from its base
+     * and fly back to it
+     *
+     * @param drone drone delivering the order
+     * @param order order that is being delivered
+     * @return estimated number of moves, LegMatrix.UNREACHABLE if a leg has no route
+     */
+    private int estimateRoundTrip(Drone drone, Order order) {
+        int deliveryMoves = drone.estimateDeliveryMoves(drone.getBase(), order);
+        if (deliveryMoves == LegMatrix.UNREACHABLE) {
+            return LegMatrix.UNREACHABLE;
+        }
+        int returnMoves = drone.estimateReturnMoves(drone.getDeliveryLocation(order));
+        if (returnMoves == LegMatrix.UNREACHABLE) {
+            return LegMatrix.UNREACHABLE;
+        }
+        return deliveryMoves + returnMoves;
+    }
+
+    /**
+     * Gets every drone's flightpath, keyed by drone id
+     *
+     * @return flightpaths in order of drone id
+     */
+    public LinkedHashMap<Integer, Flightpath> getFlightpaths() {
+        LinkedHashMap<Integer, Flightpath> flightpaths = new LinkedHashMap<>();
+        for (Drone drone : drones) {
+            flightpaths.put(drone.getDroneId(), drone.getFlightpath());
+        }
+        return flightpaths;
+    }
+
+    /**
+     * Gets every drone's positions along its flightpath, keyed by drone id
+     *
+     * @return positions in order of drone id
+     */
+    public LinkedHashMap<Integer, List<LongLat>> getAllMovesSingle() {
+        LinkedHashMap<Integer, List<LongLat>> positions = new LinkedHashMap<>();
+        for (Drone drone : drones) {
+            positions.put(drone.getDroneId(), drone.getAllMovesSingle());
+        }
+        return positions;
+    }
+
+    /**
+     * Gets the orders delivered by the whole fleet
+     *
+     * @return delivered orders, drone by drone
+     */
+    public ArrayList<Order> getDeliveredOrdersInADay() {
+        ArrayList<Order> delivered = new ArrayList<>();
+        for (Drone drone : drones) {
+            delivered.addAll(drone.getDeliveredOrdersInADay());
+        }
+        return delivered;
+    }
+
+    /**
+     * Calculates monetary value of a list of orders
+     *
+     * @param orders collection of orders
+     * @return total cost of all of orders
+     */
+    private int monetaryValue(List<Order> orders) {
+        int totalCost = 0;
+        for (Order order : orders) {
+            totalCost += order.getCost();
+        }
+        return totalCost;
+    }
+
+}
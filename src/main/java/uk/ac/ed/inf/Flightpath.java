@@ -0,0 +1,383 @@
+package uk.ac.ed.inf;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Compact, column by column storage of a drone's moves.
+ * A flightpath is continuous (every move starts where the previous one ended), so the positions are
+ * stored once, as longitude and latitude pairs in a single double array: move i flies from position i
+ * to position i + 1. Angles are stored as shorts, and the order number of every move as an index into
+ * a table holding every order number once. A move costs 22 bytes instead of the four or five objects
+ * of a FlightpathMove.
+ *
+ * Moves are only ever appended, never changed, so slices share the arrays of the flightpath they are
+ * taken from and stay valid as it grows. Slices, moves() and positions() are read-only views which copy
+ * nothing; the GeoJSON and database writers read the columns through them.
+ */
+public class Flightpath {
+
+    /**
+     * Number of moves room is made for when the first move is appended
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Longitude and latitude of every position, interleaved: position i is at [2i, 2i + 1]
+     */
+    private double[] coordinates;
+
+    /**
+     * Angle of every move
+     */
+    private short[] angles;
+
+    /**
+     * Index of every move's order number in orderNos
+     */
+    private int[] orderIndices;
+
+    /**
+     * Every order number moves were appended for, once, in the order they first appeared
+     */
+    private String[] orderNos;
+
+    /**
+     * Number of order numbers in orderNos
+     */
+    private int orderCount;
+
+    /**
+     * Mapping of order numbers to their index in orderNos, null for a view
+     */
+    private final HashMap<String, Integer> orderIndex;
+
+    /**
+     * First move of a view within the flightpath it was taken from, 0 otherwise
+     */
+    private final int offset;
+
+    /**
+     * Number of moves
+     */
+    private int size;
+
+    /**
+     * Flightpath class constructor for an empty flightpath
+     */
+    public Flightpath() {
+        coordinates = new double[0];
+        angles = new short[0];
+        orderIndices = new int[0];
+        orderNos = new String[0];
+        orderIndex = new HashMap<>();
+        offset = 0;
+    }
+
+    /**
+     * Flightpath class constructor for a read-only view of another flightpath's moves
+     *
+     * @param flightpath flightpath whose arrays are shared
+     * @param offset first move of the view within the flightpath's arrays
+     * @param size number of moves in the view
+     */
+    private Flightpath(Flightpath flightpath, int offset, int size) {
+        coordinates = flightpath.coordinates;
+        angles = flightpath.angles;
+        orderIndices = flightpath.orderIndices;
+        orderNos = flightpath.orderNos;
+        orderIndex = null;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Appends a move
+     *
+     * @param orderNo order number of the order being delivered during the move
+     * @param from position the move starts at
+     * @param to position the move ends at
+     * @param angle direction of the move
+     * @throws IllegalArgumentException if the move does not start where the flightpath ends
+     * @throws UnsupportedOperationException if the flightpath is a view
+     */
+    public void append(String orderNo, LongLat from, LongLat to, int angle) {
+        if (orderIndex == null) {
+            throw new UnsupportedOperationException("Flightpath views are read-only");
+        }
+        if (size == 0) {
+            ensureCapacity(INITIAL_CAPACITY);
+            coordinates[0] = from.longitude;
+            coordinates[1] = from.latitude;
+        } else if (coordinates[2 * size] != from.longitude || coordinates[2 * size + 1] != from.latitude) {
+            throw new IllegalArgumentException("Move of order " + orderNo + " does not start where the flightpath ends");
+        } else if (size == angles.length) {
+            ensureCapacity(2 * size);
+        }
+        coordinates[2 * size + 2] = to.longitude;
+        coordinates[2 * size + 3] = to.latitude;
+        angles[size] = (short) angle;
+        orderIndices[size] = intern(orderNo);
+        size++;
+    }
+
+    /**
+     * Appends a move
+     *
+     * @param move move to append
+     * @throws IllegalArgumentException if the move does not start where the flightpath ends
+     */
+    public void append(FlightpathMove move) {
+        append(move.getOrderNo(), move.getOriginalPosition(), move.getNextPosition(), move.getAngle());
+    }
+
+    /**
+     * Appends moves, e.g. a leg calculated by a routing engine
+     *
+     * @param moves moves to append, in order
+     * @throws IllegalArgumentException if the moves do not follow on from the flightpath
+     */
+    public void appendAll(List<FlightpathMove> moves) {
+        for (FlightpathMove move : moves) {
+            append(move);
+        }
+    }
+
+    /**
+     * Appends the moves of another flightpath, e.g. a slice of a previous plan,
+     * copying its columns without building a FlightpathMove per move
+     *
+     * @param moves moves to append, in order
+     * @throws IllegalArgumentException if the moves do not follow on from the flightpath
+     */
+    public void appendAll(Flightpath moves) {
+        if (moves.isEmpty()) {
+            return;
+        }
+        if (orderIndex == null) {
+            throw new UnsupportedOperationException("Flightpath views are read-only");
+        }
+        if (size == 0) {
+            ensureCapacity(Math.max(INITIAL_CAPACITY, moves.size));
+            coordinates[0] = moves.getLongitude(0);
+            coordinates[1] = moves.getLatitude(0);
+        } else if (coordinates[2 * size] != moves.getLongitude(0) || coordinates[2 * size + 1] != moves.getLatitude(0)) {
+            throw new IllegalArgumentException("Moves do not start where the flightpath ends");
+        } else if (size + moves.size > angles.length) {
+            ensureCapacity(Math.max(2 * size, size + moves.size));
+        }
+        System.arraycopy(moves.coordinates, 2 * (moves.offset + 1), coordinates, 2 * (size + 1), 2 * moves.size);
+        System.arraycopy(moves.angles, moves.offset, angles, size, moves.size);
+        for (int move = 0; move < moves.size; move++) {
+            orderIndices[size + move] = intern(moves.getOrderNo(move));
+        }
+        size += moves.size;
+    }
+
+    /**
+     * Gets a read-only view of consecutive moves, sharing this flightpath's storage
+     *
+     * @param fromMove index of the first move, inclusive
+     * @param toMove index of the last move, exclusive
+     * @return moves fromMove to toMove - 1
+     * @throws IndexOutOfBoundsException if the range is not within the flightpath
+     */
+    public Flightpath slice(int fromMove, int toMove) {
+        Objects.checkFromToIndex(fromMove, toMove, size);
+        return new Flightpath(this, offset + fromMove, toMove - fromMove);
+    }
+
+    /**
+     * Gets the number of moves
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the flightpath has no moves
+     *
+     * @return true if there are no moves
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the order number of the order being delivered during a move
+     *
+     * @param move index of the move
+     * @return orderNo
+     */
+    public String getOrderNo(int move) {
+        return orderNos[orderIndices[offset + Objects.checkIndex(move, size)]];
+    }
+
+    /**
+     * Gets the angle of a move
+     *
+     * @param move index of the move
+     * @return angle
+     */
+    public int getAngle(int move) {
+        return angles[offset + Objects.checkIndex(move, size)];
+    }
+
+    /**
+     * Gets the longitude of a position. Position i is where move i starts, and position
+     * i + 1 where it ends, so there is one more position than there are moves.
+     *
+     * @param position index of the position, from 0 to size()
+     * @return longitude
+     */
+    public double getLongitude(int position) {
+        return coordinates[2 * (offset + checkPosition(position))];
+    }
+
+    /**
+     * Gets the latitude of a position. Position i is where move i starts, and position
+     * i + 1 where it ends, so there is one more position than there are moves.
+     *
+     * @param position index of the position, from 0 to size()
+     * @return latitude
+     */
+    public double getLatitude(int position) {
+        return coordinates[2 * (offset + checkPosition(position)) + 1];
+    }
+
+    /**
+     * Gets a position as a LongLat
+     *
+     * @param position index of the position, from 0 to size()
+     * @return position
+     */
+    public LongLat getPosition(int position) {
+        return new LongLat(getLongitude(position), getLatitude(position));
+    }
+
+    /**
+     * Gets the position the flightpath ends at
+     *
+     * @return last position, null if there are no moves
+     */
+    public LongLat getLastPosition() {
+        return size == 0 ? null : getPosition(size);
+    }
+
+    /**
+     * Gets a move as a FlightpathMove
+     *
+     * @param move index of the move
+     * @return move
+     */
+    public FlightpathMove getMove(int move) {
+        return new FlightpathMove(getOrderNo(move), getPosition(move), getPosition(move + 1), getAngle(move));
+    }
+
+    /**
+     * Gets a read-only view of the moves, each one built as a FlightpathMove when it is read
+     *
+     * @return moves
+     */
+    public List<FlightpathMove> moves() {
+        return new MoveList();
+    }
+
+    /**
+     * Gets a read-only view of the positions: where the flightpath starts, then the position
+     * every move ends at. Each one is built as a LongLat when it is read.
+     *
+     * @return positions, empty if there are no moves
+     */
+    public List<LongLat> positions() {
+        return new PositionList();
+    }
+
+    /**
+     * Gets the index of an order number in the table of order numbers, adding it if needed.
+     * Consecutive moves are nearly always for the same order, so the last one is checked first.
+     *
+     * @param orderNo order number
+     * @return index of the order number in orderNos
+     */
+    private int intern(String orderNo) {
+        if (orderCount > 0 && Objects.equals(orderNos[orderCount - 1], orderNo)) {
+            return orderCount - 1;
+        }
+        Integer index = orderIndex.get(orderNo);
+        if (index != null) {
+            return index;
+        }
+        if (orderCount == orderNos.length) {
+            orderNos = Arrays.copyOf(orderNos, Math.max(8, 2 * orderCount));
+        }
+        orderNos[orderCount] = orderNo;
+        orderIndex.put(orderNo, orderCount);
+        return orderCount++;
+    }
+
+    /**
+     * Checks that a position is within the flightpath
+     *
+     * @param position index of the position
+     * @return position
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    private int checkPosition(int position) {
+        return Objects.checkIndex(position, size == 0 ? 0 : size + 1);
+    }
+
+    /**
+     * Grows the arrays to hold at least a number of moves.
+     * Views keep the arrays they were taken from, whose moves never change.
+     *
+     * @param capacity number of moves
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= angles.length) {
+            return;
+        }
+        coordinates = Arrays.copyOf(coordinates, 2 * (capacity + 1));
+        angles = Arrays.copyOf(angles, capacity);
+        orderIndices = Arrays.copyOf(orderIndices, capacity);
+    }
+
+    /**
+     * View of the moves as FlightpathMoves
+     */
+    private class MoveList extends AbstractList<FlightpathMove> implements RandomAccess {
+
+        @Override
+        public FlightpathMove get(int index) {
+            return getMove(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * View of the positions as LongLats
+     */
+    private class PositionList extends AbstractList<LongLat> implements RandomAccess {
+
+        @Override
+        public LongLat get(int index) {
+            return getPosition(index);
+        }
+
+        @Override
+        public int size() {
+            return size == 0 ? 0 : size + 1;
+        }
+    }
+
+}
@@ -25,7 +25,17 @@ public class GeoClient {
 
         // set up response recipient
         FeatureCollection fc = ClientIO.getGeoJSON(machineName, port, "landmarks");
+        return findAllLandMarks(fc);
+    }
 
+    /**
+     * Method used to transform all landmarks from FeatureCollection objects to LongLats.
+     *
+     * @param fc contents of a landmarks geoJSON file
+     * @throws NullPointerException if information is null
+     * @return coordinates: list of all the landmarks
+     */
+    public static ArrayList<LongLat> findAllLandMarks(FeatureCollection fc) {
         if (fc == null || fc.features() == null) {
             throw new NullPointerException();
         }
@@ -63,7 +73,17 @@ public class GeoClient {
     private static List<Polygon> getNoFlyZones(String machineName, String port) {
         // set up response recipient
         FeatureCollection fc = ClientIO.getGeoJSON(machineName, port, "no-fly-zones");
+        return getNoFlyZones(fc);
+    }
 
+    /**
+     * Method used to identify all the No Fly Zones in a FeatureCollection
+     *
+     * @param fc contents of a no-fly-zones geoJSON file
+     * @throws NullPointerException if information is null
+     * @return list of polygon objects which represent all no-fly zone buildings
+     */
+    private static List<Polygon> getNoFlyZones(FeatureCollection fc) {
         if (fc == null || fc.features() == null) {
             throw new NullPointerException();
         }
@@ -85,6 +105,48 @@ public class GeoClient {
         return protectedBuildings;
     }
 
+    /**
+     * Method which gets the outline of every No Fly Zone polygon as a list of its
+     * vertices (LongLats), in the order they appear in the polygon's outer ring.
+     *
+     * @param machineName web server connectivity host
+     * @param port web port enabling connectivity access
+     * @return outlines of all the No Fly Zone buildings
+     */
+    public static List<List<LongLat>> getNoFlyZoneOutlines(String machineName, String port) {
+        return getNoFlyZoneOutlines(getNoFlyZones(machineName, port));
+    }
+
+    /**
+     * Method which gets the outline of every No Fly Zone polygon in a FeatureCollection,
+     * e.g. read from a local file.
+     *
+     * @param fc contents of a no-fly-zones geoJSON file
+     * @return outlines of all the No Fly Zone buildings
+     */
+    public static List<List<LongLat>> getNoFlyZoneOutlines(FeatureCollection fc) {
+        return getNoFlyZoneOutlines(getNoFlyZones(fc));
+    }
+
+    /**
+     * Method which gets the outline of every polygon as a list of its vertices
+     *
+     * @param noFlyZones No Fly Zone polygons
+     * @return outlines of all the polygons
+     */
+    private static List<List<LongLat>> getNoFlyZoneOutlines(List<Polygon> noFlyZones) {
+        List<List<LongLat>> outlines = new ArrayList<>();
+        for (Polygon polygon : noFlyZones) {
+            LineString ls = polygon.outer();
+            List<LongLat> outline = new ArrayList<>();
+            for (Point point : ls.coordinates()) {
+                outline.add(new LongLat(point.longitude(), point.latitude()));
+            }
+            outlines.add(outline);
+        }
+        return outlines;
+    }
+
     /**
      * Method which transforms a Polygon into a List of Line2D segments
      *
@@ -93,18 +155,24 @@ public class GeoClient {
      * @return polygonBorders : list of all the polygon's perimeters
      */
     public static List<Line2D> getPolygonBorders(String machineName, String port) {
-        List<Polygon> noFlyZones = getNoFlyZones(machineName, port);
-        List<Line2D> polygonBorders = new ArrayList<>();
-        for (Polygon polygon : noFlyZones) {
-            LineString ls = polygon.outer();
-            List<Point> points = ls.coordinates();
+        return getPolygonBorders(getNoFlyZoneOutlines(machineName, port));
+    }
 
-            // Create Line2D objects from Point
+    /**
+     * Method which transforms polygon outlines into a List of Line2D segments
+     *
+     * @param outlines vertices of each polygon's outer ring
+     * @return polygonBorders : list of all the polygons' perimeters
+     */
+    public static List<Line2D> getPolygonBorders(List<List<LongLat>> outlines) {
+        List<Line2D> polygonBorders = new ArrayList<>();
+        for (List<LongLat> points : outlines) {
+            // Create Line2D objects from consecutive vertices
             for (int i = 1; i < points.size(); i++) {
-                Line2D lineSegment = new Line2D.Double(points.get(i-1).longitude(),
-                        points.get(i-1).latitude(),
-                        points.get(i).longitude(),
-                        points.get(i).latitude());
+                Line2D lineSegment = new Line2D.Double(points.get(i-1).longitude,
+                        points.get(i-1).latitude,
+                        points.get(i).longitude,
+                        points.get(i).latitude);
                 polygonBorders.add(lineSegment);
             }
         }
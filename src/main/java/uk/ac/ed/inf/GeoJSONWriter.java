@@ -0,0 +1,240 @@
+package uk.ac.ed.inf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming writer of drone flightpaths as a GeoJSON FeatureCollection.
+ * Coordinates are encoded straight from the flightpath's columns into a fixed buffer which is
+ * drained to a file channel (optionally through gzip), so no Point, LineString, Feature or
+ * whole-file String is built and memory use does not grow with the size of the output.
+ *
+ * Every feature is a LineString with a droneId property. When flightpaths are split by
+ * order, every order's moves form their own feature, which also has an orderNo property.
+ */
+public class GeoJSONWriter implements Closeable {
+
+    /**
+     * Size of the output buffer, and of the gzip buffer when compressing
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Channel the file is written to, through gzip when compressing
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Encoded output waiting to be written to the channel
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Whether no feature has been written yet
+     */
+    private boolean firstFeature = true;
+
+    /**
+     * Whether no coordinate has been written to the current feature yet
+     */
+    private boolean firstCoordinate;
+
+    /**
+     * GeoJSONWriter class constructor. Creates (or truncates) the file and starts the FeatureCollection.
+     *
+     * @param file file to write
+     * @param gzip true to gzip the output
+     * @throws IOException if the file cannot be opened
+     */
+    public GeoJSONWriter(Path file, boolean gzip) throws IOException {
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE))
+                    : fileChannel;
+        } catch (IOException e) {
+            fileChannel.close();
+            throw e;
+        }
+        put("{\"type\":\"FeatureCollection\",\"features\":[");
+    }
+
+    /**
+     * Writes every drone's flightpath to a GeoJSON file
+     *
+     * @param file file to write
+     * @param flightpaths every drone's flightpath, keyed by drone id
+     * @param splitByOrder true to write every order's moves as a separate feature
+     * @param gzip true to gzip the output
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Map<Integer, Flightpath> flightpaths,
+                             boolean splitByOrder, boolean gzip) throws IOException {
+        try (GeoJSONWriter writer = new GeoJSONWriter(file, gzip)) {
+            for (Map.Entry<Integer, Flightpath> entry : flightpaths.entrySet()) {
+                writer.writeFlightpath(entry.getKey(), entry.getValue(), splitByOrder);
+            }
+        }
+    }
+
+    /**
+     * Writes a drone's flightpath: the starting position of its first move, then the
+     * position reached by every move. A drone which did not move writes no feature.
+     *
+     * @param droneId id of the drone
+     * @param flightpath the drone's moves, in order
+     * @param splitByOrder true to write every order's moves as a separate feature
+     * @throws IOException if the file cannot be written
+     */
+    public void writeFlightpath(int droneId, Flightpath flightpath, boolean splitByOrder)
+            throws IOException {
+        if (flightpath.isEmpty()) {
+            return;
+        }
+        String orderNo = flightpath.getOrderNo(0);
+        beginFeature();
+        putCoordinate(flightpath.getLongitude(0), flightpath.getLatitude(0));
+        for (int move = 0; move < flightpath.size(); move++) {
+            // order numbers are interned, so moves of the same order share the same String
+            String moveOrderNo = flightpath.getOrderNo(move);
+            if (splitByOrder && !moveOrderNo.equals(orderNo)) {
+                endFeature(droneId, orderNo);
+                orderNo = moveOrderNo;
+                // features of consecutive orders share the position between them
+                beginFeature();
+                putCoordinate(flightpath.getLongitude(move), flightpath.getLatitude(move));
+            }
+            putCoordinate(flightpath.getLongitude(move + 1), flightpath.getLatitude(move + 1));
+        }
+        endFeature(droneId, splitByOrder ? orderNo : null);
+    }
+
+    /**
+     * Ends the FeatureCollection, writes what is left in the buffer and closes the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            put("]}");
+            flush();
+        } finally {
+            // closing the gzip channel finishes the compressed stream and closes the file
+            channel.close();
+        }
+    }
+
+    /**
+     * Starts a LineString feature
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void beginFeature() throws IOException {
+        if (!firstFeature) {
+            put(",");
+        }
+        firstFeature = false;
+        firstCoordinate = true;
+        put("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+    }
+
+    /**
+     * Ends the current feature with its properties
+     *
+     * @param droneId id of the drone
+     * @param orderNo order number of the feature's moves, null if the feature is not split by order
+     * @throws IOException if the file cannot be written
+     */
+    private void endFeature(int droneId, String orderNo) throws IOException {
+        put("]},\"properties\":{\"droneId\":");
+        put(Integer.toString(droneId));
+        if (orderNo != null) {
+            put(",\"orderNo\":");
+            putString(orderNo);
+        }
+        put("}}");
+    }
+
+    /**
+     * Writes a [longitude,latitude] coordinate of the current feature
+     *
+     * @param longitude longitude of the position
+     * @param latitude latitude of the position
+     * @throws IOException if the file cannot be written
+     */
+    private void putCoordinate(double longitude, double latitude) throws IOException {
+        put(firstCoordinate ? "[" : ",[");
+        firstCoordinate = false;
+        put(Double.toString(longitude));
+        put(",");
+        put(Double.toString(latitude));
+        put("]");
+    }
+
+    /**
+     * Writes a quoted JSON string, escaping quotes, backslashes and control characters
+     *
+     * @param value string to write
+     * @throws IOException if the file cannot be written
+     */
+    private void putString(String value) throws IOException {
+        StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        byte[] bytes = escaped.append('"').toString().getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(b);
+        }
+    }
+
+    /**
+     * Writes ASCII text (JSON structure and numbers) to the buffer, draining it when full
+     *
+     * @param text text to write
+     * @throws IOException if the file cannot be written
+     */
+    private void put(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the buffered output to the channel
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
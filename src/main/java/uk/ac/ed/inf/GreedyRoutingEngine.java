@@ -0,0 +1,121 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+
+/**
+ * Routing engine which points the drone straight at its goal.
+ * If the straight route intersects with the perimeter of the No Fly Zone, all moves are
+ * undone and the drone first flies to the landmark nearest to the starting point,
+ * continuing towards the goal from there.
+ */
+public class GreedyRoutingEngine implements RoutingEngine {
+
+    /**
+     * All available landmarks to be used when re-routing.
+     */
+    private final ArrayList<LongLat> landmarks;
+
+    /**
+     * Spatial index over the No-Fly Zone perimeters
+     */
+    private final NoFlyZoneIndex noFlyZoneIndex;
+
+    /**
+     * GreedyRoutingEngine class constructor
+     *
+     * @param landmarks landmarks used to re-route around No-Fly Zones
+     * @param noFlyZoneIndex spatial index over the No-Fly Zone perimeters
+     */
+    public GreedyRoutingEngine(ArrayList<LongLat> landmarks, NoFlyZoneIndex noFlyZoneIndex) {
+        this.landmarks = landmarks;
+        this.noFlyZoneIndex = noFlyZoneIndex;
+    }
+
+    /**
+     * Calculates drone route between startingPoint and endPoint. Re-calculates drone path route
+     * if initial path intersects with the perimeter of the No Fly Zone, returning to the startingPoint.
+     * Re-routing process also ensures that the new path is not intersecting with the No Fly Zone.
+     * If route is not possible, returns null.
+     *
+     * @param orderNo order number of the order being delivered
+     * @param startingPoint initial position of route
+     * @param endPoint location drone is trying to reach
+     * @return moves from startingPoint to endPoint, null if route is not possible
+     */
+    @Override
+    public ArrayList<FlightpathMove> findRoute(String orderNo, LongLat startingPoint, LongLat endPoint) {
+
+        // number of detours through a landmark, at most one
+        int clearedFlightpathCounter = 0;
+
+        ArrayList<FlightpathMove> moves = new ArrayList<>();
+
+        // the search runs on primitive coordinates; LongLats are only created for saved moves
+        LongLat currentPosition = startingPoint;
+        double longitude = startingPoint.longitude;
+        double latitude = startingPoint.latitude;
+
+        while (!LongLat.closeTo(longitude, latitude, endPoint.longitude, endPoint.latitude)) {
+
+            int angle = LongLat.getAngle(longitude, latitude, endPoint.longitude, endPoint.latitude);
+            double newLongitude = LongLat.nextLongitude(longitude, latitude, angle);
+            double newLatitude = LongLat.nextLatitude(longitude, latitude, angle);
+
+            // if current path line intersects with a polygon perimeter
+            if (noFlyZoneIndex.intersects(longitude, latitude, newLongitude, newLatitude)) {
+                // the detour always goes through the landmark nearest to the start: if the way on
+                // from it is blocked too, flying the same detour again cannot help
+                if (clearedFlightpathCounter > 0 || landmarks.isEmpty()) {
+                    return null;
+                }
+                Metrics.increment("routing.landmarkReroutes");
+                // undo all moves performed by the drone so far
+                moves.clear();
+                // move drone back to start location
+                currentPosition = startingPoint;
+                longitude = startingPoint.longitude;
+                latitude = startingPoint.latitude;
+
+                LongLat nearestLandmark = currentPosition.sortLongLats(landmarks).get(0);
+
+                while (!LongLat.closeTo(longitude, latitude, nearestLandmark.longitude, nearestLandmark.latitude)) {
+                    int newAngle = LongLat.getAngle(longitude, latitude,
+                            nearestLandmark.longitude, nearestLandmark.latitude);
+                    newLongitude = LongLat.nextLongitude(longitude, latitude, newAngle);
+                    newLatitude = LongLat.nextLatitude(longitude, latitude, newAngle);
+
+                    // if route to new location crosses no fly zone or leaves the
+                    // confinement area, then it is an impossible route
+                    if (noFlyZoneIndex.intersects(longitude, latitude, newLongitude, newLatitude)
+                            || (newLongitude == longitude && newLatitude == latitude)) {
+                        return null;
+                    }
+
+                    LongLat newPosition = new LongLat(newLongitude, newLatitude);
+                    moves.add(new FlightpathMove(orderNo, currentPosition, newPosition, newAngle));
+                    currentPosition = newPosition;
+                    longitude = newLongitude;
+                    latitude = newLatitude;
+                }
+                clearedFlightpathCounter += 1;
+                // head for the goal again from the landmark
+                continue;
+            }
+            // the move would leave the confinement area: the drone would never get any closer
+            if (newLongitude == longitude && newLatitude == latitude) {
+                return null;
+            }
+            // save move
+            LongLat newPosition = new LongLat(newLongitude, newLatitude);
+            moves.add(new FlightpathMove(orderNo, currentPosition, newPosition, angle));
+
+            // move drone
+            currentPosition = newPosition;
+            longitude = newLongitude;
+            latitude = newLatitude;
+        }
+
+        return moves;
+    }
+
+}
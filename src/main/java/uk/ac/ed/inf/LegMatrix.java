@@ -0,0 +1,157 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class caching the number of moves of every leg the drone may fly between
+ * two locations (restaurants, delivery addresses and Appleton Tower).
+ * Leg costs are computed once with a routing engine and then looked up in O(1);
+ * the moves themselves are only recomputed when a leg is actually requested.
+ * Safe to use from several threads.
+ */
+public class LegMatrix {
+
+    /**
+     * Move count of a leg the routing engine could not find a route for
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * Routing engine used to calculate legs
+     */
+    private final RoutingEngine routingEngine;
+
+    /**
+     * Number of moves of each calculated leg, indexed by start and then end location
+     */
+    private final ConcurrentHashMap<LongLat, ConcurrentHashMap<LongLat, Integer>> moveCounts =
+            new ConcurrentHashMap<>();
+
+    /**
+     * LegMatrix class constructor
+     *
+     * @param routingEngine routing engine used to calculate legs
+     */
+    public LegMatrix(RoutingEngine routingEngine) {
+        this.routingEngine = routingEngine;
+    }
+
+    /**
+     * Getter method for the routing engine legs are calculated with
+     *
+     * @return routingEngine
+     */
+    public RoutingEngine getRoutingEngine() {
+        return routingEngine;
+    }
+
+    /**
+     * Gets the number of moves needed to fly from one location to another,
+     * excluding any hovering on arrival. Calculates the leg if not cached yet.
+     *
+     * @param from starting location
+     * @param to location to reach
+     * @return number of moves, UNREACHABLE if no route exists
+     */
+    public int getMoveCount(LongLat from, LongLat to) {
+        ConcurrentHashMap<LongLat, Integer> fromCounts =
+                moveCounts.computeIfAbsent(from, location -> new ConcurrentHashMap<>());
+        Integer count = fromCounts.get(to);
+        if (count != null) {
+            return count;
+        }
+        // calculate outside the map so other legs can be computed concurrently
+        long startTime = System.nanoTime();
+        ArrayList<FlightpathMove> leg = routingEngine.findRoute(null, from, to);
+        Metrics.recordSince("legs.calculate", startTime);
+        int moves = leg == null ? UNREACHABLE : leg.size();
+        Integer existing = fromCounts.putIfAbsent(to, moves);
+        return existing != null ? existing : moves;
+    }
+
+    /**
+     * Checks whether a leg's number of moves is already cached
+     *
+     * @param from starting location
+     * @param to location to reach
+     * @return true if getMoveCount will not calculate the leg
+     */
+    public boolean contains(LongLat from, LongLat to) {
+        ConcurrentHashMap<LongLat, Integer> fromCounts = moveCounts.get(from);
+        return fromCounts != null && fromCounts.containsKey(to);
+    }
+
+    /**
+     * Gets the moves to fly from one location to another, recomputing them with the routing engine.
+     * Caches the leg's number of moves.
+     *
+     * @param orderNo order number recorded in every move
+     * @param from starting location
+     * @param to location to reach
+     * @return moves of the leg, null if no route exists
+     */
+    public ArrayList<FlightpathMove> getLeg(String orderNo, LongLat from, LongLat to) {
+        ArrayList<FlightpathMove> leg = routingEngine.findRoute(orderNo, from, to);
+        moveCounts.computeIfAbsent(from, location -> new ConcurrentHashMap<>())
+                .putIfAbsent(to, leg == null ? UNREACHABLE : leg.size());
+        return leg;
+    }
+
+    /**
+     * Calculates every leg from each of the starting locations to each of the end locations
+     * that is not cached yet. Legs from a location to itself are skipped.
+     *
+     * @param from starting locations
+     * @param to locations to reach
+     */
+    public void precompute(Collection<LongLat> from, Collection<LongLat> to) {
+        for (LongLat start : from) {
+            for (LongLat end : to) {
+                if (!start.equals(end)) {
+                    getMoveCount(start, end);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates every leg from each of the starting locations to each of the end locations
+     * that is not cached yet, in parallel on a fork-join pool. Legs from a location to itself are skipped.
+     * Every leg is calculated independently by the routing engine, so the cached
+     * move counts are the same whatever the pool's parallelism.
+     *
+     * @param from starting locations
+     * @param to locations to reach
+     * @param pool pool the legs are calculated on
+     */
+    public void precompute(Collection<LongLat> from, Collection<LongLat> to, ForkJoinPool pool) {
+        List<LongLat[]> legs = new ArrayList<>();
+        for (LongLat start : from) {
+            for (LongLat end : to) {
+                if (!start.equals(end) && !contains(start, end)) {
+                    legs.add(new LongLat[]{start, end});
+                }
+            }
+        }
+        // parallel streams run on the pool that submits them
+        pool.submit(() -> legs.parallelStream().forEach(leg -> getMoveCount(leg[0], leg[1]))).join();
+    }
+
+    /**
+     * Gets the number of cached legs
+     *
+     * @return number of legs whose move count is known
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<LongLat, Integer> fromCounts : moveCounts.values()) {
+            size += fromCounts.size();
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,268 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Planner for a drone accepting orders while it is already flying.
+ * The plan is the drone's flightpath for the rest of the day. As the drone flies it (advance),
+ * every delivery it has started is locked: its moves are committed and never planned again.
+ * When orders are submitted, only the part of the plan after the locked deliveries is planned
+ * again, from the drone's last locked stop with the moves it has left.
+ *
+ * Re-planning reuses what is already known: leg estimates stay in the drone's leg matrix,
+ * and as long as the new sequence of orders starts like the previous plan, the routes of the
+ * previous plan are reused instead of being calculated again. Locked moves are copied
+ * from their plan's flightpath. Methods are synchronized, so orders can be submitted
+ * from another thread than the one flying the drone.
+ */
+public class LivePlanner {
+
+    /**
+     * Drone whose settings (base, map, caches, leg matrix and scheduler) every plan uses
+     */
+    private final Drone settings;
+
+    /**
+     * Maximum number of moves the drone can perform in the day
+     */
+    private final int moveBudget;
+
+    /**
+     * Submitted orders whose delivery has not started yet, in the order they were submitted
+     */
+    private final LinkedHashSet<Order> pending = new LinkedHashSet<>();
+
+    /**
+     * Deliveries the drone has started or finished, in the order they were flown
+     */
+    private final List<Attempt> locked = new ArrayList<>();
+
+    /**
+     * Attempts of the current plan after the locked deliveries, in the order they were made
+     */
+    private List<Attempt> planned = new ArrayList<>();
+
+    /**
+     * Drone flying the current plan: locked deliveries, planned deliveries and the flight back
+     */
+    private Drone plan;
+
+    /**
+     * Number of moves of the plan the drone has flown
+     */
+    private int flownMoves;
+
+    /**
+     * Whether the drone has started flying back to its base, after which no order is added
+     */
+    private boolean returning;
+
+    /**
+     * LivePlanner class constructor. Nothing is planned until orders are submitted.
+     *
+     * @param drone drone whose settings every plan uses; it is not flown itself and
+     *              its move budget is the day's budget
+     */
+    public LivePlanner(Drone drone) {
+        this.settings = drone;
+        this.moveBudget = drone.getMoveBudget();
+        this.plan = drone.freshCopy(moveBudget);
+    }
+
+    /**
+     * Submits an order and re-plans the rest of the day
+     *
+     * @param order new order
+     */
+    public synchronized void submit(Order order) {
+        submitAll(Collections.singletonList(order));
+    }
+
+    /**
+     * Submits several orders and re-plans the rest of the day once
+     *
+     * @param orders new orders
+     */
+    public synchronized void submitAll(Collection<Order> orders) {
+        // only the legs of the new addresses are calculated, the others are cached
+        settings.precomputeLegs(new ArrayList<>(orders));
+        pending.addAll(orders);
+        replan();
+    }
+
+    /**
+     * Flies the drone further along the plan. Every delivery the drone has started
+     * is locked, including the one in progress.
+     *
+     * @param moves number of moves flown
+     * @return number of moves actually flown, fewer if the plan ends sooner
+     */
+    public synchronized int advance(int moves) {
+        int flown = Math.min(moves, plan.getFlightpath().size() - flownMoves);
+        flownMoves += flown;
+        while (!planned.isEmpty() && planned.get(0).start < flownMoves) {
+            Attempt attempt = planned.remove(0);
+            // orders which did not fit stay pending, they may fit from a later stop
+            if (attempt.moves != null) {
+                locked.add(attempt);
+                pending.remove(attempt.order);
+            }
+        }
+        returning = flownMoves > lockedMoves();
+        return flown;
+    }
+
+    /**
+     * Plans the rest of the day again from the drone's last locked stop: the pending orders
+     * are scheduled with the drone's scheduler, and the routes of the previous plan are reused
+     * for as long as the new sequence attempts the same orders in the same order.
+     * Once the drone is flying back to its base the plan is kept as it is.
+     */
+    public synchronized void replan() {
+        if (returning) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        Drone drone = settings.freshCopy(moveBudget);
+        for (Attempt attempt : locked) {
+            drone.deliverOrder(attempt.order, attempt.moves);
+        }
+
+        List<Order> sequence = drone.getOrderScheduler().schedule(new ArrayList<>(pending), drone);
+        List<Attempt> attempts = new ArrayList<>();
+        Order lastDelivered = locked.isEmpty() ? null : locked.get(locked.size() - 1).order;
+        int reused = 0;
+        for (Order order : sequence) {
+            int start = drone.getFlightpath().size();
+            Attempt previous = reused < planned.size() ? planned.get(reused) : null;
+            Flightpath moves = null;
+            if (previous != null && previous.order == order) {
+                // same order attempted from the same state as before: same outcome, same route
+                reused++;
+                if (previous.moves != null) {
+                    drone.deliverOrder(order, previous.moves);
+                    moves = previous.moves;
+                }
+            } else {
+                reused = planned.size();
+                if (drone.deliverOrder(order)) {
+                    moves = drone.getFlightpath().slice(start, drone.getFlightpath().size());
+                }
+            }
+            attempts.add(new Attempt(order, start, moves));
+            if (moves != null) {
+                lastDelivered = order;
+            }
+        }
+        if (lastDelivered != null) {
+            drone.returnToBase(lastDelivered);
+        }
+
+        plan = drone;
+        planned = attempts;
+        Metrics.recordSince("planning.replan", startTime);
+    }
+
+    /**
+     * Getter method for the drone flying the current plan, whose flightpath is the whole
+     * day's route (flown, planned and back to base) and whose delivered orders are every
+     * order locked or planned
+     *
+     * @return plan
+     */
+    public synchronized Drone getPlan() {
+        return plan;
+    }
+
+    /**
+     * Getter method for the number of moves of the plan the drone has flown
+     *
+     * @return flownMoves
+     */
+    public synchronized int getFlownMoves() {
+        return flownMoves;
+    }
+
+    /**
+     * Gets the orders whose delivery the drone has started or finished
+     *
+     * @return locked orders, in the order they were flown
+     */
+    public synchronized List<Order> getLockedOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (Attempt attempt : locked) {
+            orders.add(attempt.order);
+        }
+        return orders;
+    }
+
+    /**
+     * Gets the submitted orders whose delivery has not started, planned or not
+     *
+     * @return pending orders, in the order they were submitted
+     */
+    public synchronized List<Order> getPendingOrders() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * Checks whether the drone is flying back to its base, after which no order is added
+     *
+     * @return returning
+     */
+    public synchronized boolean isReturning() {
+        return returning;
+    }
+
+    /**
+     * Gets the number of moves of the locked deliveries
+     *
+     * @return moves up to the end of the last locked delivery
+     */
+    private int lockedMoves() {
+        if (locked.isEmpty()) {
+            return 0;
+        }
+        Attempt last = locked.get(locked.size() - 1);
+        return last.start + last.moves.size();
+    }
+
+    /**
+     * Attempt at delivering an order within a plan
+     */
+    private static class Attempt {
+
+        /**
+         * Order attempted
+         */
+        private final Order order;
+
+        /**
+         * Index in the plan's flightpath of the first move of the attempt
+         */
+        private final int start;
+
+        /**
+         * Route delivering the order, a view of the plan's flightpath; null if it was not delivered
+         */
+        private final Flightpath moves;
+
+        /**
+         * Attempt class constructor
+         *
+         * @param order order attempted
+         * @param start index in the plan's flightpath of the first move of the attempt
+         * @param moves route delivering the order, null if it was not delivered
+         */
+        private Attempt(Order order, int start, Flightpath moves) {
+            this.order = order;
+            this.start = start;
+            this.moves = moves;
+        }
+    }
+
+}
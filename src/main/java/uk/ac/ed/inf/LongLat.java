@@ -34,6 +34,27 @@ public class LongLat {
     private static final double DRONE_MOVE_LENGTH = 0.00015;
     public static final int HOVERING_ANGLE = -999;
 
+    /**
+     * Legal move angles are multiples of ANGLE_STEP between 0 and MAXIMUM_ANGLE (degrees)
+     */
+    public static final int ANGLE_STEP = 10;
+    public static final int MAXIMUM_ANGLE = 350;
+
+    /**
+     * Longitude and latitude change of a single move, indexed by angle / ANGLE_STEP.
+     * Precomputed since only 36 angles are legal.
+     */
+    private static final double[] LONGITUDE_STEP = new double[MAXIMUM_ANGLE / ANGLE_STEP + 1];
+    private static final double[] LATITUDE_STEP = new double[MAXIMUM_ANGLE / ANGLE_STEP + 1];
+
+    static {
+        for (int i = 0; i < LONGITUDE_STEP.length; i++) {
+            double angleInRadians = Math.toRadians(i * ANGLE_STEP);
+            LONGITUDE_STEP[i] = DRONE_MOVE_LENGTH * Math.cos(angleInRadians);
+            LATITUDE_STEP[i] = DRONE_MOVE_LENGTH * Math.sin(angleInRadians);
+        }
+    }
+
     /**
      * LongLat object longitude
      */
@@ -59,10 +80,20 @@ public class LongLat {
      * @return True if drone is within specified area
      */
     public boolean isConfined() {
-        return ((WEST_LONGITUDE < this.longitude) &&
-                (this.longitude < EAST_LONGITUDE) &&
-                (SOUTH_LATITUDE < this.latitude) &&
-                (NORTH_LATITUDE > this.latitude));
+        return isConfined(this.longitude, this.latitude);
+    }
+
+    /**
+     * Method that checks a position is within specified coordinates
+     * @param longitude : x-axis coordinate
+     * @param latitude : y-axis coordinate
+     * @return True if position is within specified area
+     */
+    public static boolean isConfined(double longitude, double latitude) {
+        return ((WEST_LONGITUDE < longitude) &&
+                (longitude < EAST_LONGITUDE) &&
+                (SOUTH_LATITUDE < latitude) &&
+                (NORTH_LATITUDE > latitude));
     }
 
     /**
@@ -73,9 +104,37 @@ public class LongLat {
      * @return Pythagorean distance between the two locations
      */
     public double distanceTo(LongLat position) {
-        double longitudeDifference = Math.pow((this.longitude - position.longitude),2);
-        double latitudeDifference = Math.pow((this.latitude - position.latitude),2);
-        return Math.sqrt(longitudeDifference + latitudeDifference);
+        return distance(this.longitude, this.latitude, position.longitude, position.latitude);
+    }
+
+    /**
+     * Method which measures the distance between two positions
+     * given by their coordinates.
+     * @param fromLongitude first position's longitude
+     * @param fromLatitude first position's latitude
+     * @param toLongitude second position's longitude
+     * @param toLatitude second position's latitude
+     * @return Pythagorean distance between the two positions
+     */
+    public static double distance(double fromLongitude, double fromLatitude,
+                                  double toLongitude, double toLatitude) {
+        double longitudeDifference = fromLongitude - toLongitude;
+        double latitudeDifference = fromLatitude - toLatitude;
+        return Math.sqrt(longitudeDifference * longitudeDifference + latitudeDifference * latitudeDifference);
+    }
+
+    /**
+     * Calculates a lower bound on the number of moves needed to fly to a position close
+     * to a location, whatever the route: every move covers DRONE_MOVE_LENGTH in a straight line.
+     *
+     * @param location location to get close to
+     * @param exactStart true if the drone starts at this position, false if it only starts
+     *                   close to it, like after stopping at it
+     * @return lower bound on the number of moves, possibly fractional
+     */
+    public double minimumMovesTo(LongLat location, boolean exactStart) {
+        double slack = exactStart ? DISTANCE_TOLERANCE : 2 * DISTANCE_TOLERANCE;
+        return Math.max(0, distanceTo(location) - slack) / DRONE_MOVE_LENGTH;
     }
 
     /**
@@ -86,7 +145,23 @@ public class LongLat {
      * @return true if within distance tolerance range
      */
     public boolean closeTo(LongLat position) {
-        return (this.distanceTo(position) < DISTANCE_TOLERANCE);
+        return closeTo(this.longitude, this.latitude, position.longitude, position.latitude);
+    }
+
+    /**
+     * Method which checks if two positions given by their coordinates
+     * are close to each other.
+     * Definition of closeness is set by constant DISTANCE_TOLERANCE
+     *
+     * @param fromLongitude first position's longitude
+     * @param fromLatitude first position's latitude
+     * @param toLongitude second position's longitude
+     * @param toLatitude second position's latitude
+     * @return true if within distance tolerance range
+     */
+    public static boolean closeTo(double fromLongitude, double fromLatitude,
+                                  double toLongitude, double toLatitude) {
+        return (distance(fromLongitude, fromLatitude, toLongitude, toLatitude) < DISTANCE_TOLERANCE);
     }
 
 
@@ -102,29 +177,92 @@ public class LongLat {
      */
     public LongLat nextPosition(int angle) {
 
-        // if angle is hovering, return the current position (do not alter position)
-        if (angle == HOVERING_ANGLE) {
+        // if angle is hovering or invalid, return the current position (do not alter position)
+        if (!isMoveAngle(angle)) {
             return this;
         }
 
-        LongLat newPosition = this;
-
-        // if angle is within valid range calculate the new LongLat position
-        if ((angle >= 0) && (angle <= 350) && (angle % 10 == 0)) {
-            double angleInRadians = Math.toRadians(angle);
-            double newLongitude = longitude + (DRONE_MOVE_LENGTH * Math.cos(angleInRadians));
-            double newLatitude = latitude + (DRONE_MOVE_LENGTH * Math.sin(angleInRadians));
-            newPosition = new LongLat(newLongitude, newLatitude);
-        }
+        // calculate the new LongLat position from the precomputed move table
+        double newLongitude = longitude + LONGITUDE_STEP[angle / ANGLE_STEP];
+        double newLatitude = latitude + LATITUDE_STEP[angle / ANGLE_STEP];
 
         // Update position if it is within the allowed perimeter
-        if (newPosition.isConfined()) {
-            return newPosition;
+        if (isConfined(newLongitude, newLatitude)) {
+            return new LongLat(newLongitude, newLatitude);
         }
 
         return this;
     }
 
+    /**
+     * Checks whether an angle denotes a legal move:
+     * a multiple of ANGLE_STEP between 0 and MAXIMUM_ANGLE.
+     *
+     * @param angle direction of move (degrees)
+     * @return true if the drone changes position when moving in that direction
+     */
+    public static boolean isMoveAngle(int angle) {
+        return (angle >= 0) && (angle <= MAXIMUM_ANGLE) && (angle % ANGLE_STEP == 0);
+    }
+
+    /**
+     * Defines the longitude of the drone if it makes a move in the
+     * direction of the angle from the given position, without allocating.
+     * Longitude does not change if drone is hovering, the move is invalid
+     * or the move would leave the allowed perimeter.
+     *
+     * @param longitude current longitude
+     * @param latitude current latitude
+     * @param angle defines direction of next move (degrees).
+     * @return longitude after the move
+     */
+    public static double nextLongitude(double longitude, double latitude, int angle) {
+        if (!isMoveAngle(angle)) {
+            return longitude;
+        }
+        double newLongitude = longitude + LONGITUDE_STEP[angle / ANGLE_STEP];
+        double newLatitude = latitude + LATITUDE_STEP[angle / ANGLE_STEP];
+        return isConfined(newLongitude, newLatitude) ? newLongitude : longitude;
+    }
+
+    /**
+     * Defines the latitude of the drone if it makes a move in the
+     * direction of the angle from the given position, without allocating.
+     * Latitude does not change if drone is hovering, the move is invalid
+     * or the move would leave the allowed perimeter.
+     *
+     * @param longitude current longitude
+     * @param latitude current latitude
+     * @param angle defines direction of next move (degrees).
+     * @return latitude after the move
+     */
+    public static double nextLatitude(double longitude, double latitude, int angle) {
+        if (!isMoveAngle(angle)) {
+            return latitude;
+        }
+        double newLongitude = longitude + LONGITUDE_STEP[angle / ANGLE_STEP];
+        double newLatitude = latitude + LATITUDE_STEP[angle / ANGLE_STEP];
+        return isConfined(newLongitude, newLatitude) ? newLatitude : latitude;
+    }
+
+    /**
+     * Gets the distance covered by a single drone move
+     *
+     * @return DRONE_MOVE_LENGTH
+     */
+    public static double getMoveLength() {
+        return DRONE_MOVE_LENGTH;
+    }
+
+    /**
+     * Gets the distance under which two positions are considered close
+     *
+     * @return DISTANCE_TOLERANCE
+     */
+    public static double getDistanceTolerance() {
+        return DISTANCE_TOLERANCE;
+    }
+
     /**
      * Returns closest LongLats with respect to a LongLat, sorted by proximity.
      * Distance metric used is Euclidean distance.
@@ -192,6 +330,20 @@ public class LongLat {
         return false;
     }
 
+    /**
+     * Identifies whether the line segment made from one LongLat to the next
+     * intersects with one of the No-Fly Zone perimeters held in a spatial index.
+     *
+     * @param newPosition future drone position
+     * @param noFlyZoneIndex spatial index of the No-Fly Zone perimeter segments
+     *                       which the line segment should not intersect with.
+     * @return true if line crosses no fly zone
+     */
+    public boolean isIntersectingPath(LongLat newPosition, NoFlyZoneIndex noFlyZoneIndex) {
+        return noFlyZoneIndex.intersects(this.longitude, this.latitude,
+                newPosition.longitude, newPosition.latitude);
+    }
+
     /**
      * Calculates angle in degrees between two LongLat objects, namely its current location
      * and the one it strives to go towards.
@@ -201,8 +353,22 @@ public class LongLat {
      * @return angle    Angle between currentPosition and goalPosition
      */
     public int getAngle(LongLat goalPosition) {
-        double arctan = Math.atan2((goalPosition.latitude - this.latitude),
-                (goalPosition.longitude - this.longitude));
+        return getAngle(this.longitude, this.latitude, goalPosition.longitude, goalPosition.latitude);
+    }
+
+    /**
+     * Calculates angle in degrees between two positions given by their coordinates.
+     *
+     * @param fromLongitude current position's longitude
+     * @param fromLatitude current position's latitude
+     * @param goalLongitude goal position's longitude
+     * @param goalLatitude goal position's latitude
+     * @return angle    Angle between current position and goal position
+     */
+    public static int getAngle(double fromLongitude, double fromLatitude,
+                               double goalLongitude, double goalLatitude) {
+        double arctan = Math.atan2((goalLatitude - fromLatitude),
+                (goalLongitude - fromLongitude));
         long angle = (Math.round(Math.toDegrees(arctan)) / 10) * 10;
         if ((angle) < 0) {
             angle += 360;
@@ -210,4 +376,33 @@ public class LongLat {
         return (int) angle;
     }
 
+    /**
+     * Two LongLats are equal if they denote exactly the same coordinates
+     *
+     * @param other object to compare against
+     * @return true if longitude and latitude are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LongLat)) {
+            return false;
+        }
+        LongLat position = (LongLat) other;
+        return Double.compare(longitude, position.longitude) == 0
+                && Double.compare(latitude, position.latitude) == 0;
+    }
+
+    /**
+     * Hash code consistent with equals
+     *
+     * @return hash of longitude and latitude
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(longitude) + Double.hashCode(latitude);
+    }
+
 }
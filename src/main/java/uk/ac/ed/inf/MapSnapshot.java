@@ -0,0 +1,319 @@
+package uk.ac.ed.inf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of everything the planner loads from the web server:
+ * restaurants and their menus, resolved What3Words addresses, landmarks and
+ * No-Fly Zone outlines. Written once from data fetched from the web server, and
+ * loaded on later runs through a memory-mapped file without any JSON or GeoJSON parsing,
+ * so the planner starts in milliseconds and works with the web server down.
+ *
+ * Layout (big-endian): magic, version, then the restaurants (name, What3Words location,
+ * menu items with their price), the cached addresses (What3Words, longitude, latitude),
+ * the landmarks (longitude, latitude) and the No-Fly Zone outlines (vertex count, then
+ * longitude and latitude of every vertex). Counts are ints and strings are an int byte
+ * length followed by UTF-8 bytes. Perimeter segments are rebuilt from the outlines.
+ */
+public class MapSnapshot {
+
+    /**
+     * First bytes of every snapshot file ("DRSN")
+     */
+    private static final int MAGIC = 0x4452534E;
+
+    /**
+     * Snapshot format version, increased whenever the layout changes
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Restaurants and their menus
+     */
+    private final List<Restaurant> restaurants;
+
+    /**
+     * Resolved What3Words addresses
+     */
+    private final LinkedHashMap<String, LongLat> addresses;
+
+    /**
+     * Map of the delivery area
+     */
+    private final CampusMap campusMap;
+
+    /**
+     * MapSnapshot class constructor
+     *
+     * @param restaurants restaurants and their menus
+     * @param addresses resolved What3Words addresses
+     * @param campusMap map of the delivery area
+     */
+    private MapSnapshot(List<Restaurant> restaurants, LinkedHashMap<String, LongLat> addresses,
+                        CampusMap campusMap) {
+        this.restaurants = restaurants;
+        this.addresses = addresses;
+        this.campusMap = campusMap;
+    }
+
+    /**
+     * Creates Menus from the snapshot's restaurants
+     *
+     * @return menus that can be ordered from
+     */
+    public Menus getMenus() {
+        return new Menus(restaurants);
+    }
+
+    /**
+     * Getter method for the map of the delivery area
+     *
+     * @return campusMap
+     */
+    public CampusMap getCampusMap() {
+        return campusMap;
+    }
+
+    /**
+     * Getter method for the resolved What3Words addresses
+     *
+     * @return mapping of What3Words addresses to their location
+     */
+    public Map<String, LongLat> getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * Adds every resolved address of the snapshot to a What3Words cache
+     *
+     * @param w3wCache cache to seed
+     */
+    public void seed(W3WCache w3wCache) {
+        for (Map.Entry<String, LongLat> address : addresses.entrySet()) {
+            w3wCache.put(address.getKey(), address.getValue());
+        }
+    }
+
+    /**
+     * Writes a snapshot file. The file is written next to its final location and then
+     * moved into place, so a reader never sees a partially written snapshot.
+     *
+     * @param file snapshot file
+     * @param menu restaurants and their menus
+     * @param w3wCache resolved What3Words addresses; restaurants should have been resolved
+     * @param campusMap map of the delivery area
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Menus menu, W3WCache w3wCache, CampusMap campusMap) throws IOException {
+        // restaurant locations are needed on every run, make sure they are included
+        w3wCache.warmUp(menu.getRestaurantList());
+        LinkedHashMap<String, LongLat> addresses = w3wCache.getAddresses();
+
+        // measure the snapshot so it can be written with a single buffer
+        List<byte[]> strings = new ArrayList<>();
+        int size = 3 * Integer.BYTES;
+        for (Restaurant restaurant : menu.getRestaurantList()) {
+            size += stringSize(restaurant.getName(), strings) + stringSize(restaurant.getLocation(), strings)
+                    + Integer.BYTES;
+            for (FoodItem item : restaurant.getMenu()) {
+                size += stringSize(item.getItem(), strings) + Integer.BYTES;
+            }
+        }
+        size += Integer.BYTES;
+        for (String address : addresses.keySet()) {
+            size += stringSize(address, strings) + 2 * Double.BYTES;
+        }
+        size += Integer.BYTES + campusMap.getLandmarks().size() * 2 * Double.BYTES;
+        size += Integer.BYTES;
+        for (List<LongLat> outline : campusMap.getNoFlyZoneOutlines()) {
+            size += Integer.BYTES + outline.size() * 2 * Double.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        int next = 0;
+
+        buffer.putInt(menu.getRestaurantList().size());
+        for (Restaurant restaurant : menu.getRestaurantList()) {
+            putString(buffer, strings.get(next++));
+            putString(buffer, strings.get(next++));
+            buffer.putInt(restaurant.getMenu().size());
+            for (FoodItem item : restaurant.getMenu()) {
+                putString(buffer, strings.get(next++));
+                buffer.putInt(item.getPence());
+            }
+        }
+
+        buffer.putInt(addresses.size());
+        for (LongLat location : addresses.values()) {
+            putString(buffer, strings.get(next++));
+            buffer.putDouble(location.longitude);
+            buffer.putDouble(location.latitude);
+        }
+
+        buffer.putInt(campusMap.getLandmarks().size());
+        for (LongLat landmark : campusMap.getLandmarks()) {
+            buffer.putDouble(landmark.longitude);
+            buffer.putDouble(landmark.latitude);
+        }
+
+        buffer.putInt(campusMap.getNoFlyZoneOutlines().size());
+        for (List<LongLat> outline : campusMap.getNoFlyZoneOutlines()) {
+            buffer.putInt(outline.size());
+            for (LongLat vertex : outline) {
+                buffer.putDouble(vertex.longitude);
+                buffer.putDouble(vertex.latitude);
+            }
+        }
+        buffer.flip();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot file through a read-only memory mapping
+     *
+     * @param file snapshot file
+     * @throws IOException if the file cannot be read or is not a snapshot of this version
+     * @return loaded snapshot
+     */
+    public static MapSnapshot load(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+
+            int numberOfRestaurants = getCount(buffer);
+            List<Restaurant> restaurants = new ArrayList<>(numberOfRestaurants);
+            for (int i = 0; i < numberOfRestaurants; i++) {
+                String name = getString(buffer);
+                String location = getString(buffer);
+                int numberOfItems = getCount(buffer);
+                List<FoodItem> items = new ArrayList<>(numberOfItems);
+                for (int j = 0; j < numberOfItems; j++) {
+                    items.add(new FoodItem(getString(buffer), buffer.getInt()));
+                }
+                restaurants.add(new Restaurant(name, location, items, null));
+            }
+
+            int numberOfAddresses = getCount(buffer);
+            LinkedHashMap<String, LongLat> addresses = new LinkedHashMap<>();
+            for (int i = 0; i < numberOfAddresses; i++) {
+                String address = getString(buffer);
+                addresses.put(address, new LongLat(buffer.getDouble(), buffer.getDouble()));
+            }
+
+            int numberOfLandmarks = getCount(buffer);
+            ArrayList<LongLat> landmarks = new ArrayList<>(numberOfLandmarks);
+            for (int i = 0; i < numberOfLandmarks; i++) {
+                landmarks.add(new LongLat(buffer.getDouble(), buffer.getDouble()));
+            }
+
+            int numberOfOutlines = getCount(buffer);
+            List<List<LongLat>> outlines = new ArrayList<>(numberOfOutlines);
+            for (int i = 0; i < numberOfOutlines; i++) {
+                int numberOfVertices = getCount(buffer);
+                List<LongLat> outline = new ArrayList<>(numberOfVertices);
+                for (int j = 0; j < numberOfVertices; j++) {
+                    outline.add(new LongLat(buffer.getDouble(), buffer.getDouble()));
+                }
+                outlines.add(outline);
+            }
+
+            return new MapSnapshot(restaurants, addresses, new CampusMap(landmarks, outlines));
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot file: " + file, e);
+        }
+    }
+
+    /**
+     * Encodes a string for the snapshot, remembering its bytes for writing
+     *
+     * @param value string to encode
+     * @param strings encoded strings, in writing order
+     * @return number of bytes the string takes in the snapshot
+     */
+    private static int stringSize(String value, List<byte[]> strings) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        strings.add(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+
+    /**
+     * Writes an encoded string: its length, then its bytes
+     *
+     * @param buffer buffer to write to
+     * @param bytes UTF-8 bytes of the string
+     */
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads an encoded string
+     *
+     * @param buffer buffer to read from
+     * @throws IOException if the string's length is negative or longer than the rest of the file
+     * @return decoded string
+     */
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt snapshot file: string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the number of entries that follow. Every entry takes at least one byte,
+     * so a count larger than the rest of the file is corrupt.
+     *
+     * @param buffer buffer to read from
+     * @throws IOException if the count is negative or larger than the rest of the file
+     * @return number of entries
+     */
+    private static int getCount(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Corrupt snapshot file: " + count + " entries");
+        }
+        return count;
+    }
+
+}
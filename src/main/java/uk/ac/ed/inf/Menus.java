@@ -4,9 +4,12 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -40,16 +43,89 @@ public class Menus {
      */
     private final List<Restaurant> restaurantList;
 
+    /**
+     * Immutable mapping of each menu item to its price in pence.
+     * If several restaurants sell the same item, their prices are added up.
+     */
+    private final Map<String, Integer> itemPrices;
+
+    /**
+     * Immutable mapping of each menu item to the restaurants selling it,
+     * in the same order as restaurantList
+     */
+    private final Map<String, List<Restaurant>> itemRestaurants;
+
     /**
      * Menus class constructor
      *
      * @param machineName user current device
      * @param port port connection
+     * @throws WebServerException if the menus cannot be fetched from the web server
      */
     public Menus(String machineName, String port) {
+        this(machineName, port, fetchRestaurants(machineName, port));
+    }
+
+    /**
+     * Fetches the menus from the web server without blocking
+     *
+     * @param machineName user current device
+     * @param port port connection
+     * @return future menus, completed exceptionally with a WebServerException if they cannot be fetched
+     */
+    public static CompletableFuture<Menus> loadAsync(String machineName, String port) {
+        return ClientIO.getRequestAsync(getEndpoint(machineName, port))
+                .thenApply(json -> new Menus(machineName, port, parseRestaurants(json)));
+    }
+
+    /**
+     * Menus class constructor for restaurants that are already loaded,
+     * e.g. from a local fixture. Menus created this way cannot reload from the web server.
+     *
+     * @param restaurantList Restaurants which can be ordered from
+     */
+    public Menus(List<Restaurant> restaurantList) {
+        this(null, null, restaurantList);
+    }
+
+    /**
+     * Menus class constructor building the item index
+     *
+     * @param machineName user current device
+     * @param port port connection
+     * @param restaurantList Restaurants which can be ordered from
+     */
+    private Menus(String machineName, String port, List<Restaurant> restaurantList) {
         this.machineName = machineName;
         this.port = port;
-        restaurantList = getRestaurants();
+        this.restaurantList = restaurantList;
+        HashMap<String, Integer> prices = new HashMap<>();
+        HashMap<String, List<Restaurant>> restaurants = new HashMap<>();
+        buildItemIndex(prices, restaurants);
+        itemPrices = Collections.unmodifiableMap(prices);
+        itemRestaurants = Collections.unmodifiableMap(restaurants);
+    }
+
+    /**
+     * Builds the item index once from the restaurants' menus, so pricing an order
+     * does not scan every menu.
+     *
+     * @param prices mapping of items to their price, filled in
+     * @param restaurants mapping of items to the restaurants selling them, filled in
+     */
+    private void buildItemIndex(HashMap<String, Integer> prices, HashMap<String, List<Restaurant>> restaurants) {
+        if (restaurantList == null) {
+            return;
+        }
+        for (Restaurant restaurant : restaurantList) {
+            for (Map.Entry<String, Integer> item : restaurant.getMenuMap().entrySet()) {
+                prices.merge(item.getKey(), item.getValue(), Integer::sum);
+                restaurants.computeIfAbsent(item.getKey(), name -> new ArrayList<>()).add(restaurant);
+            }
+        }
+        for (Map.Entry<String, List<Restaurant>> entry : restaurants.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
     }
 
     /**
@@ -64,36 +140,58 @@ public class Menus {
     /**
      * Method that gets restaurant data from website
      *
-     * @throws Exception in case of illegal or invalid connection
+     * @throws WebServerException if the menus cannot be fetched from the web server
      * @return responseMenu containing menu to order from
      */
     public List<Restaurant> getRestaurants() {
-        // Construct endpoint request to access available menu
-        String endpoint = "http://" + machineName + ":" + port + "/menus/menus.json";
+        return fetchRestaurants(machineName, port);
+    }
 
-        // setup the response recipient
-        List<Restaurant> responseMenu = null;
+    /**
+     * Method that gets restaurant data from website
+     *
+     * @param machineName user current device
+     * @param port port connection
+     * @throws WebServerException if the menus cannot be fetched from the web server
+     * @return responseMenu containing menu to order from
+     */
+    private static List<Restaurant> fetchRestaurants(String machineName, String port) {
+        return parseRestaurants(ClientIO.getRequest(getEndpoint(machineName, port)));
+    }
 
-        try {
-            String request = ClientIO.getRequest(endpoint);
-            // unmarshal response
-            Type listType = new TypeToken<List<Restaurant>>() {}.getType();
-            responseMenu = new Gson().fromJson(request, listType);
+    /**
+     * Constructs the endpoint of the available menus
+     *
+     * @param machineName user current device
+     * @param port port connection
+     * @return full website address of menus.json
+     */
+    private static String getEndpoint(String machineName, String port) {
+        return "http://" + machineName + ":" + port + "/menus/menus.json";
+    }
 
-            for (Restaurant restaurant : responseMenu) {
-                restaurant.setMenuMap();
-            }
+    /**
+     * Unmarshals restaurants and their menus from the web server's menus.json format
+     *
+     * @param json contents of a menus.json file
+     * @return restaurants with their menu maps set up
+     */
+    public static List<Restaurant> parseRestaurants(String json) {
+        // unmarshal response
+        Type listType = new TypeToken<List<Restaurant>>() {}.getType();
+        List<Restaurant> restaurants = new Gson().fromJson(json, listType);
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        for (Restaurant restaurant : restaurants) {
+            restaurant.setMenuMap();
         }
-        return responseMenu;
+        return restaurants;
     }
 
     /**
      * Method that returns total delivery cost.
      * Delivery price will only be calculated if constraints
      * are satisfied (1-4 items and 1-2 Restaurants).
+     * Prices are looked up in the item index built at load time.
      *
      * @param order variable number of items in the order
      * @return if constraints satisfied, total delivery cost including
@@ -104,31 +202,48 @@ public class Menus {
         int minimumOrderItemNumber = 1;
         int maximumOrderItemNumber = 4;
 
-        // Set of all visited restaurants
-        Set<Restaurant> orderedRestaurants = new HashSet<Restaurant>();
-
         // Orders can only have 1-4 items
         if (order.length >= minimumOrderItemNumber && order.length <= maximumOrderItemNumber) {
 
             for (String foodItem : order) {
-
-                for (Restaurant restaurant : restaurantList) {
-                    Integer cost = restaurant.getMenuMap().get(foodItem);
-                    if (cost != null) {
-                        totalCost += cost;
-                        orderedRestaurants.add(restaurant);
-                    }
+                Integer cost = itemPrices.get(foodItem);
+                if (cost != null) {
+                    totalCost += cost;
                 }
             }
             totalCost += DELIVERY_COST;
-        }
 
-        // Order cannot be from more than two different restaurants
-        if (orderedRestaurants.size() > MAXIMUM_NUMBER_OF_RESTAURANTS) {
-            totalCost = 0;
+            // Order cannot be from more than two different restaurants
+            if (getRestaurantsSelling(order).size() > MAXIMUM_NUMBER_OF_RESTAURANTS) {
+                totalCost = 0;
+            }
         }
 
         return totalCost;
     }
 
+    /**
+     * Gets every restaurant selling at least one of the items, without duplicates,
+     * in order of first item sold and then of restaurantList.
+     *
+     * @param items menu items
+     * @return unique restaurants to visit to pick up all the items
+     */
+    public List<Restaurant> getRestaurantsSelling(String... items) {
+        List<Restaurant> restaurants = new ArrayList<>();
+        for (String item : items) {
+            List<Restaurant> sellers = itemRestaurants.get(item);
+            if (sellers == null) {
+                continue;
+            }
+            for (Restaurant restaurant : sellers) {
+                // if restaurant is already visited, do not visit again
+                if (!restaurants.contains(restaurant)) {
+                    restaurants.add(restaurant);
+                }
+            }
+        }
+        return restaurants;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,408 @@
+package uk.ac.ed.inf;
+
+import com.google.gson.GsonBuilder;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.JMException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the planner's metrics, shared by the whole run.
+ * Counters and timers are recorded with LongAdders, so threads planning concurrently
+ * do not contend on them; gauges are read when the metrics are exported.
+ * Metrics are exported as a JSON run report and through JMX (see MetricsMXBean).
+ *
+ * Names are dotted, grouped by the part of the pipeline they measure:
+ * http.* (web server requests), db.* (database reads and writes), routing.* (legs),
+ * planning.* (days), w3w.* and pool.* (gauges of the caches and connection pool), jvm.*
+ * (garbage collection and allocation since the run started).
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * Name the metrics are registered under with JMX
+     */
+    public static final String OBJECT_NAME = "uk.ac.ed.inf:type=Metrics";
+
+    /**
+     * Single registry shared by the whole run
+     */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /**
+     * Counters, by name
+     */
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Timers, by name
+     */
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Gauges, by name
+     */
+    private final ConcurrentHashMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Number of garbage collections when the run started
+     */
+    private long startGcCount;
+
+    /**
+     * Time spent in garbage collection when the run started, in milliseconds
+     */
+    private long startGcMillis;
+
+    /**
+     * Heap used when the run started, in bytes
+     */
+    private long startHeapUsed;
+
+    /**
+     * Heap freed by garbage collections since the run started, in bytes
+     */
+    private final AtomicLong collectedBytes = new AtomicLong();
+
+    /**
+     * Whether the garbage collection listener has been added
+     */
+    private boolean listening;
+
+    /**
+     * System.nanoTime() when the run started
+     */
+    private long startTime = System.nanoTime();
+
+    /**
+     * Metrics class constructor, private: use the static methods
+     */
+    private Metrics() {
+        gauges.put("jvm.gcCount", () -> gcCount() - startGcCount);
+        gauges.put("jvm.gcTimeMillis", () -> gcMillis() - startGcMillis);
+        // allocated = freed by collections + growth of the heap since the start
+        gauges.put("jvm.allocatedBytes", () -> collectedBytes.get() + heapUsed() - startHeapUsed);
+        gauges.put("jvm.heapUsedBytes", Metrics::heapUsed);
+        gauges.put("run.elapsedMillis", () -> (System.nanoTime() - startTime) / 1e6);
+    }
+
+    /**
+     * Getter method for the registry shared by the whole run
+     *
+     * @return metrics registry
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets a counter, creating it if needed. Hot paths keep the counter
+     * instead of looking it up by name every time.
+     *
+     * @param name name of the counter
+     * @return counter
+     */
+    public static LongAdder counter(String name) {
+        return INSTANCE.counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Adds one to a counter
+     *
+     * @param name name of the counter
+     */
+    public static void increment(String name) {
+        counter(name).increment();
+    }
+
+    /**
+     * Adds to a counter
+     *
+     * @param name name of the counter
+     * @param delta amount added
+     */
+    public static void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    /**
+     * Records the duration of an event with a timer
+     *
+     * @param name name of the timer
+     * @param nanos duration of the event in nanoseconds
+     */
+    public static void recordNanos(String name, long nanos) {
+        INSTANCE.timers.computeIfAbsent(name, key -> new Timer()).record(nanos);
+    }
+
+    /**
+     * Records the time elapsed since an event started with a timer
+     *
+     * @param name name of the timer
+     * @param startTime System.nanoTime() when the event started
+     */
+    public static void recordSince(String name, long startTime) {
+        recordNanos(name, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Registers a gauge, read whenever the metrics are exported. Replaces any gauge of the same name.
+     *
+     * @param name name of the gauge
+     * @param gauge supplies the gauge's current value
+     */
+    public static void gauge(String name, DoubleSupplier gauge) {
+        INSTANCE.gauges.put(name, gauge);
+    }
+
+    /**
+     * Starts measuring garbage collection, allocation and elapsed time for a run
+     * from the current state of the JVM.
+     */
+    public static synchronized void startRun() {
+        Metrics metrics = INSTANCE;
+        metrics.startGcCount = gcCount();
+        metrics.startGcMillis = gcMillis();
+        metrics.startHeapUsed = heapUsed();
+        metrics.collectedBytes.set(0);
+        metrics.startTime = System.nanoTime();
+        if (metrics.listening) {
+            return;
+        }
+        metrics.listening = true;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(metrics.gcListener, null, null);
+            }
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, so they can be read through JMX.
+     * Registering twice has no effect.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Builds the run report: every counter, timer (count, total, mean and max in milliseconds)
+     * and gauge, sorted by name. Gauges that are not finite are reported as null,
+     * which JSON can represent.
+     *
+     * @return run report
+     */
+    public static Map<String, Object> report() {
+        Map<String, Object> report = new TreeMap<>();
+        report.put("counters", INSTANCE.getCounters());
+        Map<String, Object> timerReport = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : INSTANCE.timers.entrySet()) {
+            timerReport.put(entry.getKey(), entry.getValue().report());
+        }
+        report.put("timers", timerReport);
+        Map<String, Double> gauges = INSTANCE.getGauges();
+        for (Map.Entry<String, Double> gauge : gauges.entrySet()) {
+            if (!Double.isFinite(gauge.getValue())) {
+                gauge.setValue(null);
+            }
+        }
+        report.put("gauges", gauges);
+        return report;
+    }
+
+    /**
+     * Writes the run report to a JSON file
+     *
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeReport(Path file) throws IOException {
+        Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the run report as JSON
+     *
+     * @return run report as JSON
+     */
+    private static String toJson() {
+        return new GsonBuilder().setPrettyPrinting().serializeNulls().create().toJson(report());
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getTimerCounts() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().count.sum());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getTimerTotalMillis() {
+        Map<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().totalNanos.sum() / 1e6);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getTimerMaxMillis() {
+        Map<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().maxNanos.get() / 1e6);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        Map<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, DoubleSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsDouble());
+        }
+        return values;
+    }
+
+    @Override
+    public String getReport() {
+        return toJson();
+    }
+
+    /**
+     * Adds up the heap freed by every garbage collection
+     */
+    private final NotificationListener gcListener = (Notification notification, Object handback) -> {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long freed = 0;
+        for (Map.Entry<String, MemoryUsage> before : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            MemoryUsage after = info.getGcInfo().getMemoryUsageAfterGc().get(before.getKey());
+            freed += before.getValue().getUsed() - (after == null ? 0 : after.getUsed());
+        }
+        collectedBytes.addAndGet(Math.max(0, freed));
+    };
+
+    /**
+     * Gets the number of garbage collections since the JVM started
+     *
+     * @return number of collections
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Gets the time spent in garbage collection since the JVM started
+     *
+     * @return collection time in milliseconds
+     */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Gets the heap currently in use
+     *
+     * @return heap used in bytes
+     */
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Number, total and longest duration of the events recorded under a name
+     */
+    private static class Timer {
+
+        /**
+         * Number of events
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Total duration of the events in nanoseconds
+         */
+        private final LongAdder totalNanos = new LongAdder();
+
+        /**
+         * Longest event in nanoseconds
+         */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Records an event
+         *
+         * @param nanos duration of the event in nanoseconds
+         */
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        /**
+         * Builds the timer's part of the run report
+         *
+         * @return count, and total, mean and max duration in milliseconds
+         */
+        private Map<String, Object> report() {
+            long events = count.sum();
+            double totalMillis = totalNanos.sum() / 1e6;
+            Map<String, Object> report = new TreeMap<>();
+            report.put("count", events);
+            report.put("totalMillis", totalMillis);
+            report.put("meanMillis", events == 0 ? 0 : totalMillis / events);
+            report.put("maxMillis", maxNanos.get() / 1e6);
+            return report;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package uk.ac.ed.inf;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the planner's metrics through JMX,
+ * registered as uk.ac.ed.inf:type=Metrics
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Gets every counter
+     *
+     * @return mapping of counter names to their value
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Gets the number of events recorded by every timer
+     *
+     * @return mapping of timer names to their number of events
+     */
+    Map<String, Long> getTimerCounts();
+
+    /**
+     * Gets the total time recorded by every timer
+     *
+     * @return mapping of timer names to their total time in milliseconds
+     */
+    Map<String, Double> getTimerTotalMillis();
+
+    /**
+     * Gets the longest event recorded by every timer
+     *
+     * @return mapping of timer names to their longest event in milliseconds
+     */
+    Map<String, Double> getTimerMaxMillis();
+
+    /**
+     * Gets the current value of every gauge, including the JVM's garbage collection
+     * and allocation since the run started
+     *
+     * @return mapping of gauge names to their value
+     */
+    Map<String, Double> getGauges();
+
+    /**
+     * Gets the whole run report
+     *
+     * @return run report as JSON
+     */
+    String getReport();
+
+}
@@ -0,0 +1,200 @@
+package uk.ac.ed.inf;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class indexing No-Fly Zone perimeter segments in a uniform grid.
+ * Each segment is registered in every grid cell its bounding box overlaps,
+ * so a path segment only has to be tested against the perimeter segments
+ * registered in the cells its own bounding box overlaps.
+ * The index is immutable once built and safe to query from several threads.
+ */
+public class NoFlyZoneIndex {
+
+    /**
+     * Upper bound on the number of grid cells along each axis
+     */
+    private static final int MAX_CELLS_PER_AXIS = 256;
+
+    /**
+     * Perimeter segment end-point coordinates, indexed by segment
+     */
+    private final double[] startX;
+    private final double[] startY;
+    private final double[] endX;
+    private final double[] endY;
+
+    /**
+     * Grid origin (south-west corner of the perimeters' bounding box)
+     */
+    private final double minX;
+    private final double minY;
+
+    /**
+     * Size of a single grid cell
+     */
+    private final double cellWidth;
+    private final double cellHeight;
+
+    /**
+     * Number of grid cells along each axis
+     */
+    private final int columns;
+    private final int rows;
+
+    /**
+     * Segment indices registered in each cell, indexed by row * columns + column
+     */
+    private final int[][] cells;
+
+    /**
+     * NoFlyZoneIndex class constructor. Builds the grid from the perimeter segments.
+     *
+     * @param polygonPerimeters No-Fly Zone perimeter segments
+     */
+    public NoFlyZoneIndex(List<Line2D> polygonPerimeters) {
+        int size = polygonPerimeters.size();
+        startX = new double[size];
+        startY = new double[size];
+        endX = new double[size];
+        endY = new double[size];
+
+        double west = Double.POSITIVE_INFINITY;
+        double south = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            Line2D line = polygonPerimeters.get(i);
+            startX[i] = line.getX1();
+            startY[i] = line.getY1();
+            endX[i] = line.getX2();
+            endY[i] = line.getY2();
+            west = Math.min(west, Math.min(startX[i], endX[i]));
+            east = Math.max(east, Math.max(startX[i], endX[i]));
+            south = Math.min(south, Math.min(startY[i], endY[i]));
+            north = Math.max(north, Math.max(startY[i], endY[i]));
+        }
+
+        // roughly one segment per cell, within bounds
+        int cellsPerAxis = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(Math.sqrt(size))));
+        columns = size == 0 ? 1 : cellsPerAxis;
+        rows = columns;
+        minX = size == 0 ? 0 : west;
+        minY = size == 0 ? 0 : south;
+        // degenerate (zero width or height) boxes still need a positive cell size
+        cellWidth = size == 0 || east <= west ? 1 : (east - west) / columns;
+        cellHeight = size == 0 || north <= south ? 1 : (north - south) / rows;
+
+        // register every segment in the cells its bounding box overlaps
+        List<List<Integer>> cellLists = new ArrayList<>();
+        for (int i = 0; i < columns * rows; i++) {
+            cellLists.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            int firstColumn = column(Math.min(startX[i], endX[i]));
+            int lastColumn = column(Math.max(startX[i], endX[i]));
+            int firstRow = row(Math.min(startY[i], endY[i]));
+            int lastRow = row(Math.max(startY[i], endY[i]));
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int c = firstColumn; c <= lastColumn; c++) {
+                    cellLists.get(r * columns + c).add(i);
+                }
+            }
+        }
+        cells = new int[cellLists.size()][];
+        for (int i = 0; i < cells.length; i++) {
+            List<Integer> cellList = cellLists.get(i);
+            cells[i] = new int[cellList.size()];
+            for (int j = 0; j < cellList.size(); j++) {
+                cells[i][j] = cellList.get(j);
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of indexed perimeter segments
+     *
+     * @return number of segments
+     */
+    public int size() {
+        return startX.length;
+    }
+
+    /**
+     * Identifies whether the line segment between two points intersects
+     * with any of the indexed perimeter segments.
+     * Only the segments registered in the grid cells overlapped by the
+     * line segment's bounding box are tested.
+     *
+     * @param fromLongitude longitude of the segment's start point
+     * @param fromLatitude latitude of the segment's start point
+     * @param toLongitude longitude of the segment's end point
+     * @param toLatitude latitude of the segment's end point
+     * @return true if the segment crosses a No-Fly Zone perimeter
+     */
+    public boolean intersects(double fromLongitude, double fromLatitude,
+                              double toLongitude, double toLatitude) {
+        if (startX.length == 0) {
+            return false;
+        }
+        double west = Math.min(fromLongitude, toLongitude);
+        double east = Math.max(fromLongitude, toLongitude);
+        double south = Math.min(fromLatitude, toLatitude);
+        double north = Math.max(fromLatitude, toLatitude);
+
+        // segments entirely outside the grid cannot cross any perimeter
+        if (east < minX || west > minX + cellWidth * columns
+                || north < minY || south > minY + cellHeight * rows) {
+            return false;
+        }
+
+        int lastColumn = column(east);
+        int lastRow = row(north);
+        for (int r = row(south); r <= lastRow; r++) {
+            for (int c = column(west); c <= lastColumn; c++) {
+                for (int i : cells[r * columns + c]) {
+                    if (Line2D.linesIntersect(fromLongitude, fromLatitude, toLongitude, toLatitude,
+                            startX[i], startY[i], endX[i], endY[i])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Identifies whether a line segment intersects with any of the indexed perimeter segments.
+     *
+     * @param line line segment to test
+     * @return true if the line crosses a No-Fly Zone perimeter
+     */
+    public boolean intersects(Line2D line) {
+        return intersects(line.getX1(), line.getY1(), line.getX2(), line.getY2());
+    }
+
+    /**
+     * Maps a longitude to its grid column, clamped to the grid
+     *
+     * @param longitude x-axis coordinate
+     * @return column index
+     */
+    private int column(double longitude) {
+        int column = (int) Math.floor((longitude - minX) / cellWidth);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    /**
+     * Maps a latitude to its grid row, clamped to the grid
+     *
+     * @param latitude y-axis coordinate
+     * @return row index
+     */
+    private int row(double latitude) {
+        int row = (int) Math.floor((latitude - minY) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+}
@@ -1,5 +1,8 @@
 package uk.ac.ed.inf;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class representing a customer's order in the delivery system.
  * Includes information about the customer (order number and customer identification number),
@@ -35,6 +38,16 @@ public class Order implements Comparable<Order>  {
      */
     private Menus menu;
 
+    /**
+     * Delivery cost, calculated on first use. -1 until calculated.
+     */
+    private volatile int cost = -1;
+
+    /**
+     * Unique restaurants to visit for pick-up, calculated on first use
+     */
+    private volatile List<Restaurant> restaurants;
+
     /**
      * Order Class constructor
      * @param orderNo order number
@@ -100,7 +113,7 @@ public class Order implements Comparable<Order>  {
      */
     @Override
     public int compareTo(Order order2) {
-        return menu.getDeliveryCost(this.items) - menu.getDeliveryCost(order2.items);
+        return this.getCost() - order2.getCost();
     }
 
     /**
@@ -110,7 +123,39 @@ public class Order implements Comparable<Order>  {
      * @return delivery cost (order cost and delivery charge)
      */
     public int getOrderCost(Order order) {
-        return menu.getDeliveryCost(order.getItems());
+        return order.getCost();
+    }
+
+    /**
+     * Getter method for the order's cost of delivery.
+     * Priced through the menus once, on first use.
+     *
+     * @return delivery cost (order cost and delivery charge),
+     *          0 if the order breaks the menu constraints
+     */
+    public int getCost() {
+        int orderCost = cost;
+        if (orderCost < 0) {
+            // items never change, so concurrent calculations agree
+            orderCost = menu.getDeliveryCost(items);
+            cost = orderCost;
+        }
+        return orderCost;
+    }
+
+    /**
+     * Getter method for the unique restaurants to visit to pick up the order's items.
+     * Looked up in the menus once, on first use.
+     *
+     * @return unmodifiable list of restaurants
+     */
+    public List<Restaurant> getRestaurants() {
+        List<Restaurant> orderRestaurants = restaurants;
+        if (orderRestaurants == null) {
+            orderRestaurants = Collections.unmodifiableList(menu.getRestaurantsSelling(items));
+            restaurants = orderRestaurants;
+        }
+        return orderRestaurants;
     }
 
 }
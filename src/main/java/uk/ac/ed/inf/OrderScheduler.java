@@ -0,0 +1,21 @@
+package uk.ac.ed.inf;
+
+import java.util.List;
+
+/**
+ * Interface for strategies deciding in which order the drone attempts the day's orders.
+ * The drone flies the returned sequence in order, skipping any order whose exact route
+ * does not fit in the moves it has left, and keeps trying the following ones.
+ */
+public interface OrderScheduler {
+
+    /**
+     * Decides in which order the day's orders are attempted.
+     *
+     * @param orders all of the day's orders
+     * @param drone drone delivering the orders, used to estimate the moves of each delivery
+     * @return orders in the order they should be attempted
+     */
+    List<Order> schedule(List<Order> orders, Drone drone);
+
+}
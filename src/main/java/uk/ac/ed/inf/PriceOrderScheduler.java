@@ -0,0 +1,27 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scheduler attempting the most expensive orders first.
+ */
+public class PriceOrderScheduler implements OrderScheduler {
+
+    /**
+     * Sorts orders by delivery cost, most expensive first.
+     *
+     * @param orders all of the day's orders
+     * @param drone drone delivering the orders
+     * @return orders sorted by descending delivery cost
+     */
+    @Override
+    public List<Order> schedule(List<Order> orders, Drone drone) {
+        List<Order> sequence = new ArrayList<>(orders);
+        // get most expensive first
+        sequence.sort(Collections.reverseOrder());
+        return sequence;
+    }
+
+}
@@ -0,0 +1,24 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+
+/**
+ * Interface for algorithms calculating the drone's moves between two locations.
+ * Implementations must respect the confinement area (LongLat.isConfined)
+ * and never cross a No-Fly Zone perimeter.
+ */
+public interface RoutingEngine {
+
+    /**
+     * Calculates drone route between startingPoint and endPoint.
+     * The route ends with the drone close to endPoint (LongLat.closeTo) and
+     * does not include the hovering move performed on arrival.
+     *
+     * @param orderNo order number of the order being delivered, recorded in every move
+     * @param startingPoint initial position of route
+     * @param endPoint location drone is trying to reach
+     * @return moves from startingPoint to endPoint, null if no route was found
+     */
+    ArrayList<FlightpathMove> findRoute(String orderNo, LongLat startingPoint, LongLat endPoint);
+
+}
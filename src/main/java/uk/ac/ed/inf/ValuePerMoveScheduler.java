@@ -0,0 +1,267 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scheduler ranking orders by delivery cost per estimated move from the drone's current position
+ * (its last stop, so a drone re-planning mid-day schedules the rest of its day).
+ * The sequence is built greedily, skipping any order that would not leave enough moves to fly
+ * back to Appleton Tower but still trying the ones after it. The sequence is then shortened
+ * with 2-opt (segment reversal) and or-opt (order relocation) moves, and the moves saved are
+ * used to fit in orders that were left out.
+ * All move counts are leg matrix estimates; the drone still checks the exact routes.
+ */
+public class ValuePerMoveScheduler implements OrderScheduler {
+
+    /**
+     * Default bound on the number of local search passes over the sequence
+     */
+    public static final int DEFAULT_MAX_IMPROVEMENT_ROUNDS = 50;
+
+    /**
+     * Move count of a sequence that cannot be flown
+     */
+    private static final int INFEASIBLE = Integer.MAX_VALUE;
+
+    /**
+     * Bound on the number of local search passes over the sequence
+     */
+    private final int maxImprovementRounds;
+
+    /**
+     * ValuePerMoveScheduler class constructor with the default number of improvement rounds
+     */
+    public ValuePerMoveScheduler() {
+        this(DEFAULT_MAX_IMPROVEMENT_ROUNDS);
+    }
+
+    /**
+     * ValuePerMoveScheduler class constructor
+     *
+     * @param maxImprovementRounds bound on the number of local search passes over the sequence
+     */
+    public ValuePerMoveScheduler(int maxImprovementRounds) {
+        this.maxImprovementRounds = maxImprovementRounds;
+    }
+
+    /**
+     * Builds the delivery sequence maximising delivered cost within the drone's moves.
+     * Orders that do not fit in the plan are appended afterwards, most expensive first,
+     * so the drone can still attempt them.
+     *
+     * @param orders all of the day's orders
+     * @param drone drone delivering the orders
+     * @return planned orders followed by the remaining orders
+     */
+    @Override
+    public List<Order> schedule(List<Order> orders, Drone drone) {
+        int budget = drone.getMovesLeft();
+        List<Order> remaining = new ArrayList<>();
+        List<Order> invalid = new ArrayList<>();
+        for (Order order : orders) {
+            // orders breaking the menu constraints are never delivered
+            if (order.getCost() == 0) {
+                invalid.add(order);
+            } else {
+                remaining.add(order);
+            }
+        }
+
+        List<Order> planned = buildGreedySequence(remaining, drone, budget);
+        remaining.removeAll(planned);
+        improve(planned, drone);
+        insertRemaining(planned, remaining, drone, budget);
+
+        List<Order> sequence = new ArrayList<>(planned);
+        remaining.sort(Collections.reverseOrder());
+        sequence.addAll(remaining);
+        sequence.addAll(invalid);
+        return sequence;
+    }
+
+    /**
+     * Repeatedly picks the order with the highest delivery cost per estimated move
+     * from the drone's position, as long as the drone can still fly back afterwards.
+     *
+     * @param candidates orders that can be delivered
+     * @param drone drone delivering the orders
+     * @param budget number of moves available
+     * @return sequence of orders fitting in the budget
+     */
+    private List<Order> buildGreedySequence(List<Order> candidates, Drone drone, int budget) {
+        List<Order> sequence = new ArrayList<>();
+        List<Order> remaining = new ArrayList<>(candidates);
+        LongLat position = drone.getLastStopLocation();
+        int movesUsed = 0;
+
+        while (true) {
+            Order best = null;
+            double bestValue = -1;
+            int bestMoves = 0;
+            for (Order order : remaining) {
+                int deliveryMoves = drone.estimateDeliveryMoves(position, order);
+                if (deliveryMoves == LegMatrix.UNREACHABLE) {
+                    continue;
+                }
+                int returnMoves = drone.estimateReturnMoves(drone.getDeliveryLocation(order));
+                // too expensive orders are skipped, smaller ones may still fit
+                if (returnMoves == LegMatrix.UNREACHABLE || movesUsed + deliveryMoves + returnMoves > budget) {
+                    continue;
+                }
+                double value = order.getCost() / (double) deliveryMoves;
+                if (value > bestValue) {
+                    best = order;
+                    bestValue = value;
+                    bestMoves = deliveryMoves;
+                }
+            }
+            if (best == null) {
+                return sequence;
+            }
+            sequence.add(best);
+            remaining.remove(best);
+            movesUsed += bestMoves;
+            position = drone.getDeliveryLocation(best);
+        }
+    }
+
+    /**
+     * Shortens the sequence with first-improvement 2-opt and or-opt moves until no move
+     * shortens it any further or the round bound is reached.
+     *
+     * @param sequence sequence of orders, modified in place
+     * @param drone drone delivering the orders
+     */
+    private void improve(List<Order> sequence, Drone drone) {
+        int currentMoves = sequenceMoves(sequence, drone);
+        for (int round = 0; round < maxImprovementRounds; round++) {
+            boolean improved = false;
+
+            // 2-opt: reverse the segment between i and j
+            for (int i = 0; i < sequence.size() - 1; i++) {
+                for (int j = i + 1; j < sequence.size(); j++) {
+                    Collections.reverse(sequence.subList(i, j + 1));
+                    int moves = sequenceMoves(sequence, drone);
+                    if (moves < currentMoves) {
+                        currentMoves = moves;
+                        improved = true;
+                    } else {
+                        Collections.reverse(sequence.subList(i, j + 1));
+                    }
+                }
+            }
+
+            // or-opt: move the order at i to position j
+            for (int i = 0; i < sequence.size(); i++) {
+                for (int j = 0; j < sequence.size(); j++) {
+                    if (i == j) {
+                        continue;
+                    }
+                    Order order = sequence.remove(i);
+                    sequence.add(j, order);
+                    int moves = sequenceMoves(sequence, drone);
+                    if (moves < currentMoves) {
+                        currentMoves = moves;
+                        improved = true;
+                    } else {
+                        sequence.remove(j);
+                        sequence.add(i, order);
+                    }
+                }
+            }
+
+            if (!improved) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts left out orders, most expensive first, wherever they add the fewest moves,
+     * as long as the sequence still fits in the budget.
+     * Inserting an order between two stops replaces the leg between them by two legs,
+     * so every position is priced from its neighbouring legs only.
+     *
+     * @param sequence sequence of orders, modified in place
+     * @param remaining orders left out of the sequence, modified in place
+     * @param drone drone delivering the orders
+     * @param budget number of moves available
+     */
+    private void insertRemaining(List<Order> sequence, List<Order> remaining, Drone drone, int budget) {
+        int totalMoves = sequenceMoves(sequence, drone);
+        if (totalMoves == INFEASIBLE) {
+            return;
+        }
+        List<Order> byCost = new ArrayList<>(remaining);
+        byCost.sort(Collections.reverseOrder());
+        for (Order order : byCost) {
+            int bestPosition = -1;
+            int bestMoves = INFEASIBLE;
+            LongLat deliveryLocation = drone.getDeliveryLocation(order);
+            for (int position = 0; position <= sequence.size(); position++) {
+                LongLat previous = position == 0
+                        ? drone.getLastStopLocation() : drone.getDeliveryLocation(sequence.get(position - 1));
+                Order next = position < sequence.size() ? sequence.get(position) : null;
+                int toOrder = drone.estimateDeliveryMoves(previous, order);
+                int fromOrder = legMoves(drone, deliveryLocation, next);
+                if (toOrder == LegMatrix.UNREACHABLE || fromOrder == LegMatrix.UNREACHABLE) {
+                    continue;
+                }
+                // an empty sequence has no leg to replace
+                int replaced = sequence.isEmpty() ? 0 : legMoves(drone, previous, next);
+                int moves = totalMoves + toOrder + fromOrder - replaced;
+                if (moves < bestMoves) {
+                    bestMoves = moves;
+                    bestPosition = position;
+                }
+            }
+            if (bestPosition >= 0 && bestMoves <= budget) {
+                sequence.add(bestPosition, order);
+                remaining.remove(order);
+                totalMoves = bestMoves;
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of moves from a stop to the next order of a sequence,
+     * or back to the drone's base after the last order
+     *
+     * @param drone drone delivering the orders
+     * @param position location of the stop
+     * @param next next order, null to fly back to the base
+     * @return estimated number of moves, LegMatrix.UNREACHABLE if the leg has no route
+     */
+    private static int legMoves(Drone drone, LongLat position, Order next) {
+        return next == null ? drone.estimateReturnMoves(position) : drone.estimateDeliveryMoves(position, next);
+    }
+
+    /**
+     * Estimates the number of moves to deliver a sequence of orders
+     * from the drone's last stop (Appleton Tower at the start of the day) and fly back.
+     *
+     * @param sequence orders in delivery order
+     * @param drone drone delivering the orders
+     * @return estimated number of moves, INFEASIBLE if a leg has no route
+     */
+    private int sequenceMoves(List<Order> sequence, Drone drone) {
+        int moves = 0;
+        LongLat position = drone.getLastStopLocation();
+        for (Order order : sequence) {
+            int deliveryMoves = drone.estimateDeliveryMoves(position, order);
+            if (deliveryMoves == LegMatrix.UNREACHABLE) {
+                return INFEASIBLE;
+            }
+            moves += deliveryMoves;
+            position = drone.getDeliveryLocation(order);
+        }
+        if (sequence.isEmpty()) {
+            return 0;
+        }
+        int returnMoves = drone.estimateReturnMoves(position);
+        return returnMoves == LegMatrix.UNREACHABLE ? INFEASIBLE : moves + returnMoves;
+    }
+
+}
@@ -0,0 +1,267 @@
+package uk.ac.ed.inf;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class representing the visibility graph of the delivery area.
+ * Nodes are landmarks, points of interest (restaurants, Appleton Tower) and the
+ * No-Fly Zone vertices pushed slightly outwards; two nodes are connected whenever
+ * the straight line between them does not cross any No-Fly Zone perimeter.
+ * Built once per map load; shortest-path queries are a Dijkstra search over this
+ * small graph. The graph is immutable and safe to query from several threads.
+ */
+public class VisibilityGraph {
+
+    /**
+     * Distance No-Fly Zone vertices are pushed away from their polygon's centre,
+     * so that routes through them keep clear of the perimeter
+     */
+    private static final double VERTEX_INFLATION = 0.0002;
+
+    /**
+     * Spatial index over the No-Fly Zone perimeters
+     */
+    private final NoFlyZoneIndex noFlyZoneIndex;
+
+    /**
+     * Graph nodes
+     */
+    private final List<LongLat> nodes;
+
+    /**
+     * Edge lengths between nodes, Double.POSITIVE_INFINITY if not visible from each other
+     */
+    private final double[][] edges;
+
+    /**
+     * VisibilityGraph class constructor. Builds nodes and visibility edges.
+     *
+     * @param campusMap map of the delivery area
+     * @param pointsOfInterest extra locations routes often start or end at,
+     *                         such as restaurants and Appleton Tower
+     */
+    public VisibilityGraph(CampusMap campusMap, List<LongLat> pointsOfInterest) {
+        this.noFlyZoneIndex = campusMap.getNoFlyZoneIndex();
+
+        List<Path2D> noFlyZones = new ArrayList<>();
+        for (List<LongLat> outline : campusMap.getNoFlyZoneOutlines()) {
+            noFlyZones.add(toPath(outline));
+        }
+
+        List<LongLat> candidates = new ArrayList<>(campusMap.getLandmarks());
+        candidates.addAll(pointsOfInterest);
+        for (List<LongLat> outline : campusMap.getNoFlyZoneOutlines()) {
+            candidates.addAll(inflateVertices(outline));
+        }
+
+        // keep only nodes the drone can actually be at
+        nodes = new ArrayList<>();
+        for (LongLat candidate : candidates) {
+            if (candidate.isConfined() && !isInside(candidate, noFlyZones)) {
+                nodes.add(candidate);
+            }
+        }
+
+        int size = nodes.size();
+        edges = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            edges[i][i] = 0;
+            for (int j = i + 1; j < size; j++) {
+                double length = isVisible(nodes.get(i), nodes.get(j))
+                        ? nodes.get(i).distanceTo(nodes.get(j)) : Double.POSITIVE_INFINITY;
+                edges[i][j] = length;
+                edges[j][i] = length;
+            }
+        }
+    }
+
+    /**
+     * Getter method for the graph nodes
+     *
+     * @return nodes
+     */
+    public List<LongLat> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Checks whether the straight line between two locations avoids every No-Fly Zone perimeter
+     *
+     * @param from first location
+     * @param to second location
+     * @return true if the locations are visible from each other
+     */
+    public boolean isVisible(LongLat from, LongLat to) {
+        return !from.isIntersectingPath(to, noFlyZoneIndex);
+    }
+
+    /**
+     * Calculates the shortest sequence of straight lines between two locations
+     * that does not cross any No-Fly Zone perimeter.
+     *
+     * @param from starting location
+     * @param to goal location
+     * @return waypoints to fly through, ending with (@param to) and excluding (@param from);
+     *          null if the goal cannot be reached through the graph
+     */
+    public List<LongLat> shortestPath(LongLat from, LongLat to) {
+        List<LongLat> waypoints = new ArrayList<>();
+        if (isVisible(from, to)) {
+            waypoints.add(to);
+            return waypoints;
+        }
+
+        // nodes 0..size-1 are graph nodes, size is the start and size + 1 the goal
+        int size = nodes.size();
+        int start = size;
+        int goal = size + 1;
+        double[] fromStart = new double[size];
+        double[] toGoal = new double[size];
+        for (int i = 0; i < size; i++) {
+            fromStart[i] = isVisible(from, nodes.get(i))
+                    ? from.distanceTo(nodes.get(i)) : Double.POSITIVE_INFINITY;
+            toGoal[i] = isVisible(nodes.get(i), to)
+                    ? nodes.get(i).distanceTo(to) : Double.POSITIVE_INFINITY;
+        }
+
+        // dense Dijkstra: the graph only has a few dozen nodes
+        double[] distance = new double[size + 2];
+        int[] previous = new int[size + 2];
+        boolean[] visited = new boolean[size + 2];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, -1);
+        distance[start] = 0;
+
+        while (true) {
+            int current = -1;
+            for (int i = 0; i < size + 2; i++) {
+                if (!visited[i] && (current == -1 || distance[i] < distance[current])) {
+                    current = i;
+                }
+            }
+            if (current == -1 || distance[current] == Double.POSITIVE_INFINITY) {
+                return null;
+            }
+            if (current == goal) {
+                break;
+            }
+            visited[current] = true;
+
+            for (int next = 0; next < size + 2; next++) {
+                if (visited[next] || next == start) {
+                    continue;
+                }
+                double length = edgeLength(current, next, fromStart, toGoal);
+                if (distance[current] + length < distance[next]) {
+                    distance[next] = distance[current] + length;
+                    previous[next] = current;
+                }
+            }
+        }
+
+        for (int node = goal; node != start; node = previous[node]) {
+            waypoints.add(node == goal ? to : nodes.get(node));
+        }
+        Collections.reverse(waypoints);
+        return waypoints;
+    }
+
+    /**
+     * Gets the length of the edge between two nodes of a shortest-path query,
+     * including the query's start and goal nodes.
+     *
+     * @param from index of the first node
+     * @param to index of the second node
+     * @param fromStart edge lengths from the start to each graph node
+     * @param toGoal edge lengths from each graph node to the goal
+     * @return edge length, Double.POSITIVE_INFINITY if there is no edge
+     */
+    private double edgeLength(int from, int to, double[] fromStart, double[] toGoal) {
+        int size = nodes.size();
+        if (from == size) {
+            // start to goal was already checked to be blocked
+            return to == size + 1 ? Double.POSITIVE_INFINITY : fromStart[to];
+        }
+        if (to == size + 1) {
+            return toGoal[from];
+        }
+        return edges[from][to];
+    }
+
+    /**
+     * Pushes each vertex of a polygon outline away from the polygon's centre
+     *
+     * @param outline polygon vertices, possibly closed (last vertex equal to the first)
+     * @return inflated vertices
+     */
+    private List<LongLat> inflateVertices(List<LongLat> outline) {
+        List<LongLat> inflated = new ArrayList<>();
+        List<LongLat> vertices = outline;
+        // GeoJSON rings repeat their first vertex at the end
+        if (vertices.size() > 1 && vertices.get(0).distanceTo(vertices.get(vertices.size() - 1)) == 0) {
+            vertices = vertices.subList(0, vertices.size() - 1);
+        }
+        if (vertices.isEmpty()) {
+            return inflated;
+        }
+        double centreLongitude = 0;
+        double centreLatitude = 0;
+        for (LongLat vertex : vertices) {
+            centreLongitude += vertex.longitude;
+            centreLatitude += vertex.latitude;
+        }
+        centreLongitude /= vertices.size();
+        centreLatitude /= vertices.size();
+
+        for (LongLat vertex : vertices) {
+            double distance = LongLat.distance(centreLongitude, centreLatitude, vertex.longitude, vertex.latitude);
+            if (distance == 0) {
+                continue;
+            }
+            double scale = VERTEX_INFLATION / distance;
+            inflated.add(new LongLat(vertex.longitude + (vertex.longitude - centreLongitude) * scale,
+                    vertex.latitude + (vertex.latitude - centreLatitude) * scale));
+        }
+        return inflated;
+    }
+
+    /**
+     * Checks whether a location lies inside any of the No-Fly Zones
+     *
+     * @param location location to check
+     * @param noFlyZones No-Fly Zone polygons
+     * @return true if the location is inside a No-Fly Zone
+     */
+    private boolean isInside(LongLat location, List<Path2D> noFlyZones) {
+        for (Path2D noFlyZone : noFlyZones) {
+            if (noFlyZone.contains(location.longitude, location.latitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Transforms a polygon outline into a closed Path2D
+     *
+     * @param outline polygon vertices
+     * @return polygon path
+     */
+    private Path2D toPath(List<LongLat> outline) {
+        Path2D path = new Path2D.Double();
+        for (int i = 0; i < outline.size(); i++) {
+            if (i == 0) {
+                path.moveTo(outline.get(i).longitude, outline.get(i).latitude);
+            } else {
+                path.lineTo(outline.get(i).longitude, outline.get(i).latitude);
+            }
+        }
+        path.closePath();
+        return path;
+    }
+
+}
@@ -0,0 +1,124 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routing engine which flies the shortest visibility graph path between two locations.
+ * The drone steps towards each waypoint in turn, skipping ahead as soon as a later
+ * waypoint is in sight. If the discrete moves ever clip a No-Fly Zone perimeter,
+ * the whole route is handed over to a fallback routing engine.
+ */
+public class VisibilityGraphRoutingEngine implements RoutingEngine {
+
+    /**
+     * Extra moves allowed on top of the straight-line length of the waypoint path
+     * before the route is handed to the fallback engine
+     */
+    private static final int MOVE_ALLOWANCE = 50;
+
+    /**
+     * Visibility graph of the delivery area
+     */
+    private final VisibilityGraph visibilityGraph;
+
+    /**
+     * Spatial index over the No-Fly Zone perimeters
+     */
+    private final NoFlyZoneIndex noFlyZoneIndex;
+
+    /**
+     * Routing engine used when the waypoint path cannot be flown
+     */
+    private final RoutingEngine fallback;
+
+    /**
+     * VisibilityGraphRoutingEngine class constructor
+     *
+     * @param visibilityGraph visibility graph of the delivery area
+     * @param noFlyZoneIndex spatial index over the No-Fly Zone perimeters
+     * @param fallback routing engine used when the waypoint path cannot be flown
+     */
+    public VisibilityGraphRoutingEngine(VisibilityGraph visibilityGraph, NoFlyZoneIndex noFlyZoneIndex,
+                                        RoutingEngine fallback) {
+        this.visibilityGraph = visibilityGraph;
+        this.noFlyZoneIndex = noFlyZoneIndex;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Calculates drone route between startingPoint and endPoint following
+     * the shortest visibility graph path.
+     *
+     * @param orderNo order number of the order being delivered
+     * @param startingPoint initial position of route
+     * @param endPoint location drone is trying to reach
+     * @return moves from startingPoint to endPoint, null if no route was found
+     */
+    @Override
+    public ArrayList<FlightpathMove> findRoute(String orderNo, LongLat startingPoint, LongLat endPoint) {
+        List<LongLat> waypoints = visibilityGraph.shortestPath(startingPoint, endPoint);
+        if (waypoints == null) {
+            Metrics.increment("routing.fallbacks");
+            return fallback.findRoute(orderNo, startingPoint, endPoint);
+        }
+
+        // bound the number of moves so a waypoint that cannot be approached does not loop forever
+        double pathLength = 0;
+        LongLat previousWaypoint = startingPoint;
+        for (LongLat waypoint : waypoints) {
+            pathLength += previousWaypoint.distanceTo(waypoint);
+            previousWaypoint = waypoint;
+        }
+        int maxMoves = (int) Math.ceil(pathLength / LongLat.getMoveLength()) + MOVE_ALLOWANCE;
+
+        ArrayList<FlightpathMove> moves = new ArrayList<>();
+        LongLat currentPosition = startingPoint;
+        double longitude = startingPoint.longitude;
+        double latitude = startingPoint.latitude;
+        int target = 0;
+
+        while (!LongLat.closeTo(longitude, latitude, endPoint.longitude, endPoint.latitude)) {
+            // head for the furthest waypoint already in sight
+            while (target < waypoints.size() - 1
+                    && (LongLat.closeTo(longitude, latitude, waypoints.get(target).longitude,
+                            waypoints.get(target).latitude)
+                        || isVisible(longitude, latitude, waypoints.get(target + 1)))) {
+                target++;
+            }
+            LongLat waypoint = waypoints.get(target);
+
+            int angle = LongLat.getAngle(longitude, latitude, waypoint.longitude, waypoint.latitude);
+            double newLongitude = LongLat.nextLongitude(longitude, latitude, angle);
+            double newLatitude = LongLat.nextLatitude(longitude, latitude, angle);
+
+            // discrete moves clipped a perimeter, left the confinement area or took too long
+            if ((newLongitude == longitude && newLatitude == latitude)
+                    || noFlyZoneIndex.intersects(longitude, latitude, newLongitude, newLatitude)
+                    || moves.size() >= maxMoves) {
+                Metrics.increment("routing.fallbacks");
+                return fallback.findRoute(orderNo, startingPoint, endPoint);
+            }
+
+            LongLat newPosition = new LongLat(newLongitude, newLatitude);
+            moves.add(new FlightpathMove(orderNo, currentPosition, newPosition, angle));
+            currentPosition = newPosition;
+            longitude = newLongitude;
+            latitude = newLatitude;
+        }
+        return moves;
+    }
+
+    /**
+     * Checks whether a waypoint is in sight from a position
+     *
+     * @param longitude current longitude
+     * @param latitude current latitude
+     * @param waypoint waypoint to check
+     * @return true if the straight line to the waypoint avoids every No-Fly Zone
+     */
+    private boolean isVisible(double longitude, double latitude, LongLat waypoint) {
+        return !noFlyZoneIndex.intersects(longitude, latitude, waypoint.longitude, waypoint.latitude);
+    }
+
+}
@@ -0,0 +1,290 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class caching What3Words to LongLat resolutions.
+ * Bounded, thread-safe and least-recently-used: once the cache holds
+ * (@param capacity) addresses, the address that has gone unused for the
+ * longest time is evicted to make room for a new one.
+ * Web server lookups only happen on a cache miss, and concurrent misses
+ * of the same address share a single request.
+ */
+public class W3WCache {
+
+    /**
+     * Default maximum number of addresses held in the cache
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Website connectivity host machine name
+     */
+    private final String machineName;
+
+    /**
+     * Website connectivity port
+     */
+    private final String port;
+
+    /**
+     * Maximum number of addresses held in the cache
+     */
+    private final int capacity;
+
+    /**
+     * Mapping of What3Words addresses to their location, in access order.
+     * Guarded by its own lock.
+     */
+    private final LinkedHashMap<String, LongLat> addresses;
+
+    /**
+     * Web server requests in flight, keyed by the address they resolve
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<LongLat>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Number of lookups answered by the cache
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of lookups that had to go to the web server
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Number of addresses evicted to respect the capacity
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * W3WCache class constructor with the default capacity
+     *
+     * @param machineName web server host connectivity name
+     * @param port web server connectivity port
+     */
+    public W3WCache(String machineName, String port) {
+        this(machineName, port, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * W3WCache class constructor
+     *
+     * @param machineName web server host connectivity name
+     * @param port web server connectivity port
+     * @param capacity maximum number of addresses held at once
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public W3WCache(String machineName, String port, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.machineName = machineName;
+        this.port = port;
+        this.capacity = capacity;
+        this.addresses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LongLat> eldest) {
+                if (size() > W3WCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the location of a What3Words address, querying the web server
+     * only if the address is not already cached.
+     * The web server request is made outside the lock, so concurrent
+     * lookups of different addresses do not wait for each other.
+     *
+     * @param W3W What3Words location encoding
+     * @throws WebServerException if the address is not cached and cannot be resolved
+     * @return LongLat object representing the address' location in the map
+     */
+    public LongLat getCoordinates(String W3W) {
+        LongLat location;
+        synchronized (addresses) {
+            location = addresses.get(W3W);
+        }
+        if (location != null) {
+            hits.incrementAndGet();
+            return location;
+        }
+        return ClientIO.join(request(W3W));
+    }
+
+    /**
+     * Gets the location of a What3Words address without blocking,
+     * querying the web server only if the address is not already cached.
+     *
+     * @param W3W What3Words location encoding
+     * @return future location, completed exceptionally with a WebServerException if it cannot be resolved
+     */
+    public CompletableFuture<LongLat> getCoordinatesAsync(String W3W) {
+        LongLat location;
+        synchronized (addresses) {
+            location = addresses.get(W3W);
+        }
+        if (location != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(location);
+        }
+        return request(W3W);
+    }
+
+    /**
+     * Resolves every address concurrently, so resolving them takes as long as the
+     * slowest request rather than the sum of all of them. Later lookups are cache hits.
+     *
+     * @param W3Ws What3Words location encodings
+     * @throws WebServerException if an address cannot be resolved
+     */
+    public void resolveAll(Collection<String> W3Ws) {
+        List<CompletableFuture<LongLat>> lookups = new ArrayList<>();
+        for (String W3W : new LinkedHashSet<>(W3Ws)) {
+            lookups.add(getCoordinatesAsync(W3W));
+        }
+        ClientIO.join(CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])));
+    }
+
+    /**
+     * Requests the location of an address missing from the cache, sharing the request
+     * with concurrent lookups of the same address
+     *
+     * @param W3W What3Words location encoding
+     * @return future location
+     */
+    private CompletableFuture<LongLat> request(String W3W) {
+        CompletableFuture<LongLat> created = new CompletableFuture<>();
+        CompletableFuture<LongLat> existing = pending.putIfAbsent(W3W, created);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing;
+        }
+        misses.incrementAndGet();
+        ClientIO.getW3WCoordinatesAsync(machineName, port, W3W).whenComplete((location, error) -> {
+            if (error == null) {
+                synchronized (addresses) {
+                    // keep the first resolution if the address was put meanwhile
+                    LongLat cached = addresses.putIfAbsent(W3W, location);
+                    location = cached != null ? cached : location;
+                }
+            }
+            pending.remove(W3W);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(location);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Adds an address whose location is already known, e.g. from a local fixture,
+     * so looking it up does not query the web server.
+     *
+     * @param W3W What3Words location encoding
+     * @param location location of the address
+     */
+    public void put(String W3W, LongLat location) {
+        synchronized (addresses) {
+            addresses.put(W3W, location);
+        }
+    }
+
+    /**
+     * Resolves the location of every restaurant so later lookups are cache hits.
+     *
+     * @param restaurants restaurants whose locations are loaded into the cache
+     */
+    public void warmUp(List<Restaurant> restaurants) {
+        List<String> locations = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            locations.add(restaurant.getLocation());
+        }
+        resolveAll(locations);
+    }
+
+    /**
+     * Getter method for number of addresses currently cached
+     *
+     * @return number of cached addresses
+     */
+    public int size() {
+        synchronized (addresses) {
+            return addresses.size();
+        }
+    }
+
+    /**
+     * Gets a copy of every cached address and its location,
+     * least recently used first
+     *
+     * @return mapping of What3Words addresses to their location
+     */
+    public LinkedHashMap<String, LongLat> getAddresses() {
+        synchronized (addresses) {
+            return new LinkedHashMap<>(addresses);
+        }
+    }
+
+    /**
+     * Getter method for the maximum number of cached addresses
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Getter method for number of lookups answered by the cache
+     *
+     * @return hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter method for number of lookups that went to the web server
+     *
+     * @return misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Getter method for number of addresses evicted from the cache
+     *
+     * @return evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Calculates the proportion of lookups answered by the cache
+     *
+     * @return hit rate between 0 and 1, 0 if no lookups were made
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : hits.get() / (double) total;
+    }
+
+}
@@ -0,0 +1,63 @@
+package uk.ac.ed.inf;
+
+/**
+ * Exception thrown when a web server request fails: the web server cannot be reached,
+ * does not answer in time, or answers with an HTTP error code, after every retry.
+ */
+public class WebServerException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Full website address of the failed request
+     */
+    private final String endpoint;
+
+    /**
+     * HTTP status code of the last answer, -1 if the web server never answered
+     */
+    private final int statusCode;
+
+    /**
+     * WebServerException class constructor for an HTTP error answer
+     *
+     * @param endpoint full website address of the failed request
+     * @param statusCode HTTP status code of the answer
+     */
+    public WebServerException(String endpoint, int statusCode) {
+        super("Failed with HTTP code " + statusCode + ": " + endpoint);
+        this.endpoint = endpoint;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * WebServerException class constructor for a request which got no answer
+     *
+     * @param endpoint full website address of the failed request
+     * @param cause reason the request failed
+     */
+    public WebServerException(String endpoint, Throwable cause) {
+        super("Unable to connect to " + endpoint, cause);
+        this.endpoint = endpoint;
+        this.statusCode = -1;
+    }
+
+    /**
+     * Getter method for the address of the failed request
+     *
+     * @return endpoint
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Getter method for the HTTP status code of the last answer
+     *
+     * @return statusCode, -1 if the web server never answered
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+}
@@ -1,7 +1,45 @@
 package uk.ac.ed.inf;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
 import org.junit.Test;
 
+import java.awt.geom.Line2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
 import static org.junit.Assert.*;
 
 public class AppTest {
@@ -126,6 +164,1001 @@ public class AppTest {
         assertTrue(approxEq(nextPosition, appletonTower));
     }
 
+    @Test
+    public void testPrimitiveStepMatchesNextPosition(){
+        for (int angle = 0; angle <= 350; angle += 10) {
+            LongLat nextPosition = appletonTower.nextPosition(angle);
+            assertTrue(approxEq(nextPosition.longitude,
+                    LongLat.nextLongitude(appletonTower.longitude, appletonTower.latitude, angle)));
+            assertTrue(approxEq(nextPosition.latitude,
+                    LongLat.nextLatitude(appletonTower.longitude, appletonTower.latitude, angle)));
+        }
+        // moves leaving the confinement area and hovering do not change position
+        assertTrue(approxEq(LongLat.nextLongitude(greyfriarsKirkyard.longitude,
+                greyfriarsKirkyard.latitude, 0), greyfriarsKirkyard.longitude));
+        assertTrue(approxEq(LongLat.nextLatitude(appletonTower.longitude,
+                appletonTower.latitude, LongLat.HOVERING_ANGLE), appletonTower.latitude));
+    }
+
+    private List<Line2D> squarePerimeter(double west, double south, double size) {
+        List<Line2D> perimeter = new ArrayList<>();
+        perimeter.add(new Line2D.Double(west, south, west + size, south));
+        perimeter.add(new Line2D.Double(west + size, south, west + size, south + size));
+        perimeter.add(new Line2D.Double(west + size, south + size, west, south + size));
+        perimeter.add(new Line2D.Double(west, south + size, west, south));
+        return perimeter;
+    }
+
+    @Test
+    public void testNoFlyZoneIndexMatchesLinearScan() {
+        List<Line2D> perimeters = new ArrayList<>();
+        perimeters.addAll(squarePerimeter(-3.1900, 55.9440, 0.0005));
+        perimeters.addAll(squarePerimeter(-3.1880, 55.9450, 0.0003));
+        NoFlyZoneIndex index = new NoFlyZoneIndex(perimeters);
+
+        // walk a fan of moves from several points and compare against the linear scan
+        for (int i = 0; i < 40; i++) {
+            LongLat start = new LongLat(-3.1905 + i * 0.0001, 55.9438 + i * 0.00005);
+            for (int angle = 0; angle <= 350; angle += 10) {
+                LongLat end = start.nextPosition(angle);
+                assertEquals(start.isIntersectingPath(end, perimeters),
+                        start.isIntersectingPath(end, index));
+            }
+        }
+    }
+
+    @Test
+    public void testNoFlyZoneIndexOutsideGrid() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(squarePerimeter(-3.1900, 55.9440, 0.0005));
+        assertFalse(appletonTower.isIntersectingPath(appletonTower.nextPosition(0), index));
+        assertTrue(index.intersects(-3.1902, 55.9442, -3.1897, 55.9442));
+    }
+
+    @Test
+    public void testAStarRoutesAroundNoFlyZone() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(squarePerimeter(-3.1880, 55.9438, 0.0010));
+        LongLat start = new LongLat(-3.1890, 55.9443);
+        LongLat end = new LongLat(-3.1860, 55.9443);
+        assertTrue(start.isIntersectingPath(end, index));
+
+        ArrayList<FlightpathMove> route = new AStarRoutingEngine(index).findRoute("test", start, end);
+        assertNotNull(route);
+        assertTrue(route.get(route.size() - 1).getNextPosition().closeTo(end));
+        for (FlightpathMove move : route) {
+            assertTrue(move.getNextPosition().isConfined());
+            assertFalse(move.getOriginalPosition().isIntersectingPath(move.getNextPosition(), index));
+        }
+        // the detour cannot be shorter than the straight line
+        assertTrue(route.size() >= start.distanceTo(end) / 0.00015 - 1);
+    }
+
+    @Test
+    public void testGreedyRoutesAroundNoFlyZoneThroughLandmark() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(squarePerimeter(-3.1880, 55.9438, 0.0010));
+        LongLat start = new LongLat(-3.1890, 55.9443);
+        LongLat end = new LongLat(-3.1860, 55.9443);
+        ArrayList<LongLat> landmarks = new ArrayList<>();
+        // north of the No-Fly Zone, with a clear line to both ends
+        landmarks.add(new LongLat(-3.1875, 55.9455));
+
+        ArrayList<FlightpathMove> route = new GreedyRoutingEngine(landmarks, index).findRoute("test", start, end);
+        assertNotNull(route);
+        assertTrue(route.get(0).getOriginalPosition().equals(start));
+        assertTrue(route.get(route.size() - 1).getNextPosition().closeTo(end));
+        for (int i = 0; i < route.size(); i++) {
+            FlightpathMove move = route.get(i);
+            assertFalse(move.getOriginalPosition().isIntersectingPath(move.getNextPosition(), index));
+            if (i > 0) {
+                assertEquals(route.get(i - 1).getNextPosition(), move.getOriginalPosition());
+            }
+        }
+    }
+
+    @Test
+    public void testGreedyGivesUpAfterOneBlockedDetour() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(squarePerimeter(-3.1880, 55.9438, 0.0010));
+        LongLat start = new LongLat(-3.1890, 55.9443);
+        LongLat end = new LongLat(-3.1860, 55.9443);
+        ArrayList<LongLat> landmarks = new ArrayList<>();
+        // west of the start: the way on from either one crosses the No-Fly Zone again
+        landmarks.add(new LongLat(-3.1900, 55.9443));
+        landmarks.add(new LongLat(-3.1905, 55.9443));
+
+        long reroutes = Metrics.counter("routing.landmarkReroutes").sum();
+        assertNull(new GreedyRoutingEngine(landmarks, index).findRoute("test", start, end));
+        assertEquals(1, Metrics.counter("routing.landmarkReroutes").sum() - reroutes);
+    }
+
+    @Test
+    public void testVisibilityGraphRoutesAroundNoFlyZone() {
+        List<LongLat> outline = new ArrayList<>();
+        outline.add(new LongLat(-3.1880, 55.9438));
+        outline.add(new LongLat(-3.1870, 55.9438));
+        outline.add(new LongLat(-3.1870, 55.9448));
+        outline.add(new LongLat(-3.1880, 55.9448));
+        outline.add(new LongLat(-3.1880, 55.9438));
+        List<List<LongLat>> noFlyZones = new ArrayList<>();
+        noFlyZones.add(outline);
+        CampusMap campusMap = new CampusMap(new ArrayList<>(), noFlyZones);
+        VisibilityGraph graph = new VisibilityGraph(campusMap, new ArrayList<>());
+
+        LongLat start = new LongLat(-3.1890, 55.9443);
+        LongLat end = new LongLat(-3.1860, 55.9443);
+        List<LongLat> waypoints = graph.shortestPath(start, end);
+        assertNotNull(waypoints);
+        assertTrue(waypoints.size() > 1);
+        assertTrue(approxEq(waypoints.get(waypoints.size() - 1), end));
+
+        ArrayList<FlightpathMove> route = new VisibilityGraphRoutingEngine(graph,
+                campusMap.getNoFlyZoneIndex(), new AStarRoutingEngine(campusMap.getNoFlyZoneIndex()))
+                .findRoute("test", start, end);
+        assertNotNull(route);
+        assertTrue(route.get(route.size() - 1).getNextPosition().closeTo(end));
+        for (FlightpathMove move : route) {
+            assertFalse(move.getOriginalPosition().isIntersectingPath(move.getNextPosition(),
+                    campusMap.getNoFlyZoneIndex()));
+        }
+    }
+
+    @Test
+    public void testW3WCacheEvictsLeastRecentlyUsed() {
+        W3WCache w3wCache = new W3WCache(null, null, 2);
+        LongLat a = appletonTower;
+        LongLat b = businessSchool;
+        w3wCache.put("apple.green.door", a);
+        w3wCache.put("bright.blue.sky", b);
+        // looking up the first address makes the second the least recently used
+        assertEquals(a, w3wCache.getCoordinates("apple.green.door"));
+        w3wCache.put("calm.red.sea", b);
+
+        assertEquals(2, w3wCache.size());
+        assertEquals(1, w3wCache.getEvictions());
+        assertEquals(List.of("apple.green.door", "calm.red.sea"), new ArrayList<>(w3wCache.getAddresses().keySet()));
+        assertEquals(1, w3wCache.getHits());
+        assertEquals(0, w3wCache.getMisses());
+        try {
+            new W3WCache(null, null, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("0"));
+        }
+    }
+
+    @Test
+    public void testW3WCacheSharesConcurrentLookups() throws Exception {
+        try (FixtureWebServer server = new FixtureWebServer(0)) {
+            server.addAddresses(Map.of("apple.green.door", appletonTower, "bright.blue.sky", businessSchool));
+            W3WCache w3wCache = new W3WCache(LocalServers.HOST, server.getPort());
+
+            // lookups made while the first is in flight wait for its answer
+            List<CompletableFuture<LongLat>> lookups = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                lookups.add(w3wCache.getCoordinatesAsync("apple.green.door"));
+            }
+            for (CompletableFuture<LongLat> lookup : lookups) {
+                assertTrue(approxEq(appletonTower, lookup.get()));
+            }
+            assertEquals(1, server.getRequestCount());
+            assertEquals(1, w3wCache.getMisses());
+            assertEquals(9, w3wCache.getHits());
+
+            // resolved addresses are served from the cache
+            assertTrue(approxEq(appletonTower, w3wCache.getCoordinates("apple.green.door")));
+            assertTrue(approxEq(businessSchool, w3wCache.getCoordinates("bright.blue.sky")));
+            assertEquals(2, server.getRequestCount());
+            assertEquals(2, w3wCache.getMisses());
+            assertEquals(10, w3wCache.getHits());
+            assertEquals(10 / 12.0, w3wCache.getHitRate(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testClientIORetriesServerErrors() throws Exception {
+        try (FixtureWebServer server = new FixtureWebServer(0)) {
+            String menus = "http://" + LocalServers.HOST + ":" + server.getPort() + "/menus/menus.json";
+            long retries = Metrics.getInstance().getCounters().getOrDefault("http.retries", 0L);
+
+            // two failures are retried after backing off 100 then 200 ms
+            server.failRequests(2, 503);
+            long startTime = System.nanoTime();
+            assertFalse(ClientIO.getRequest(menus).isEmpty());
+            assertTrue(System.nanoTime() - startTime >= 300_000_000L);
+            assertEquals(3, server.getRequestCount());
+            assertEquals(retries + 2, (long) Metrics.getInstance().getCounters().get("http.retries"));
+
+            // the request fails once its retries run out
+            server.failRequests(ClientIO.MAX_RETRIES + 1, 503);
+            try {
+                ClientIO.getRequest(menus);
+                fail();
+            } catch (WebServerException e) {
+                assertEquals(503, e.getStatusCode());
+                assertEquals(menus, e.getEndpoint());
+            }
+            assertEquals(3 + ClientIO.MAX_RETRIES + 1, server.getRequestCount());
+
+            // client errors are not retried
+            try {
+                ClientIO.getRequest("http://" + LocalServers.HOST + ":" + server.getPort() + "/menus/none.json");
+                fail();
+            } catch (WebServerException e) {
+                assertEquals(404, e.getStatusCode());
+            }
+            assertEquals(3 + ClientIO.MAX_RETRIES + 2, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testMapSnapshotRoundTrip() throws Exception {
+        List<FoodItem> items = new ArrayList<>();
+        items.add(new FoodItem("Flat white", 260));
+        items.add(new FoodItem("Croissant", 210));
+        List<Restaurant> restaurants = new ArrayList<>();
+        restaurants.add(new Restaurant("Coffee Cart", "silver.tall.bridge", items, null));
+        Menus menus = new Menus(restaurants);
+
+        W3WCache w3wCache = new W3WCache(null, null);
+        w3wCache.put("silver.tall.bridge", businessSchool);
+        w3wCache.put("apple.green.door", appletonTower);
+
+        ArrayList<LongLat> landmarks = new ArrayList<>();
+        landmarks.add(appletonTower);
+        List<List<LongLat>> noFlyZones = new ArrayList<>();
+        noFlyZones.add(List.of(new LongLat(-3.1880, 55.9438), new LongLat(-3.1870, 55.9438),
+                new LongLat(-3.1870, 55.9448), new LongLat(-3.1880, 55.9438)));
+        CampusMap campusMap = new CampusMap(landmarks, noFlyZones);
+
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            MapSnapshot.write(file, menus, w3wCache, campusMap);
+            MapSnapshot snapshot = MapSnapshot.load(file);
+
+            assertEquals(260 + 210 + 50, snapshot.getMenus().getDeliveryCost("Flat white", "Croissant"));
+            assertEquals(businessSchool, snapshot.getAddresses().get("silver.tall.bridge"));
+            assertEquals(appletonTower, snapshot.getAddresses().get("apple.green.door"));
+            assertEquals(landmarks, snapshot.getCampusMap().getLandmarks());
+            assertEquals(noFlyZones, snapshot.getCampusMap().getNoFlyZoneOutlines());
+            assertEquals(3, snapshot.getCampusMap().getPolygonPerimeters().size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMapSnapshotRejectsCorruptLengths() throws Exception {
+        List<Restaurant> restaurants = new ArrayList<>();
+        restaurants.add(new Restaurant("Coffee Cart", "silver.tall.bridge",
+                List.of(new FoodItem("Flat white", 260)), null));
+        W3WCache w3wCache = new W3WCache(null, null);
+        w3wCache.put("silver.tall.bridge", businessSchool);
+        CampusMap campusMap = new CampusMap(new ArrayList<>(), new ArrayList<>());
+
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            // the number of restaurants follows the magic number and version,
+            // and the length of the first restaurant's name follows it
+            for (int offset : new int[]{8, 12}) {
+                for (int corrupt : new int[]{-1, Integer.MAX_VALUE}) {
+                    MapSnapshot.write(file, new Menus(restaurants), w3wCache, campusMap);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.write(ByteBuffer.allocate(4).putInt(0, corrupt), offset);
+                    }
+                    try {
+                        MapSnapshot.load(file);
+                        fail();
+                    } catch (IOException e) {
+                        assertTrue(e.getMessage().startsWith("Corrupt snapshot file"));
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testFlightpathAppendAndSlice() {
+        LongLat a = appletonTower.nextPosition(0);
+        LongLat b = a.nextPosition(90);
+        Flightpath flightpath = new Flightpath();
+        flightpath.append("order001", appletonTower, a, 0);
+        flightpath.append(new FlightpathMove("order001", a, a, LongLat.HOVERING_ANGLE));
+        Flightpath firstOrder = flightpath.slice(0, 2);
+        // appending past the first 64 moves grows the arrays under the slice
+        for (int i = 0; i < 100; i++) {
+            flightpath.append("order00" + (2 + i % 2), flightpath.getLastPosition(), i % 2 == 0 ? b : a, 90);
+        }
+
+        assertEquals(102, flightpath.size());
+        assertEquals(2, firstOrder.size());
+        assertEquals(LongLat.HOVERING_ANGLE, firstOrder.getAngle(1));
+        assertEquals(a, firstOrder.getLastPosition());
+        assertSame(flightpath.getOrderNo(2), flightpath.getOrderNo(4));
+        assertEquals("order003", flightpath.getOrderNo(3));
+        assertEquals(List.of(appletonTower, a, a), firstOrder.positions());
+        assertEquals(b, flightpath.moves().get(2).getNextPosition());
+
+        Flightpath tail = flightpath.slice(100, 102);
+        assertEquals(b, tail.getPosition(1));
+        assertEquals(flightpath.getLastPosition(), tail.getLastPosition());
+        try {
+            // the flightpath ends at a, not b
+            flightpath.append("order004", b, b, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(102, flightpath.size());
+        }
+        try {
+            tail.append("order004", a, a, 0);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals(2, tail.size());
+        }
+    }
+
+    /**
+     * Small delivery area shared by the planning tests: a restaurant at the Business School,
+     * twelve delivery addresses west of a No-Fly Zone and landmarks north and south of it,
+     * so that some legs need a detour
+     */
+    private class SmallCampus {
+        private final Menus menus;
+        private final W3WCache w3wCache = new W3WCache(null, null);
+        private final CampusMap campusMap;
+        private final ArrayList<Order> orders = new ArrayList<>();
+
+        private SmallCampus() {
+            List<FoodItem> items = new ArrayList<>();
+            items.add(new FoodItem("Flat white", 260));
+            items.add(new FoodItem("Croissant", 210));
+            List<Restaurant> restaurants = new ArrayList<>();
+            restaurants.add(new Restaurant("Coffee Cart", "silver.tall.bridge", items, null));
+            menus = new Menus(restaurants);
+            w3wCache.put("silver.tall.bridge", businessSchool);
+
+            for (int i = 0; i < 12; i++) {
+                String address = "synth.addr.n" + i;
+                w3wCache.put(address, new LongLat(-3.1915 + 0.0006 * (i % 6), 55.9435 + 0.0008 * (i / 6)));
+                String[] order = i % 3 == 0 ? new String[]{"Flat white", "Croissant"} : new String[]{"Croissant"};
+                orders.add(new Order("order0" + (10 + i), "s00000" + (10 + i), address, order, menus));
+            }
+
+            List<List<LongLat>> noFlyZones = new ArrayList<>();
+            noFlyZones.add(List.of(new LongLat(-3.1881, 55.9437), new LongLat(-3.1878, 55.9437),
+                    new LongLat(-3.1878, 55.9444), new LongLat(-3.1881, 55.9444), new LongLat(-3.1881, 55.9437)));
+            ArrayList<LongLat> landmarks = new ArrayList<>();
+            landmarks.add(new LongLat(-3.18795, 55.9452));
+            landmarks.add(new LongLat(-3.18795, 55.9428));
+            campusMap = new CampusMap(landmarks, noFlyZones);
+        }
+
+        private Drone drone(int moveBudget) {
+            return new Drone(1, menus, w3wCache, campusMap, appletonTower, moveBudget);
+        }
+    }
+
+    private SmallCampus smallCampus() {
+        return new SmallCampus();
+    }
+
+    @Test
+    public void testSmallCampusNeedsDetours() {
+        SmallCampus campus = smallCampus();
+        LongLat address = campus.w3wCache.getCoordinates("synth.addr.n5");
+        assertTrue(address.isIntersectingPath(appletonTower, campus.campusMap.getNoFlyZoneIndex()));
+    }
+
+    @Test
+    public void testLivePlannerKeepsFlownMoves() {
+        SmallCampus campus = smallCampus();
+        List<Order> orders = campus.orders;
+        LivePlanner planner = new LivePlanner(campus.drone(1500));
+        planner.submitAll(orders.subList(0, 3));
+        assertEquals(3, planner.getPlan().getDeliveredOrdersInADay().size());
+
+        // fly into the second delivery, then take more orders
+        Flightpath before = planner.getPlan().getFlightpath();
+        int flown = planner.getFlownMoves() + planner.advance(before.size() / 2);
+        List<LongLat> flownPositions = new ArrayList<>(before.positions().subList(0, flown + 1));
+        List<Order> locked = planner.getLockedOrders();
+        assertFalse(locked.isEmpty());
+        planner.submitAll(orders.subList(3, 6));
+
+        Flightpath after = planner.getPlan().getFlightpath();
+        assertEquals(flownPositions, after.positions().subList(0, flown + 1));
+        assertEquals(locked, planner.getPlan().getDeliveredOrdersInADay().subList(0, locked.size()));
+        assertEquals(6, planner.getPlan().getDeliveredOrdersInADay().size());
+        assertTrue(after.size() <= 1500);
+        assertTrue(after.getLastPosition().closeTo(appletonTower));
+        assertTrue(planner.getPendingOrders().containsAll(orders.subList(3, 6)));
+        for (int move = 0; move < after.size(); move++) {
+            assertFalse(after.getPosition(move).isIntersectingPath(after.getPosition(move + 1),
+                    campus.campusMap.getNoFlyZoneIndex()));
+        }
+    }
+
+    @Test
+    public void testMoveBudgetSurvivesDeliveries() {
+        SmallCampus campus = smallCampus();
+        Drone drone = campus.drone(1500);
+        drone.greedyOrdersInADay(new ArrayList<>(campus.orders.subList(0, 3)));
+        assertEquals(1500, drone.getMoveBudget());
+        assertTrue(drone.getMovesLeft() < 1500);
+        assertEquals(1500, drone.trialCopy().getMoveBudget());
+        assertEquals(drone.getMovesLeft(), drone.trialCopy().getMovesLeft());
+
+        // a planner built from a drone that has flown still plans the whole day
+        LivePlanner planner = new LivePlanner(drone);
+        planner.submitAll(campus.orders);
+        assertEquals(1500, planner.getPlan().getMoveBudget());
+        assertEquals(campus.orders.size(), planner.getPlan().getDeliveredOrdersInADay().size());
+    }
+
+    @Test
+    public void testValuePerMoveSchedulerDeliversAtLeastPriceOrder() {
+        SmallCampus campus = smallCampus();
+        List<Order> orders = campus.orders;
+        // from too few moves for a single order to enough for all of them
+        for (int budget : new int[]{20, 60, 100, 150, 250, 400, 1500}) {
+            Drone byPrice = campus.drone(budget);
+            byPrice.setOrderScheduler(new PriceOrderScheduler());
+            byPrice.greedyOrdersInADay(new ArrayList<>(orders));
+            Drone byValue = campus.drone(budget);
+            byValue.setOrderScheduler(new ValuePerMoveScheduler());
+            List<Order> sequence = byValue.getOrderScheduler().schedule(orders, byValue);
+            byValue.greedyOrdersInADay(new ArrayList<>(orders));
+
+            assertEquals(orders.size(), sequence.size());
+            assertTrue(sequence.containsAll(orders));
+            assertTrue(byValue.getFlightpath().size() <= budget);
+            assertTrue(byValue.getFlightpath().isEmpty()
+                    || byValue.getFlightpath().getLastPosition().closeTo(appletonTower));
+            assertTrue(orderValue(byValue.getDeliveredOrdersInADay())
+                    >= orderValue(byPrice.getDeliveredOrdersInADay()));
+        }
+    }
+
+    @Test
+    public void testLegMatrixCachesMoveCounts() {
+        SmallCampus campus = smallCampus();
+        AStarRoutingEngine aStar = new AStarRoutingEngine(campus.campusMap.getNoFlyZoneIndex());
+        LongLat nowhere = new LongLat(-3.1880, 55.9440);
+        AtomicInteger routes = new AtomicInteger();
+        // counts the routes calculated, and finds none to the middle of the No-Fly Zone
+        LegMatrix legMatrix = new LegMatrix((orderNo, from, to) -> {
+            routes.incrementAndGet();
+            return to.equals(nowhere) ? null : aStar.findRoute(orderNo, from, to);
+        });
+        LongLat address = campus.w3wCache.getCoordinates("synth.addr.n5");
+
+        assertFalse(legMatrix.contains(appletonTower, address));
+        int moves = legMatrix.getMoveCount(appletonTower, address);
+        assertEquals(aStar.findRoute(null, appletonTower, address).size(), moves);
+        assertTrue(legMatrix.contains(appletonTower, address));
+        assertFalse(legMatrix.contains(address, appletonTower));
+        assertEquals(moves, legMatrix.getMoveCount(appletonTower, address));
+        assertEquals(1, routes.get());
+
+        // legs are recalculated with their moves, and agree with the cached count
+        ArrayList<FlightpathMove> leg = legMatrix.getLeg("order010", appletonTower, address);
+        assertEquals(moves, leg.size());
+        assertEquals("order010", leg.get(0).getOrderNo());
+        assertEquals(2, routes.get());
+
+        assertEquals(LegMatrix.UNREACHABLE, legMatrix.getMoveCount(appletonTower, nowhere));
+        assertEquals(LegMatrix.UNREACHABLE, legMatrix.getMoveCount(appletonTower, nowhere));
+        assertEquals(3, routes.get());
+        assertEquals(2, legMatrix.size());
+    }
+
+    @Test
+    public void testMinimumMovesBoundGreedyLegs() {
+        SmallCampus campus = smallCampus();
+        RoutingEngine routingEngine = new GreedyRoutingEngine(campus.campusMap.getLandmarks(),
+                campus.campusMap.getNoFlyZoneIndex());
+        for (Order first : campus.orders) {
+            LongLat a = campus.w3wCache.getCoordinates(first.getDeliverTo());
+            ArrayList<FlightpathMove> toA = routingEngine.findRoute(null, appletonTower, a);
+            assertTrue(toA.size() >= appletonTower.minimumMovesTo(a, true));
+            // the next leg starts wherever the drone stopped, close to a
+            LongLat stop = toA.get(toA.size() - 1).getNextPosition();
+            for (Order second : campus.orders) {
+                LongLat b = campus.w3wCache.getCoordinates(second.getDeliverTo());
+                ArrayList<FlightpathMove> toB = routingEngine.findRoute(null, stop, b);
+                if (toB != null) {
+                    assertTrue(toB.size() >= a.minimumMovesTo(b, false));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLegMatrixPrecomputeIsIndependentOfParallelism() {
+        SmallCampus campus = smallCampus();
+        List<LongLat> stops = new ArrayList<>();
+        stops.add(appletonTower);
+        stops.add(businessSchool);
+        for (Order order : campus.orders) {
+            stops.add(campus.w3wCache.getCoordinates(order.getDeliverTo()));
+        }
+        RoutingEngine routingEngine = new GreedyRoutingEngine(campus.campusMap.getLandmarks(),
+                campus.campusMap.getNoFlyZoneIndex());
+        LegMatrix sequential = new LegMatrix(routingEngine);
+        sequential.precompute(stops, stops);
+        assertEquals(stops.size() * (stops.size() - 1), sequential.size());
+
+        for (int parallelism : new int[]{1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                LegMatrix parallel = new LegMatrix(routingEngine);
+                parallel.precompute(stops, stops, pool);
+                assertEquals(sequential.size(), parallel.size());
+                for (LongLat from : stops) {
+                    for (LongLat to : stops) {
+                        if (!from.equals(to)) {
+                            assertTrue(parallel.contains(from, to));
+                            assertEquals(sequential.getMoveCount(from, to), parallel.getMoveCount(from, to));
+                        }
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testAnnealingSchedulerDeliversAtLeastGreedy() {
+        SmallCampus campus = smallCampus();
+        List<Order> orders = campus.orders;
+
+        // too few moves for every order
+        Drone greedy = campus.drone(150);
+        greedy.setOrderScheduler(new ValuePerMoveScheduler());
+        greedy.greedyOrdersInADay(new ArrayList<>(orders));
+        Drone annealed = campus.drone(150);
+        annealed.setOrderScheduler(new AnnealingScheduler(10_000, 20_000, 2, 7));
+        List<Order> sequence = annealed.getOrderScheduler().schedule(orders, annealed);
+        annealed.greedyOrdersInADay(new ArrayList<>(orders));
+
+        assertEquals(orders.size(), sequence.size());
+        assertTrue(sequence.containsAll(orders));
+        assertTrue(annealed.getDeliveredOrdersInADay().size() < orders.size());
+        assertTrue(annealed.getFlightpath().size() <= 150);
+        assertTrue(orderValue(annealed.getDeliveredOrdersInADay()) >= orderValue(greedy.getDeliveredOrdersInADay()));
+    }
+
+    @Test
+    public void testFleetFailsWhenADroneFails() {
+        SmallCampus campus = smallCampus();
+        List<Drone> drones = new ArrayList<>();
+        drones.add(campus.drone(1500));
+        Drone failing = new Drone(2, campus.menus, campus.w3wCache, campus.campusMap, appletonTower, 1500);
+        failing.setOrderScheduler((orders, drone) -> {
+            throw new WebServerException("http://localhost/words", 503);
+        });
+        drones.add(failing);
+        Fleet fleet = new Fleet(drones);
+        try {
+            fleet.deliverOrdersInADay(new ArrayList<>(campus.orders));
+            fail();
+        } catch (WebServerException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testFleetDronesKeepTheirBasesAndBudgets() {
+        SmallCampus campus = smallCampus();
+        LongLat westBase = new LongLat(-3.1912, 55.9433);
+        List<LongLat> bases = Arrays.asList(null, westBase);
+        Fleet fleet = Fleet.create(campus.menus, campus.w3wCache, campus.campusMap, bases, List.of(1500, 300));
+        fleet.deliverOrdersInADay(new ArrayList<>(campus.orders));
+
+        List<Drone> drones = fleet.getDrones();
+        assertEquals(appletonTower, drones.get(0).getBase());
+        assertEquals(westBase, drones.get(1).getBase());
+        assertEquals(300, drones.get(1).getMoveBudget());
+        for (Drone drone : drones) {
+            Flightpath flightpath = drone.getFlightpath();
+            assertTrue(flightpath.size() <= drone.getMoveBudget());
+            if (!flightpath.isEmpty()) {
+                assertEquals(drone.getBase(), flightpath.getPosition(0));
+                assertTrue(flightpath.getLastPosition().closeTo(drone.getBase()));
+            }
+        }
+        assertFalse(drones.get(1).getDeliveredOrdersInADay().isEmpty());
+        try {
+            Fleet.create(campus.menus, campus.w3wCache, campus.campusMap, bases, List.of(1500));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // every drone needs a base and a budget
+        }
+    }
+
+    private static int orderValue(List<Order> orders) {
+        int value = 0;
+        for (Order order : orders) {
+            value += order.getCost();
+        }
+        return value;
+    }
+
+    @Test
+    public void testMetricsReportIsWellFormedJson() throws Exception {
+        Metrics.startRun();
+        Metrics.add("test.rows", 5);
+        Metrics.increment("test.rows");
+        Metrics.recordNanos("test.write", 2_000_000);
+        Metrics.recordNanos("test.write", 4_000_000);
+        Metrics.gauge("test.hitRate", () -> 0.25);
+        Metrics.gauge("test.undefined", () -> Double.NaN);
+
+        Path file = Files.createTempFile("metrics", ".json");
+        try {
+            Metrics.writeReport(file);
+            // strict parsing rejects NaN and anything else that is not JSON
+            JsonReader reader = new JsonReader(new StringReader(Files.readString(file)));
+            reader.setLenient(false);
+            JsonObject report = new Gson().getAdapter(JsonElement.class).read(reader).getAsJsonObject();
+            assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+
+            assertEquals(6, report.getAsJsonObject("counters").get("test.rows").getAsLong());
+            JsonObject write = report.getAsJsonObject("timers").getAsJsonObject("test.write");
+            assertEquals(2, write.get("count").getAsLong());
+            assertEquals(6.0, write.get("totalMillis").getAsDouble(), 1e-9);
+            assertEquals(3.0, write.get("meanMillis").getAsDouble(), 1e-9);
+            assertEquals(4.0, write.get("maxMillis").getAsDouble(), 1e-9);
+            JsonObject gauges = report.getAsJsonObject("gauges");
+            assertEquals(0.25, gauges.get("test.hitRate").getAsDouble(), 1e-9);
+            assertTrue(gauges.get("test.undefined").isJsonNull());
+            for (String gauge : new String[]{"jvm.gcCount", "jvm.gcTimeMillis", "jvm.allocatedBytes",
+                    "jvm.heapUsedBytes", "run.elapsedMillis"}) {
+                assertTrue(gauge, gauges.get(gauge).getAsDouble() >= 0);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testFailedWritesAreNotCountedAsPlanned() {
+        SmallCampus campus = smallCampus();
+        // nothing listens on port 1
+        try (DatabaseClient database = new DatabaseClient("localhost", "1", campus.menus)) {
+            try {
+                database.writeDay(LocalDate.of(2023, 1, 1), "run1", campus.orders, Map.of());
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof SQLException);
+            }
+            BatchPlanner planner = new BatchPlanner(campus.menus, campus.w3wCache, campus.campusMap, database, 1);
+            assertEquals(0, planner.planDays(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 2), 1));
+        }
+    }
+
+    @Test
+    public void testGeoJSONWriterSplitsOrders() throws Exception {
+        LongLat a = appletonTower.nextPosition(0);
+        LongLat b = a.nextPosition(90);
+        Flightpath flightpath = new Flightpath();
+        flightpath.append("order001", appletonTower, a, 0);
+        flightpath.append("order001", a, a, LongLat.HOVERING_ANGLE);
+        flightpath.append("order002", a, b, 90);
+
+        Path file = Files.createTempFile("flightpath", ".geojson.gz");
+        try {
+            GeoJSONWriter.write(file, Map.of(3, flightpath), true, true);
+            String json;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            FeatureCollection fc = FeatureCollection.fromJson(json);
+
+            assertEquals(2, fc.features().size());
+            Feature first = fc.features().get(0);
+            assertEquals("order001", first.getStringProperty("orderNo"));
+            assertEquals(3, first.getNumberProperty("droneId").intValue());
+            List<Point> points = ((LineString) first.geometry()).coordinates();
+            assertEquals(3, points.size());
+            assertTrue(approxEq(appletonTower.longitude, points.get(0).longitude()));
+            assertTrue(approxEq(a.latitude, points.get(2).latitude()));
+            List<Point> second = ((LineString) fc.features().get(1).geometry()).coordinates();
+            assertEquals(2, second.size());
+            assertTrue(approxEq(b.longitude, second.get(1).longitude()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testConnectionPoolReusesReturnedConnections() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        // driver handing out connections that only count how often they are opened and closed
+        Driver driver = (Driver) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Driver.class},
+                (driverProxy, driverMethod, driverArgs) -> {
+                    switch (driverMethod.getName()) {
+                        case "acceptsURL":
+                            return ((String) driverArgs[0]).startsWith("jdbc:pooltest:");
+                        case "connect":
+                            if (!((String) driverArgs[0]).startsWith("jdbc:pooltest:")) {
+                                return null;
+                            }
+                            opened.incrementAndGet();
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                                        if (method.getName().equals("close")) {
+                                            closed.incrementAndGet();
+                                        }
+                                        return method.getReturnType() == boolean.class
+                                                ? method.getName().equals("getAutoCommit") : null;
+                                    });
+                        default:
+                            return driverMethod.getReturnType() == boolean.class ? false : null;
+                    }
+                });
+        DriverManager.registerDriver(driver);
+        try (ConnectionPool pool = new ConnectionPool("jdbc:pooltest:db", 2)) {
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+            assertEquals(2, pool.getActiveConnections());
+            first.close();
+            first.close();
+            assertTrue(first.isClosed());
+            assertEquals(1, pool.getActiveConnections());
+            assertEquals(1, pool.getIdleConnections());
+
+            // the returned connection is lent again instead of opening a third one
+            try (Connection third = pool.getConnection()) {
+                assertFalse(third.isClosed());
+                assertEquals(2, opened.get());
+            }
+            second.close();
+            assertEquals(0, pool.getActiveConnections());
+            assertEquals(3, pool.getBorrowCount());
+            assertEquals(0, closed.get());
+        } finally {
+            DriverManager.deregisterDriver(driver);
+        }
+        assertEquals(2, closed.get());
+    }
+
+    @Test
+    public void testLocalServersServeSyntheticDay() throws Exception {
+        Path home = Files.createTempDirectory("derby");
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        try (LocalServers servers = new LocalServers(home, 0, 0, 50, 1)) {
+            List<Order> inserted = servers.addDay(day, 300);
+            servers.addDay(day.plusDays(1), 100);
+
+            // orders come back through the same client as the planner's, with their items
+            try (DatabaseClient database = new DatabaseClient(LocalServers.HOST, servers.getDatabasePort(),
+                    servers.getMenus())) {
+                List<Order> orders = database.getOrdersTable(day.toString());
+                assertEquals(300, orders.size());
+                assertEquals(inserted.get(7).getOrderNo(), orders.get(7).getOrderNo());
+                List<String> items = new ArrayList<>(List.of(orders.get(7).getItems()));
+                items.sort(null);
+                List<String> insertedItems = new ArrayList<>(List.of(inserted.get(7).getItems()));
+                insertedItems.sort(null);
+                assertEquals(insertedItems, items);
+            }
+
+            // synthetic addresses resolve through the web server like real ones
+            String address = inserted.get(0).getDeliverTo();
+            LongLat expected = servers.getSyntheticOrders().getAddresses().get(address);
+            LongLat location = new W3WCache(LocalServers.HOST, servers.getWebPort()).getCoordinates(address);
+            assertTrue(approxEq(expected.longitude, location.longitude));
+            assertTrue(approxEq(expected.latitude, location.latitude));
+        }
+    }
+
+    @Test
+    public void testLocalServersStreamOrdersGroupsItems() throws Exception {
+        Path home = Files.createTempDirectory("derby");
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        try (LocalServers servers = new LocalServers(home, 0, 0, 50, 1)) {
+            servers.addDay(day.minusDays(1), 30);
+            List<Order> inserted = servers.addDay(day, 120);
+            servers.addDay(day.plusDays(1), 30);
+            Map<String, List<String>> insertedItems = new HashMap<>();
+            for (Order order : inserted) {
+                List<String> items = new ArrayList<>(List.of(order.getItems()));
+                items.sort(null);
+                insertedItems.put(order.getOrderNo(), items);
+            }
+
+            try (DatabaseClient database = new DatabaseClient(LocalServers.HOST, servers.getDatabasePort(),
+                    servers.getMenus())) {
+                // small fetches, so orders straddle the fetched blocks of rows
+                database.setFetchSize(7);
+                long reads = Metrics.getInstance().getTimerCounts().getOrDefault("db.read", 0L);
+                List<Order> orders = new ArrayList<>();
+                try (Stream<Order> stream = database.streamOrders(day.toString())) {
+                    stream.forEach(orders::add);
+                    // the read is timed once the cursor is exhausted, before the stream is closed
+                    assertEquals(reads + 1, (long) Metrics.getInstance().getTimerCounts().get("db.read"));
+                }
+
+                // one order per order number, in order number order, with all of its items
+                assertEquals(inserted.size(), orders.size());
+                String previous = "";
+                for (Order order : orders) {
+                    assertTrue(order.getOrderNo().compareTo(previous) > 0);
+                    previous = order.getOrderNo();
+                    List<String> items = new ArrayList<>(List.of(order.getItems()));
+                    items.sort(null);
+                    assertEquals(insertedItems.get(order.getOrderNo()), items);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLocalServersWriteDayTwiceKeepsTheRows() throws Exception {
+        Path home = Files.createTempDirectory("derby");
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        try (LocalServers servers = new LocalServers(home, 0, 0, 50, 1)) {
+            servers.addDay(day, 20);
+            try (DatabaseClient database = new DatabaseClient(LocalServers.HOST, servers.getDatabasePort(),
+                    servers.getMenus())) {
+                database.createTables();
+                List<Order> orders = database.getOrdersTable(day.toString());
+                Flightpath flightpath = new Flightpath();
+                flightpath.append(orders.get(0).getOrderNo(), appletonTower, appletonTower.nextPosition(0), 0);
+                Map<Integer, Flightpath> flightpaths = Map.of(1, flightpath);
+
+                assertEquals(orders.size() + 1, database.writeDay(day, "run1", orders, flightpaths));
+                List<String> deliveries = readRows(database, "select * from deliveries order by orderNo");
+                List<String> moves = readRows(database, "select * from flightpath order by orderNo");
+
+                // writing the day again replaces its rows instead of adding to them
+                assertEquals(orders.size() + 1, database.writeDay(day, "run1", orders, flightpaths));
+                assertEquals(deliveries, readRows(database, "select * from deliveries order by orderNo"));
+                assertEquals(moves, readRows(database, "select * from flightpath order by orderNo"));
+
+                // upserting recorded orders updates them in place
+                assertEquals(orders.size(), database.upsertDeliveries(day, "run1", orders));
+                assertEquals(deliveries, readRows(database, "select * from deliveries order by orderNo"));
+                assertEquals(orders.size(), deliveries.size());
+            }
+        }
+    }
+
+    @Test
+    public void testLocalServersPlanDaysWritesEveryDay() throws Exception {
+        Path home = Files.createTempDirectory("derby");
+        LocalDate first = LocalDate.of(2031, 3, 1);
+        List<Path> files = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            LocalDate date = first.plusDays(day);
+            files.add(Path.of(System.getProperty("user.dir"), String.format("drone-%02d-%02d-%d.geojson",
+                    date.getDayOfMonth(), date.getMonthValue(), date.getYear())));
+        }
+        try (LocalServers servers = new LocalServers(home, 0, 0, 50, 1)) {
+            servers.addDay(first, 15);
+            servers.addDay(first.plusDays(1), 15);
+            // the third day has no orders, and the day after the range is not planned
+            servers.addDay(first.plusDays(3), 15);
+            W3WCache w3wCache = new W3WCache(LocalServers.HOST, servers.getWebPort());
+            CampusMap campusMap = CampusMap.load(LocalServers.HOST, servers.getWebPort());
+            try (DatabaseClient database = new DatabaseClient(LocalServers.HOST, servers.getDatabasePort(),
+                    servers.getMenus())) {
+                BatchPlanner planner = new BatchPlanner(servers.getMenus(), w3wCache, campusMap, database, 1);
+                assertEquals(3, planner.planDays(first, first.plusDays(2), 2));
+
+                for (Path file : files) {
+                    assertTrue(file.toString(), Files.exists(file));
+                }
+                List<String> days = readRows(database,
+                        "select deliveryDate, count(*) from deliveries group by deliveryDate order by deliveryDate");
+                assertEquals(2, days.size());
+                assertTrue(days.get(0).startsWith(first + "|"));
+                assertTrue(days.get(1).startsWith(first.plusDays(1) + "|"));
+                assertEquals(1, readRows(database, "select distinct runId from deliveries").size());
+                assertEquals(2, readRows(database, "select distinct deliveryDate from flightpath").size());
+            }
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Reads every row of a query as a string of its columns
+     *
+     * @param database database client whose pool the connection is borrowed from
+     * @param query SQL query
+     * @return one string per row
+     * @throws SQLException if the query fails
+     */
+    private static List<String> readRows(DatabaseClient database, String query) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = database.getConnectionPool().getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int column = 1; column <= columns; column++) {
+                    row.append(resultSet.getString(column)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testItemIndexPricesLikeMenuScan() {
+        List<Restaurant> restaurants = new ArrayList<>();
+        restaurants.add(new Restaurant("Soup Kitchen", "soup.bowl.spoon",
+                List.of(new FoodItem("Soup", 300), new FoodItem("Bread", 120), new FoodItem("Water", 90)), null));
+        restaurants.add(new Restaurant("Tea Room", "tea.cup.saucer",
+                List.of(new FoodItem("Tea", 150), new FoodItem("Water", 100)), null));
+        restaurants.add(new Restaurant("Bakery", "warm.bread.oven", List.of(new FoodItem("Cake", 250)), null));
+        Menus menus = new Menus(restaurants);
+        String[] menuItems = {"Soup", "Bread", "Water", "Tea", "Cake", "Pizza"};
+
+        // every order of up to five items, including too many items, too many restaurants,
+        // items sold by two restaurants and items on no menu
+        List<String[]> orders = new ArrayList<>();
+        orders.add(new String[0]);
+        for (int length = 1; length <= 5; length++) {
+            int combinations = (int) Math.pow(menuItems.length, length);
+            for (int combination = 0; combination < combinations; combination++) {
+                String[] order = new String[length];
+                for (int i = 0, rest = combination; i < length; i++, rest /= menuItems.length) {
+                    order[i] = menuItems[rest % menuItems.length];
+                }
+                orders.add(order);
+            }
+        }
+        for (String[] items : orders) {
+            int expected = scanDeliveryCost(restaurants, items);
+            assertEquals(expected, menus.getDeliveryCost(items));
+            Order order = new Order("order001", "s0000001", "soup.bowl.spoon", items, menus);
+            assertEquals(expected, order.getCost());
+            assertEquals(expected, order.getCost());
+            assertSame(order.getRestaurants(), order.getRestaurants());
+            assertEquals(menus.getRestaurantsSelling(items), order.getRestaurants());
+        }
+
+        assertEquals(0, menus.getDeliveryCost("Soup", "Tea", "Cake"));
+        assertEquals(0, menus.getDeliveryCost("Soup", "Soup", "Soup", "Soup", "Soup"));
+        assertEquals(90 + 100 + 50, menus.getDeliveryCost("Water"));
+        assertEquals(List.of(restaurants.get(0), restaurants.get(1)), menus.getRestaurantsSelling("Water", "Tea"));
+    }
+
+    /**
+     * Prices an order by scanning every restaurant's menu, as before the item index
+     *
+     * @param restaurants restaurants which can be ordered from
+     * @param order items in the order
+     * @return delivery cost, 0 if the order breaks the menu constraints
+     */
+    private static int scanDeliveryCost(List<Restaurant> restaurants, String... order) {
+        int totalCost = 0;
+        List<Restaurant> orderedRestaurants = new ArrayList<>();
+        if (order.length >= 1 && order.length <= 4) {
+            for (String foodItem : order) {
+                for (Restaurant restaurant : restaurants) {
+                    Integer cost = restaurant.getMenuMap().get(foodItem);
+                    if (cost != null) {
+                        totalCost += cost;
+                        if (!orderedRestaurants.contains(restaurant)) {
+                            orderedRestaurants.add(restaurant);
+                        }
+                    }
+                }
+            }
+            totalCost += 50;
+        }
+        return orderedRestaurants.size() > 2 ? 0 : totalCost;
+    }
+
     @Test
     public void testMenusOne() {
         // The webserver must be running on port 9898 to run this test.
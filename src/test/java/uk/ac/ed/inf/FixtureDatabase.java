@@ -0,0 +1,203 @@
+package uk.ac.ed.inf;
+
+import org.apache.derby.drda.NetworkServerControl;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Local stand-in for the Derby database server, for tests and load tests without a network.
+ * Runs Derby embedded in the JVM behind a network server on localhost, so DatabaseClient
+ * connects to it exactly as to the real one. The database is created in a folder of its own
+ * with empty orders and orderDetails tables; DatabaseClient creates the others.
+ *
+ * Derby finds databases through the derby.system.home property, so only one
+ * FixtureDatabase should run in a JVM at a time.
+ */
+public class FixtureDatabase implements AutoCloseable {
+
+    /**
+     * Name of the database, as DatabaseClient connects to it
+     */
+    private static final String DATABASE_NAME = "derbyDB";
+
+    /**
+     * Number of rows inserted per batch
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Time the network server is given to start, in milliseconds
+     */
+    private static final long START_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * SQL statements creating the ORDERS and ORDERDETAILS tables like the real database,
+     * indexed for the day query
+     */
+    private static final String CREATE_ORDERS =
+            "create table orders(" +
+                    "orderNo char(8), " +
+                    "deliveryDate date, " +
+                    "customer char(8), " +
+                    "deliverTo varchar(19))";
+    private static final String CREATE_ORDER_DETAILS =
+            "create table orderDetails(" +
+                    "orderNo char(8), " +
+                    "item varchar(58))";
+    private static final String INDEX_ORDERS =
+            "create index ordersByDate on orders(deliveryDate, orderNo)";
+    private static final String INDEX_ORDER_DETAILS =
+            "create index orderDetailsByOrder on orderDetails(orderNo)";
+
+    /**
+     * Derby network server
+     */
+    private final NetworkServerControl server;
+
+    /**
+     * Log of the network server
+     */
+    private final PrintWriter log;
+
+    /**
+     * Port the network server listens on
+     */
+    private final int port;
+
+    /**
+     * JDBC URL of the embedded database
+     */
+    private final String embeddedUrl;
+
+    /**
+     * FixtureDatabase class constructor. Creates the database and starts serving it on localhost.
+     *
+     * @param home folder the database is created in
+     * @param port port to listen on, 0 for any free port
+     * @throws Exception if the database cannot be created or the network server cannot be started
+     */
+    public FixtureDatabase(Path home, int port) throws Exception {
+        System.setProperty("derby.system.home", home.toAbsolutePath().toString());
+        this.port = port == 0 ? freePort() : port;
+        this.embeddedUrl = "jdbc:derby:" + DATABASE_NAME;
+
+        try (Connection conn = DriverManager.getConnection(embeddedUrl + ";create=true");
+             Statement statement = conn.createStatement()) {
+            statement.execute(CREATE_ORDERS);
+            statement.execute(CREATE_ORDER_DETAILS);
+            statement.execute(INDEX_ORDERS);
+            statement.execute(INDEX_ORDER_DETAILS);
+        }
+
+        log = new PrintWriter(Files.newBufferedWriter(home.resolve("derby-server.log")), true);
+        server = new NetworkServerControl(InetAddress.getLoopbackAddress(), this.port);
+        server.start(log);
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                server.ping();
+                break;
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    close();
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    /**
+     * Inserts a day of orders and their items
+     *
+     * @param day delivery date of the orders
+     * @param orders orders to insert
+     * @throws SQLException if the orders cannot be inserted
+     */
+    public void insertOrders(LocalDate day, List<Order> orders) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(embeddedUrl);
+             PreparedStatement psOrder = conn.prepareStatement(
+                     "insert into orders(orderNo, deliveryDate, customer, deliverTo) values (?, ?, ?, ?)");
+             PreparedStatement psItem = conn.prepareStatement(
+                     "insert into orderDetails(orderNo, item) values (?, ?)")) {
+            conn.setAutoCommit(false);
+            Date date = Date.valueOf(day);
+            int rows = 0;
+            for (Order order : orders) {
+                psOrder.setString(1, order.getOrderNo());
+                psOrder.setDate(2, date);
+                psOrder.setString(3, order.getCustomer());
+                psOrder.setString(4, order.getDeliverTo());
+                psOrder.addBatch();
+                for (String item : order.getItems()) {
+                    psItem.setString(1, order.getOrderNo());
+                    psItem.setString(2, item);
+                    psItem.addBatch();
+                }
+                if (++rows % BATCH_SIZE == 0) {
+                    psOrder.executeBatch();
+                    psItem.executeBatch();
+                }
+            }
+            psOrder.executeBatch();
+            psItem.executeBatch();
+            conn.commit();
+        }
+    }
+
+    /**
+     * Getter method for the port the network server listens on
+     *
+     * @return port, as passed to DatabaseClient
+     */
+    public String getPort() {
+        return Integer.toString(port);
+    }
+
+    /**
+     * Stops the network server and shuts the database down
+     */
+    @Override
+    public void close() {
+        try {
+            server.shutdown();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        try {
+            DriverManager.getConnection(embeddedUrl + ";shutdown=true").close();
+        } catch (SQLException e) {
+            // Derby reports a successful shutdown with SQL state 08006
+            if (!"08006".equals(e.getSQLState())) {
+                e.printStackTrace();
+            }
+        }
+        log.close();
+    }
+
+    /**
+     * Finds a port no server listens on
+     *
+     * @return free port
+     * @throws IOException if no port can be opened
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package uk.ac.ed.inf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the web server, for tests and load tests without a network.
+ * Serves /menus/menus.json, /buildings/*.geojson and /words/**&#47;details.json from the
+ * test resources (webserver folder), and the details of synthetic addresses from memory.
+ * Anything else is answered with 404, like the web server. Requests can be made to fail
+ * with a server error, to exercise the clients' retries.
+ */
+public class FixtureWebServer implements AutoCloseable {
+
+    /**
+     * Classpath folder holding the web server fixture files
+     */
+    private static final String WEBSERVER = "/webserver";
+
+    /**
+     * Half the side of a What3Words square, in degrees
+     */
+    private static final double HALF_SQUARE = 0.00002;
+
+    /**
+     * HTTP server answering the requests
+     */
+    private final HttpServer server;
+
+    /**
+     * Threads handling the requests
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Locations of the synthetic addresses served besides the fixtures, keyed by What3Words encoding
+     */
+    private final ConcurrentHashMap<String, LongLat> addresses = new ConcurrentHashMap<>();
+
+    /**
+     * Number of requests answered
+     */
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Number of coming requests answered with failureStatus instead of their answer
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * HTTP status the failing requests are answered with
+     */
+    private volatile int failureStatus;
+
+    /**
+     * FixtureWebServer class constructor. Starts serving on localhost straight away.
+     *
+     * @param port port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be listened on
+     */
+    public FixtureWebServer(int port) throws IOException {
+        // answers are written as headers then body; without TCP_NODELAY every request
+        // waits for a delayed ACK, which dominates load tests on loopback
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        // as many threads as the client sends concurrent requests
+        executor = Executors.newFixedThreadPool(ClientIO.MAX_CONCURRENT_REQUESTS, runnable -> {
+            Thread thread = new Thread(runnable, "fixture-web-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Serves synthetic addresses besides the What3Words fixtures
+     *
+     * @param addresses locations keyed by What3Words encoding
+     */
+    public void addAddresses(Map<String, LongLat> addresses) {
+        this.addresses.putAll(addresses);
+    }
+
+    /**
+     * Answers the next requests with an error status, like an overloaded web server
+     *
+     * @param count number of requests to fail
+     * @param statusCode HTTP status they are answered with, e.g. 503
+     */
+    public void failRequests(int count, int statusCode) {
+        failureStatus = statusCode;
+        failures.set(count);
+    }
+
+    /**
+     * Getter method for the port the server listens on
+     *
+     * @return port, as passed to the clients
+     */
+    public String getPort() {
+        return Integer.toString(server.getAddress().getPort());
+    }
+
+    /**
+     * Getter method for the number of requests answered
+     *
+     * @return number of requests, including those answered with an error
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers a request with a synthetic address, a fixture file, or 404
+     *
+     * @param exchange request and its answer
+     * @throws IOException if the answer cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            if (failures.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = null;
+            // only files below the webserver folder are served
+            if ("GET".equals(exchange.getRequestMethod()) && !path.contains("..")) {
+                String w3w = toW3W(path);
+                LongLat location = w3w == null ? null : addresses.get(w3w);
+                body = location != null ? details(w3w, location) : readFixture(path);
+            }
+
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type",
+                    path.endsWith(".json") ? "application/json" : "application/geo+json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Gets the What3Words encoding a details request is for
+     *
+     * @param path path of the request, e.g. /words/apple/green/door/details.json
+     * @return What3Words encoding, e.g. apple.green.door, null if the request is not for details
+     */
+    private static String toW3W(String path) {
+        if (!path.startsWith("/words/") || !path.endsWith("/details.json")) {
+            return null;
+        }
+        return path.substring("/words/".length(), path.length() - "/details.json".length()).replace('/', '.');
+    }
+
+    /**
+     * Reads a fixture file from the classpath
+     *
+     * @param path path of the file, as requested from the web server
+     * @return file contents, null if there is no such fixture
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readFixture(String path) throws IOException {
+        try (InputStream in = FixtureWebServer.class.getResourceAsStream(WEBSERVER + path)) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+
+    /**
+     * Encodes the details of a synthetic address like the web server's details.json
+     *
+     * @param w3w What3Words encoding of the address
+     * @param location location of the address
+     * @return details as JSON
+     */
+    private static byte[] details(String w3w, LongLat location) {
+        String json = "{\"country\":\"GB\",\"square\":{"
+                + "\"southwest\":{\"lng\":" + (location.longitude - HALF_SQUARE)
+                + ",\"lat\":" + (location.latitude - HALF_SQUARE) + "},"
+                + "\"northeast\":{\"lng\":" + (location.longitude + HALF_SQUARE)
+                + ",\"lat\":" + (location.latitude + HALF_SQUARE) + "}},"
+                + "\"nearestPlace\":\"Edinburgh\","
+                + "\"coordinates\":{\"lng\":" + location.longitude + ",\"lat\":" + location.latitude + "},"
+                + "\"words\":\"" + w3w + "\",\"language\":\"en\",\"map\":\"https://w3w.co/" + w3w + "\"}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
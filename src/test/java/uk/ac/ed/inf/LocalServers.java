@@ -0,0 +1,187 @@
+package uk.ac.ed.inf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Local stand-ins for the web server and the database server, filled with synthetic orders,
+ * for reproducible load tests on a laptop with no network. The web server serves the menus,
+ * map and What3Words fixtures plus the synthetic addresses; the database holds the synthetic
+ * days of orders added with addDay.
+ *
+ * Run from the command line, it serves until stopped, so the planner can be run against it:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=uk.ac.ed.inf.LocalServers
+ * -Dexec.args="2023-01-01 7 1500 1000 9898 9876"
+ */
+public class LocalServers implements AutoCloseable {
+
+    /**
+     * Host the servers listen on
+     */
+    public static final String HOST = "localhost";
+
+    /**
+     * Local web server
+     */
+    private final FixtureWebServer webServer;
+
+    /**
+     * Local database server
+     */
+    private final FixtureDatabase database;
+
+    /**
+     * Menus served by the web server
+     */
+    private final Menus menu;
+
+    /**
+     * Generator of the synthetic addresses and orders
+     */
+    private final SyntheticOrders syntheticOrders;
+
+    /**
+     * Seed of the synthetic orders, combined with the day
+     */
+    private final long seed;
+
+    /**
+     * Number of orders added so far, numbering the next day's orders
+     */
+    private int orderCount;
+
+    /**
+     * LocalServers class constructor. Starts both servers and generates the synthetic addresses.
+     *
+     * @param home folder the database is created in
+     * @param webPort port the web server listens on, 0 for any free port
+     * @param databasePort port the database server listens on, 0 for any free port
+     * @param addressCount number of distinct synthetic delivery addresses
+     * @param seed seed of the synthetic addresses and orders
+     * @throws Exception if a server cannot be started
+     */
+    public LocalServers(Path home, int webPort, int databasePort, int addressCount, long seed) throws Exception {
+        this.seed = seed;
+        webServer = new FixtureWebServer(webPort);
+        try {
+            // the menus and map are read through the same clients as the planner's
+            menu = new Menus(HOST, webServer.getPort());
+            CampusMap campusMap = CampusMap.load(HOST, webServer.getPort());
+            syntheticOrders = new SyntheticOrders(menu, campusMap, addressCount, seed);
+            webServer.addAddresses(syntheticOrders.getAddresses());
+            database = new FixtureDatabase(home, databasePort);
+        } catch (Exception e) {
+            webServer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Generates a day of synthetic orders and inserts it into the database
+     *
+     * @param day delivery date of the orders
+     * @param count number of orders
+     * @return orders inserted
+     * @throws SQLException if the orders cannot be inserted
+     */
+    public ArrayList<Order> addDay(LocalDate day, int count) throws SQLException {
+        ArrayList<Order> orders = syntheticOrders.orders(orderCount, count, seed ^ day.toEpochDay());
+        database.insertOrders(day, orders);
+        orderCount += count;
+        return orders;
+    }
+
+    /**
+     * Getter method for the port the web server listens on
+     *
+     * @return webPort
+     */
+    public String getWebPort() {
+        return webServer.getPort();
+    }
+
+    /**
+     * Getter method for the port the database server listens on
+     *
+     * @return databasePort
+     */
+    public String getDatabasePort() {
+        return database.getPort();
+    }
+
+    /**
+     * Getter method for the menus served by the web server
+     *
+     * @return menu
+     */
+    public Menus getMenus() {
+        return menu;
+    }
+
+    /**
+     * Getter method for the local web server, e.g. to count its requests
+     *
+     * @return webServer
+     */
+    public FixtureWebServer getWebServer() {
+        return webServer;
+    }
+
+    /**
+     * Getter method for the synthetic addresses and orders
+     *
+     * @return syntheticOrders
+     */
+    public SyntheticOrders getSyntheticOrders() {
+        return syntheticOrders;
+    }
+
+    /**
+     * Stops both servers
+     */
+    @Override
+    public void close() {
+        database.close();
+        webServer.close();
+    }
+
+    /**
+     * Starts both servers with several days of synthetic orders and serves until stopped
+     *
+     * @param args first day (YYYY-MM-DD), number of days, orders per day, number of addresses,
+     *             web server port, database server port
+     * @throws Exception if a server cannot be started or the orders cannot be inserted
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 6) {
+            System.err.println("Usage: LocalServers firstDay days ordersPerDay addresses webPort databasePort");
+            System.exit(1);
+        }
+        LocalDate first = LocalDate.parse(args[0]);
+        int days = Integer.parseInt(args[1]);
+        int ordersPerDay = Integer.parseInt(args[2]);
+        int addresses = Integer.parseInt(args[3]);
+
+        Path home = Files.createTempDirectory("derby");
+        LocalServers servers = new LocalServers(home, Integer.parseInt(args[4]), Integer.parseInt(args[5]),
+                addresses, 1);
+        for (int i = 0; i < days; i++) {
+            servers.addDay(first.plusDays(i), ordersPerDay);
+        }
+        System.out.println("Serving " + days + " days of " + ordersPerDay + " orders from " + first
+                + ": web server on port " + servers.getWebPort()
+                + ", database on port " + servers.getDatabasePort() + " (" + home + ")");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servers.close();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+}
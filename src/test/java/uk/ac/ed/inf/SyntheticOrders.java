@@ -0,0 +1,158 @@
+package uk.ac.ed.inf;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generator of synthetic delivery addresses and orders, for load tests and benchmarks
+ * at any data volume. Addresses are What3Words-like encodings (synth.addr.nN) placed at
+ * random outside the No-Fly Zones; orders pick items from the real menus.
+ */
+public class SyntheticOrders {
+
+    /**
+     * Area the synthetic delivery addresses are drawn from: the confinement area,
+     * less a margin of two moves so addresses can be approached from every side
+     */
+    private static final double WEST = -3.192473 + 0.0003;
+    private static final double EAST = -3.184319 - 0.0003;
+    private static final double SOUTH = 55.942617 + 0.0003;
+    private static final double NORTH = 55.946233 - 0.0003;
+
+    /**
+     * Menus the orders' items are picked from
+     */
+    private final Menus menu;
+
+    /**
+     * Synthetic delivery addresses and their locations, in the order they were generated
+     */
+    private final LinkedHashMap<String, LongLat> addresses = new LinkedHashMap<>();
+
+    /**
+     * Synthetic delivery addresses, indexed for picking them at random
+     */
+    private final List<String> addressList = new ArrayList<>();
+
+    /**
+     * SyntheticOrders class constructor. Generates the delivery addresses.
+     *
+     * @param menu menus the orders' items are picked from
+     * @param campusMap map whose No-Fly Zones the addresses avoid
+     * @param addressCount number of distinct delivery addresses orders are spread over
+     * @param seed seed of the address generator
+     */
+    public SyntheticOrders(Menus menu, CampusMap campusMap, int addressCount, long seed) {
+        this.menu = menu;
+
+        List<Path2D> noFlyZones = new ArrayList<>();
+        for (List<LongLat> outline : campusMap.getNoFlyZoneOutlines()) {
+            Path2D path = new Path2D.Double();
+            path.moveTo(outline.get(0).longitude, outline.get(0).latitude);
+            for (LongLat vertex : outline) {
+                path.lineTo(vertex.longitude, vertex.latitude);
+            }
+            path.closePath();
+            noFlyZones.add(path);
+        }
+
+        Random random = new Random(seed);
+        while (addressList.size() < addressCount) {
+            double longitude = WEST + random.nextDouble() * (EAST - WEST);
+            double latitude = SOUTH + random.nextDouble() * (NORTH - SOUTH);
+            if (isInside(longitude, latitude, noFlyZones)) {
+                continue;
+            }
+            // short enough for the deliverTo column, varchar(19)
+            String address = "synth.addr.n" + addressList.size();
+            addresses.put(address, new LongLat(longitude, latitude));
+            addressList.add(address);
+        }
+    }
+
+    /**
+     * Generates a synthetic day of orders. Most orders pick one to four items from a single
+     * restaurant, about a fifth from two restaurants, and about one in fifty has five items
+     * (invalid, never delivered). Orders are spread over the synthetic addresses.
+     *
+     * @param count number of orders
+     * @param seed seed of the order generator
+     * @return synthetic orders, in order number order
+     */
+    public ArrayList<Order> orders(int count, long seed) {
+        return orders(0, count, seed);
+    }
+
+    /**
+     * Generates a synthetic day of orders numbered from firstOrder, so several days
+     * can share a database without repeating order numbers
+     *
+     * @param firstOrder number of the first order
+     * @param count number of orders
+     * @param seed seed of the order generator
+     * @return synthetic orders, in order number order
+     */
+    public ArrayList<Order> orders(int firstOrder, int count, long seed) {
+        Random random = new Random(seed);
+        List<Restaurant> restaurants = menu.getRestaurantList();
+        ArrayList<Order> orders = new ArrayList<>(count);
+        for (int i = firstOrder; i < firstOrder + count; i++) {
+            int numberOfItems = random.nextInt(50) == 0 ? 5 : 1 + random.nextInt(4);
+            Restaurant first = restaurants.get(random.nextInt(restaurants.size()));
+            Restaurant second = random.nextInt(5) == 0
+                    ? restaurants.get(random.nextInt(restaurants.size())) : first;
+
+            String[] items = new String[numberOfItems];
+            for (int j = 0; j < numberOfItems; j++) {
+                List<FoodItem> foodItems = (j % 2 == 0 ? first : second).getMenu();
+                items[j] = foodItems.get(random.nextInt(foodItems.size())).getItem();
+            }
+            String address = addressList.get(random.nextInt(addressList.size()));
+            orders.add(new Order(String.format("%08x", i), "s" + (1000000 + i), address, items, menu));
+        }
+        return orders;
+    }
+
+    /**
+     * Seeds a What3Words cache with the synthetic addresses, so no web server is needed to resolve them
+     *
+     * @param w3wCache cache to seed
+     */
+    public void seed(W3WCache w3wCache) {
+        for (Map.Entry<String, LongLat> address : addresses.entrySet()) {
+            w3wCache.put(address.getKey(), address.getValue());
+        }
+    }
+
+    /**
+     * Getter method for the synthetic delivery addresses
+     *
+     * @return unmodifiable mapping of What3Words encodings to their location
+     */
+    public Map<String, LongLat> getAddresses() {
+        return Collections.unmodifiableMap(addresses);
+    }
+
+    /**
+     * Checks whether a location lies inside any of the No-Fly Zones
+     *
+     * @param longitude location longitude
+     * @param latitude location latitude
+     * @param noFlyZones No-Fly Zone polygons
+     * @return true if the location is inside a No-Fly Zone
+     */
+    private static boolean isInside(double longitude, double latitude, List<Path2D> noFlyZones) {
+        for (Path2D noFlyZone : noFlyZones) {
+            if (noFlyZone.contains(longitude, latitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}